@@ -25,6 +25,8 @@ package io.mohamed.resolver.cli;
 
 import io.mohamed.resolver.core.DependencyDownloader.Builder;
 import io.mohamed.resolver.core.DependencyResolver;
+import io.mohamed.resolver.core.ExecutorMode;
+import io.mohamed.resolver.core.IncrementalResolver;
 import io.mohamed.resolver.core.Util;
 import io.mohamed.resolver.core.callback.DependencyResolverCallback;
 import io.mohamed.resolver.core.callback.FilesDownloadedCallback;
@@ -35,13 +37,24 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import java.util.prefs.BackingStoreException;
 import java.util.prefs.Preferences;
 import java.util.stream.Collectors;
@@ -54,6 +67,7 @@ import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 import org.json.JSONArray;
+import org.json.JSONObject;
 
 /**
  * A CLI to resolve dependencies for the given maven artifact
@@ -106,6 +120,68 @@ public class Main {
                 "If used, only jar files would be resolved, only classes.jar would be extracted from aars. Useful for extension developers.")
             .longOpt("jarOnly")
             .build();
+    Option executor =
+        Option.builder()
+            .longOpt("executor")
+            .hasArg()
+            .argName("virtual|platform")
+            .desc(
+                "The kind of threads used to fetch POM and library files, virtual threads require JDK 21 or newer. Defaults to platform.")
+            .build();
+    Option route =
+        Option.builder()
+            .longOpt("route")
+            .hasArg()
+            .numberOfArgs(Option.UNLIMITED_VALUES)
+            .argName("prefix=url")
+            .desc(
+                "Asks the given repository first for artifacts whose group ID starts with the prefix, e.g. androidx=https://maven.google.com/. Use * as the prefix to route all artifacts to a mirror.")
+            .build();
+    Option retries =
+        Option.builder()
+            .longOpt("retries")
+            .hasArg()
+            .argName("count")
+            .desc(
+                "The number of times a request which failed with a connection or server error is retried. Defaults to 3.")
+            .build();
+    Option lockFile =
+        Option.builder()
+            .longOpt("lock-file")
+            .hasArg()
+            .argName("file")
+            .desc(
+                "Writes the resolved dependencies to the given lock file, later resolves of the same dependency with the same repositories skip reading the POM files and download the locked dependencies.")
+            .build();
+    Option refreshLock =
+        Option.builder()
+            .longOpt("refresh-lock")
+            .desc("Ignores the lock file, resolves the dependencies again and rewrites it.")
+            .build();
+    Option watch =
+        Option.builder()
+            .longOpt("watch")
+            .hasArg()
+            .argName("file")
+            .desc(
+                "Resolves the dependencies listed in the given file, one per line, and resolves them again whenever the file changes. Only the dependencies which changed are resolved again.")
+            .build();
+    Option batch =
+        Option.builder()
+            .longOpt("batch")
+            .hasArg()
+            .argName("file")
+            .desc(
+                "Resolves the dependencies listed in the given file, one per line, together and prints the result of every dependency as a JSON line. Logs are printed to the stderr.")
+            .build();
+    Option timeout =
+        Option.builder()
+            .longOpt("timeout")
+            .hasArg()
+            .argName("seconds")
+            .desc(
+                "Stops resolving and downloading the dependencies if they don't finish within the given number of seconds. With --watch or --batch, every dependency has its own deadline. Defaults to no deadline.")
+            .build();
     Options options = new Options();
     options.addOption(groupId);
     options.addOption(artifactId);
@@ -118,6 +194,14 @@ public class Main {
     options.addOption(help);
     options.addOption(repository);
     options.addOption(jarOnly);
+    options.addOption(executor);
+    options.addOption(route);
+    options.addOption(retries);
+    options.addOption(lockFile);
+    options.addOption(refreshLock);
+    options.addOption(watch);
+    options.addOption(batch);
+    options.addOption(timeout);
     SUPPORTED_COMMANDS.add(new Command("resolve", options));
     Option versionOption =
         Option.builder("v")
@@ -250,101 +334,100 @@ public class Main {
         reposArray.toList().stream()
             .map(object -> Objects.toString(object, ""))
             .collect(Collectors.toList()));
-    System.out.println("Fetching Dependencies..");
-    // resolves and locates the dependencies by parsing their POM files
-    Dependency mainDependency;
-    if (commandLine.hasOption("dependency")) {
-      mainDependency = Dependency.valueOf(commandLine.getOptionValue("dependency"));
-    } else if (commandLine.hasOption("groupId")
-        && commandLine.hasOption("artifactId")
-        && commandLine.hasOption("version")) {
-      mainDependency =
-          new Dependency(
-              commandLine.getOptionValue("groupId"),
-              commandLine.getOptionValue("artifactId"),
-              commandLine.getOptionValue("version"));
-    } else {
-      throw new IllegalArgumentException(
-          "Neither a dependency argument nor a groupId, artifactId, version arguments were provided.");
-    }
-    if (!commandLine.hasOption("output")) {
-      throw new IllegalArgumentException("The required option --output wasn't provided.");
+    ExecutorMode executorMode =
+        ExecutorMode.fromString(commandLine.getOptionValue("executor", "platform"));
+    Map<String, String> routes = new LinkedHashMap<>();
+    String[] routeValues = commandLine.getOptionValues("route");
+    for (String route : routeValues == null ? new String[0] : routeValues) {
+      int separator = route.indexOf('=');
+      if (separator <= 0) {
+        throw new IllegalArgumentException(
+            "Routes must be formatted as prefix=url, found " + route);
+      }
+      routes.put(route.substring(0, separator), route.substring(separator + 1));
     }
-    // For the CLI, all logs are printed to the stdout
+    int maxRetries = Integer.parseInt(commandLine.getOptionValue("retries", "3"));
+    long timeoutMillis =
+        TimeUnit.SECONDS.toMillis(Long.parseLong(commandLine.getOptionValue("timeout", "0")));
+    // the deadline covers resolving and downloading together
+    long start = System.nanoTime();
+    // For the CLI, all logs are printed to the stdout, except in batch mode, where the stdout only
+    // has the results
+    PrintStream log = commandLine.hasOption("batch") ? System.err : System.out;
     DependencyResolverCallback dependencyResolverCallback =
         new DependencyResolverCallback() {
           @Override
           public void dependencyPomDownloading(String url) {
-            System.out.println("Downloading " + url);
+            log.println("Downloading " + url);
           }
 
           @Override
           public void dependencyPomDownloaded(String url) {
-            System.out.println("Downloaded " + url);
+            log.println("Downloaded " + url);
           }
 
           @Override
           public void dependencyPomParsing(String url) {
-            System.out.println("Parsing " + url);
+            log.println("Parsing " + url);
           }
 
           @Override
           public void dependencyPomParsed(String url) {
-            System.out.println("Parsed " + url);
+            log.println("Parsed " + url);
           }
 
           @Override
           public void dependencyFileDownloading(String url) {
-            System.out.println("Downloading " + url);
+            log.println("Downloading " + url);
           }
 
           @Override
           public void dependencyFileDownloaded(String url) {
-            System.out.println("Downloaded " + url);
+            log.println("Downloaded " + url);
           }
 
           @Override
           public void merging(MergeStage stage) {
             switch (stage) {
               case MERGE_MANIFEST:
-                System.out.println("Merging Android Manifests..");
+                log.println("Merging Android Manifests..");
                 break;
               case MERGE_MANIFEST_FAILED:
                 System.err.println("Failed to Merge Android Manifests..");
                 break;
               case MERGE_CLASS_FILES:
-                System.out.println("Merging Class Files..");
+                log.println("Merging Class Files..");
                 break;
               case MERGE_MANIFEST_SUCCESS:
-                System.out.println("Successfully Merged Android Manifests..");
+                log.println("Successfully Merged Android Manifests..");
                 break;
               case START:
-                System.out.println("Merging Libraries..");
+                log.println("Merging Libraries..");
                 break;
               case MERGE_RESOURCES:
-                System.out.println("Merging Resources..");
+                log.println("Merging Resources..");
                 break;
               case MERGE_RESOURCES_SUCCESS:
-                System.out.println("Successfully Merged Resources..");
+                log.println("Successfully Merged Resources..");
               case MERGE_CLASS_FILES_SUCCESS:
-                System.out.println("Successfully merged class files..");
+                log.println("Successfully merged class files..");
             }
           }
 
           @Override
           public void mergeSuccess() {
-            System.out.println("Successfully Merged Libraries..");
+            log.println("Successfully Merged Libraries..");
           }
 
           @Override
           public void mergeFailed() {
-            System.out.println("Failed to merge libraries..");
+            log.println("Failed to merge libraries..");
           }
 
           @Override
           public void verbose(String message) {
             if (commandLine.hasOption("verbose")) {
-              System.out.println(message);
+              log.println(message);
             }
           }
 
@@ -355,16 +438,74 @@ public class Main {
 
           @Override
           public void info(String message) {
-            System.out.println(message);
+            log.println(message);
           }
         };
+    if (commandLine.hasOption("watch")) {
+      IncrementalResolver incrementalResolver =
+          new IncrementalResolver(
+              () -> {
+                DependencyResolver.Builder builder = new DependencyResolver.Builder();
+                routes.forEach(builder::addRoute);
+                return builder
+                    .setDependencyResolverCallback(dependencyResolverCallback)
+                    .setRepositories(repositories)
+                    .setExecutorMode(executorMode)
+                    .setMaxRetries(maxRetries)
+                    .setTimeout(timeoutMillis);
+              });
+      watch(new File(commandLine.getOptionValue("watch")), incrementalResolver);
+      return;
+    }
+    if (commandLine.hasOption("batch")) {
+      DependencyResolver.Builder builder = new DependencyResolver.Builder();
+      routes.forEach(builder::addRoute);
+      builder
+          .setDependencyResolverCallback(dependencyResolverCallback)
+          .setRepositories(repositories)
+          .setExecutorMode(executorMode)
+          .setMaxRetries(maxRetries)
+          .setTimeout(timeoutMillis);
+      resolveBatch(Paths.get(commandLine.getOptionValue("batch")), builder);
+      return;
+    }
+    System.out.println("Fetching Dependencies..");
+    // resolves and locates the dependencies by parsing their POM files
+    Dependency mainDependency;
+    if (commandLine.hasOption("dependency")) {
+      mainDependency = Dependency.valueOf(commandLine.getOptionValue("dependency"));
+    } else if (commandLine.hasOption("groupId")
+        && commandLine.hasOption("artifactId")
+        && commandLine.hasOption("version")) {
+      mainDependency =
+          new Dependency(
+              commandLine.getOptionValue("groupId"),
+              commandLine.getOptionValue("artifactId"),
+              commandLine.getOptionValue("version"));
+    } else {
+      throw new IllegalArgumentException(
+          "Neither a dependency argument nor a groupId, artifactId, version arguments were provided.");
+    }
+    if (!commandLine.hasOption("output")) {
+      throw new IllegalArgumentException("The required option --output wasn't provided.");
+    }
     ResolveCallback resolveCallback =
         (artifactFound, pomUrl, mavenRepo, dependencyList, dependency) -> {
+          if (!artifactFound) {
+            System.err.println("Failed to resolve dependencies!");
+            return;
+          }
           if (dependencyList.isEmpty()) {
             System.err.println("Didn't find any dependencies!");
           } else {
             System.out.println("Successfully Resolved " + dependencyList.size() + " dependencies!");
           }
+          long remainingMillis =
+              timeoutMillis - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+          if (timeoutMillis > 0 && remainingMillis <= 0) {
+            System.err.println("Didn't finish within " + timeoutMillis + "ms!");
+            return;
+          }
           System.out.println("Downloading Dependencies..");
           // downloads the JAR/AAR files for the resolved dependencies
           FilesDownloadedCallback callback =
@@ -401,7 +542,9 @@ public class Main {
                 System.out.println("Success!");
                 System.exit(0);
               };
-          new Builder()
+          Builder downloaderBuilder = new Builder();
+          routes.forEach(downloaderBuilder::addRoute);
+          downloaderBuilder
               .setMainDependency(mainDependency)
               .setCallback(callback)
               .setDependencies(dependencyList)
@@ -412,13 +555,207 @@ public class Main {
               .setFilterAppInventorDependencies(
                   commandLine.hasOption("filter-appinventor-dependencies"))
               .setVerbose(commandLine.hasOption("verbose"))
+              .setExecutorMode(executorMode)
+              .setMaxRetries(maxRetries)
+              .setTimeout(timeoutMillis > 0 ? remainingMillis : 0)
               .resolve();
         };
-    new DependencyResolver.Builder()
+    DependencyResolver.Builder resolverBuilder = new DependencyResolver.Builder();
+    routes.forEach(resolverBuilder::addRoute);
+    resolverBuilder
         .setDependency(mainDependency)
         .setDependencyResolverCallback(dependencyResolverCallback)
         .setCallback(resolveCallback)
         .setRepositories(repositories)
+        .setExecutorMode(executorMode)
+        .setMaxRetries(maxRetries)
+        .setLockFile(
+            commandLine.hasOption("lock-file")
+                ? new File(commandLine.getOptionValue("lock-file"))
+                : null)
+        .setRefreshLock(commandLine.hasOption("refresh-lock"))
+        .setTimeout(timeoutMillis)
         .resolve();
   }
+
+  /**
+   * Resolves the dependencies listed in the given file, and again whenever the file changes, until
+   * the process is stopped
+   *
+   * @param file the dependency file
+   * @param incrementalResolver resolves the dependencies which changed since the previous run
+   */
+  private static void watch(File file, IncrementalResolver incrementalResolver) {
+    Path path = file.getAbsoluteFile().toPath();
+    try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+      path.getParent()
+          .register(
+              watchService,
+              StandardWatchEventKinds.ENTRY_CREATE,
+              StandardWatchEventKinds.ENTRY_MODIFY);
+      while (true) {
+        resolveDependencyFile(path, incrementalResolver);
+        System.out.println("Watching " + path + " for changes..");
+        waitForChange(watchService, path);
+      }
+    } catch (IOException e) {
+      System.err.println("Failed to watch " + path + ": " + e.getMessage());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Resolves the dependencies listed in the given file and prints the result of every dependency
+   *
+   * @param path the dependency file
+   * @param incrementalResolver resolves the dependencies which changed since the previous run
+   * @throws InterruptedException if the thread was interrupted while resolving
+   */
+  private static void resolveDependencyFile(Path path, IncrementalResolver incrementalResolver)
+      throws InterruptedException {
+    List<Dependency> roots = readRoots(path);
+    if (roots == null) {
+      return;
+    }
+    long start = System.nanoTime();
+    Map<Dependency, List<Dependency>> results = incrementalResolver.resolve(roots);
+    for (Dependency root : roots) {
+      List<Dependency> dependencies = results.get(root);
+      if (dependencies == null) {
+        System.err.println("Failed to resolve dependencies of " + root + "!");
+        continue;
+      }
+      System.out.println("Resolved " + dependencies.size() + " dependencies of " + root + ":");
+      for (Dependency dependency : dependencies) {
+        System.out.println("  " + dependency);
+      }
+    }
+    System.out.println(
+        "Resolved "
+            + roots.size()
+            + " dependencies in "
+            + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+            + "ms, "
+            + incrementalResolver.getReusedRoots()
+            + " were unchanged.");
+  }
+
+  /**
+   * Resolves the dependencies listed in the given file in one batch, and prints the result of
+   * every dependency as a JSON object on its own line, as soon as it's resolved
+   *
+   * @param path the dependency file
+   * @param builder a builder which has every option set, except the dependency and the callback
+   */
+  private static void resolveBatch(Path path, DependencyResolver.Builder builder) {
+    List<Dependency> roots = readRoots(path);
+    if (roots == null) {
+      return;
+    }
+    try {
+      builder.resolveBatch(
+          roots,
+          (artifactFound, pomUrl, mavenRepo, dependencyList, root) -> {
+            JSONObject result = new JSONObject();
+            result.put("root", root.toString());
+            result.put("success", artifactFound);
+            JSONArray dependencies = new JSONArray();
+            if (artifactFound) {
+              for (Dependency dependency : dependencyList) {
+                JSONObject object = new JSONObject();
+                object.put("groupId", dependency.getGroupId());
+                object.put("artifactId", dependency.getArtifactId());
+                object.put("version", dependency.getVersion());
+                object.put("type", dependency.getType());
+                object.put("scope", dependency.getScope());
+                if (dependency.getRepository() != null) {
+                  object.put("repository", dependency.getRepository().getUrl());
+                }
+                dependencies.put(object);
+              }
+            }
+            result.put("dependencies", dependencies);
+            // the roots are resolved at the same time, so a line is never split by another one
+            synchronized (System.out) {
+              System.out.println(result);
+            }
+          });
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Reads the dependencies listed in the given file, one per line, empty lines and lines starting
+   * with # are skipped
+   *
+   * @param path the dependency file
+   * @return the dependencies, or null if the file couldn't be read
+   */
+  private static List<Dependency> readRoots(Path path) {
+    List<Dependency> roots = new ArrayList<>();
+    try {
+      for (String line : Files.readAllLines(path)) {
+        line = line.trim();
+        if (line.isEmpty() || line.startsWith("#")) {
+          continue;
+        }
+        try {
+          roots.add(parseDependency(line));
+        } catch (IllegalArgumentException e) {
+          System.err.println(e.getMessage());
+        }
+      }
+    } catch (IOException e) {
+      System.err.println("Failed to read " + path + ": " + e.getMessage());
+      return null;
+    }
+    return roots;
+  }
+
+  /**
+   * Parses a dependency in gradle style, e.g. implementation 'com.test:test:1.0', or in the
+   * groupId:artifactId:version form
+   *
+   * @param value the dependency
+   * @return the dependency
+   */
+  private static Dependency parseDependency(String value) {
+    if (value.startsWith("implementation")) {
+      return Dependency.valueOf(value);
+    }
+    String[] parts = value.split(":");
+    if (parts.length != 3) {
+      throw new IllegalArgumentException("Failed to parse dependency " + value);
+    }
+    return new Dependency(parts[0], parts[1], parts[2]);
+  }
+
+  /**
+   * Waits until the given file was created or modified. Editors often write a file more than once
+   * when saving it, so the changes which follow shortly after are awaited too.
+   *
+   * @param watchService the watch service the parent directory of the file is registered with
+   * @param path the file
+   * @throws InterruptedException if the thread was interrupted while waiting
+   */
+  private static void waitForChange(WatchService watchService, Path path)
+      throws InterruptedException {
+    boolean changed = false;
+    while (!changed) {
+      WatchKey key = watchService.take();
+      for (WatchEvent<?> event : key.pollEvents()) {
+        if (path.getFileName().equals(event.context())) {
+          changed = true;
+        }
+      }
+      key.reset();
+    }
+    WatchKey key;
+    while ((key = watchService.poll(100, TimeUnit.MILLISECONDS)) != null) {
+      key.pollEvents();
+      key.reset();
+    }
+  }
 }
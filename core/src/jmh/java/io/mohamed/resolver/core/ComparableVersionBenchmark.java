@@ -0,0 +1,103 @@
+/*
+ *  Copyright (c) 2021 Mohamed Tamer
+ *   Permission is hereby granted, free of charge, to any person obtaining
+ *   a copy of this software and associated documentation files (the
+ *   "Software"), to deal in the Software without restriction, including
+ *   without limitation the rights to use, copy, modify, merge, publish,
+ *   distribute, sublicense, and/or sell copies of the Software, and to
+ *   permit persons to whom the Software is furnished to do so, subject to
+ *   the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be
+ *   included in all copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *   EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *   MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *   NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ *   LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ *   OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ *   WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+// -*- mode: java; c-basic-offset: 2; -*-
+package io.mohamed.resolver.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link ComparableVersion} comparisons, through the version string cache and on parsed
+ * versions, and sorting the version list of a metadata file. Run with -prof gc to check that
+ * comparing parsed versions allocates nothing.
+ *
+ * @author Mohamed Tamer
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ComparableVersionBenchmark {
+
+  // versions in the shapes which are met in maven-metadata.xml files
+  private static final String[] SHAPES = {
+    "%d.%d", "%d.%d.%d", "%d.%d-rc%d", "%d.%d.%d-jre", "%d.%d-alpha-%d", "%d.%d.%d-SNAPSHOT"
+  };
+
+  // the versions to sort, shuffled
+  private List<String> versions;
+  // the parsed versions to sort, in the same order
+  private List<ComparableVersion> parsedVersions;
+  // the index of the next pair to compare
+  private int next;
+
+  @Setup
+  public void setUp() {
+    Random random = new Random(42);
+    versions = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      String shape = SHAPES[i % SHAPES.length];
+      versions.add(
+          String.format(shape, random.nextInt(40), random.nextInt(20), 1 + random.nextInt(12)));
+    }
+    Collections.shuffle(versions, random);
+    parsedVersions = new ArrayList<>();
+    for (String version : versions) {
+      parsedVersions.add(ComparableVersion.parse(version));
+    }
+  }
+
+  @Benchmark
+  public int compareStrings() {
+    int i = next++ % (versions.size() - 1);
+    return ComparableVersion.compare(versions.get(i), versions.get(i + 1));
+  }
+
+  @Benchmark
+  public int compareParsed() {
+    int i = next++ % (parsedVersions.size() - 1);
+    return parsedVersions.get(i).compareTo(parsedVersions.get(i + 1));
+  }
+
+  @Benchmark
+  public List<String> sortStrings() {
+    List<String> sorted = new ArrayList<>(versions);
+    sorted.sort(ComparableVersion::compare);
+    return sorted;
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ *  Copyright (c) 2021 Mohamed Tamer
+ *   Permission is hereby granted, free of charge, to any person obtaining
+ *   a copy of this software and associated documentation files (the
+ *   "Software"), to deal in the Software without restriction, including
+ *   without limitation the rights to use, copy, modify, merge, publish,
+ *   distribute, sublicense, and/or sell copies of the Software, and to
+ *   permit persons to whom the Software is furnished to do so, subject to
+ *   the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be
+ *   included in all copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *   EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *   MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *   NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ *   LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ *   OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ *   WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+// -*- mode: java; c-basic-offset: 2; -*-
+package io.mohamed.resolver.core;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stops a running resolve or download. Cancelling drops the queued tasks, interrupts the running
+ * ones and aborts the requests which are in flight, so the resolve or download finishes promptly
+ * instead of waiting for a repository which doesn't answer.
+ *
+ * @author Mohamed Tamer
+ */
+public final class CancellationHandle {
+
+  // expires the deadlines of all the handles
+  private static final ScheduledThreadPoolExecutor deadlines = newDeadlineExecutor();
+  // called once when the handle is cancelled
+  private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+  // a flag to indicate that the handle was cancelled
+  private volatile boolean cancelled = false;
+  // a flag to indicate that the work has finished, so there is nothing left to cancel
+  private volatile boolean finished = false;
+  // the expiry of the deadline, or null if the handle has no deadline
+  private volatile ScheduledFuture<?> deadline;
+
+  /** Creates a new CancellationHandle */
+  CancellationHandle() {}
+
+  private static ScheduledThreadPoolExecutor newDeadlineExecutor() {
+    ScheduledThreadPoolExecutor executor =
+        new ScheduledThreadPoolExecutor(
+            1,
+            runnable -> {
+              Thread thread = new Thread(runnable, "resolver-deadlines");
+              thread.setDaemon(true);
+              return thread;
+            });
+    // most work finishes long before its deadline, don't keep the expiry queued until then
+    executor.setRemoveOnCancelPolicy(true);
+    return executor;
+  }
+
+  /**
+   * Cancels the resolve or download, cancelling a handle whose work has finished has no effect.
+   * The callback of a cancelled resolve reports that the artifact wasn't found.
+   */
+  public void cancel() {
+    if (finished) {
+      return;
+    }
+    cancelled = true;
+    for (Runnable listener : listeners) {
+      // a listener may be removed by a concurrent cancel, which runs it instead
+      if (listeners.remove(listener)) {
+        listener.run();
+      }
+    }
+  }
+
+  /** @return true if the handle was cancelled */
+  public boolean isCancelled() {
+    return cancelled;
+  }
+
+  /**
+   * Registers a listener which is called once when the handle is cancelled, right away if it was
+   * cancelled already
+   *
+   * @param listener the listener
+   */
+  void onCancel(Runnable listener) {
+    listeners.add(listener);
+    if (cancelled && listeners.remove(listener)) {
+      listener.run();
+    }
+  }
+
+  /** Marks the work as finished, later cancellations and deadlines have no effect */
+  void finish() {
+    finished = true;
+    listeners.clear();
+    ScheduledFuture<?> deadline = this.deadline;
+    if (deadline != null) {
+      deadline.cancel(false);
+    }
+  }
+
+  /**
+   * Cancels the handle once the given time has passed
+   *
+   * @param timeoutMillis the time in milliseconds, 0 for no deadline
+   * @param onExpired called before the handle is cancelled because the deadline has passed
+   */
+  void cancelAfter(long timeoutMillis, Runnable onExpired) {
+    if (timeoutMillis <= 0) {
+      return;
+    }
+    deadline =
+        deadlines.schedule(
+            () -> {
+              if (!cancelled && !finished) {
+                onExpired.run();
+                cancel();
+              }
+            },
+            timeoutMillis,
+            TimeUnit.MILLISECONDS);
+    if (finished) {
+      // the work finished while the deadline was scheduled
+      deadline.cancel(false);
+    }
+  }
+}
@@ -0,0 +1,278 @@
+/*
+ *  Copyright (c) 2021 Mohamed Tamer
+ *   Permission is hereby granted, free of charge, to any person obtaining
+ *   a copy of this software and associated documentation files (the
+ *   "Software"), to deal in the Software without restriction, including
+ *   without limitation the rights to use, copy, modify, merge, publish,
+ *   distribute, sublicense, and/or sell copies of the Software, and to
+ *   permit persons to whom the Software is furnished to do so, subject to
+ *   the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be
+ *   included in all copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *   EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *   MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *   NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ *   LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ *   OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ *   WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+// -*- mode: java; c-basic-offset: 2; -*-
+package io.mohamed.resolver.core;
+
+import io.mohamed.resolver.core.callback.DependencyResolverCallback;
+import io.mohamed.resolver.core.model.Dependency;
+import io.mohamed.resolver.core.model.Repository;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers the resolved dependencies of every artifact, so the transitive closure of an artifact
+ * which was resolved before, by any root, is spliced into the graph instead of being read from its
+ * POM files again. The closures are stored as one record per artifact, which holds the mediated
+ * input of the artifact: its packaging, the repository its POM file was found in and its resolved
+ * dependencies. Subtrees which are shared by many roots are therefore stored once, and walking the
+ * records of an artifact yields its whole closure without touching the network or the disk.
+ *
+ * <p>The records depend on the repositories, the routes and the scopes which are resolved, so the
+ * store is partitioned by a fingerprint of that configuration, and every partition is persisted in
+ * its own file in the caches directory. Artifacts whose POM file may change, snapshots and
+ * artifacts with version ranges, are never stored.
+ *
+ * @author Mohamed Tamer
+ */
+class ClosureStore {
+
+  // the name of the directory the partitions are persisted in
+  private static final String CLOSURES_DIRECTORY_NAME = "closures";
+  // identifies the scopes which are resolved, test dependencies are skipped
+  private static final String SCOPES = "scopes compile provided runtime system";
+  // written instead of a missing type or repository
+  private static final String NONE = "-";
+  // the shared instance
+  private static ClosureStore instance;
+  // the loaded partitions, by configuration fingerprint
+  private final Map<String, Partition> partitions = new ConcurrentHashMap<>();
+  // the directory the partitions are persisted in
+  private final File directory;
+
+  private ClosureStore(File directory) {
+    this.directory = directory;
+  }
+
+  /** @return the shared closure store */
+  static synchronized ClosureStore getInstance() {
+    if (instance == null) {
+      instance = new ClosureStore(new File(Util.getCachesDirectory(), CLOSURES_DIRECTORY_NAME));
+    }
+    return instance;
+  }
+
+  /**
+   * Computes the fingerprint of a resolve configuration
+   *
+   * @param repositories the repositories, in their declared order
+   * @param routes the user declared routes
+   * @return the fingerprint, which is safe to use as a file name
+   */
+  static String fingerprint(List<Repository> repositories, Map<String, String> routes) {
+    StringBuilder configuration = new StringBuilder(SCOPES);
+    for (Repository repository : repositories) {
+      configuration.append("\nrepository ").append(repository.getUrl());
+    }
+    for (Map.Entry<String, String> route : routes.entrySet()) {
+      configuration.append("\nroute ").append(route.getKey()).append('=').append(route.getValue());
+    }
+    // the first 8 bytes of the checksum are enough to tell the configurations apart
+    return Util.sha256(configuration.toString().getBytes(StandardCharsets.UTF_8)).substring(0, 16);
+  }
+
+  /**
+   * Returns the records of a resolve configuration, they're loaded from the caches directory the
+   * first time the configuration is used in the process
+   *
+   * @param fingerprint the fingerprint of the resolve configuration
+   * @param callback reports a partition file which couldn't be read
+   * @return the partition of the configuration
+   */
+  Partition getPartition(String fingerprint, DependencyResolverCallback callback) {
+    Partition partition =
+        partitions.computeIfAbsent(
+            fingerprint, key -> new Partition(new File(directory, key + ".txt")));
+    partition.load(callback);
+    return partition;
+  }
+
+  /** Forgets all the records */
+  void clear() {
+    for (Partition partition : partitions.values()) {
+      partition.clear();
+    }
+  }
+
+  /** The resolved input of an artifact */
+  static final class Node {
+
+    // the packaging of the artifact, or null if its POM file doesn't declare one
+    private final String type;
+    // the url of the repository the POM file was found in, or null if it's unknown
+    private final String repositoryUrl;
+    // the resolved dependencies, they are copied before they're handed out
+    private final List<Dependency> dependencies;
+
+    /**
+     * Creates a new Node
+     *
+     * @param type the packaging of the artifact, or null if its POM file doesn't declare one
+     * @param repositoryUrl the url of the repository the POM file was found in, or null
+     * @param dependencies the resolved dependencies
+     */
+    Node(String type, String repositoryUrl, List<Dependency> dependencies) {
+      this.type = type;
+      this.repositoryUrl = repositoryUrl;
+      List<Dependency> copies = new ArrayList<>(dependencies.size());
+      for (Dependency dependency : dependencies) {
+        copies.add(copy(dependency));
+      }
+      this.dependencies = Collections.unmodifiableList(copies);
+    }
+
+    /** @return the packaging of the artifact, or null if its POM file doesn't declare one */
+    String getType() {
+      return type;
+    }
+
+    /** @return the url of the repository the POM file was found in, or null if it's unknown */
+    String getRepositoryUrl() {
+      return repositoryUrl;
+    }
+
+    /** @return new instances of the resolved dependencies, which the caller may modify */
+    List<Dependency> newDependencies() {
+      List<Dependency> copies = new ArrayList<>(dependencies.size());
+      for (Dependency dependency : dependencies) {
+        copies.add(copy(dependency));
+      }
+      return copies;
+    }
+
+    private static Dependency copy(Dependency dependency) {
+      return new Dependency(
+          dependency.getGroupId(),
+          dependency.getArtifactId(),
+          dependency.getVersion(),
+          dependency.getType(),
+          dependency.getScope());
+    }
+  }
+
+  /** The records of one resolve configuration */
+  static final class Partition extends PersistentStore {
+
+    // the records, by coordinates
+    private final Map<String, Node> nodes = new ConcurrentHashMap<>();
+
+    private Partition(File file) {
+      super(file, "the resolved closures");
+    }
+
+    /**
+     * Looks up the record of an artifact
+     *
+     * @param coordinates the group ID, artifact ID and version of the artifact
+     * @return the record, or null if the artifact wasn't resolved with this configuration before
+     */
+    Node get(String coordinates) {
+      return nodes.get(coordinates);
+    }
+
+    /**
+     * Stores the record of a resolved artifact
+     *
+     * @param coordinates the group ID, artifact ID and version of the artifact
+     * @param node the record
+     */
+    void put(String coordinates, Node node) {
+      if (nodes.put(coordinates, node) == null) {
+        markDirty();
+      }
+    }
+
+    private void clear() {
+      nodes.clear();
+      markCleared();
+    }
+
+    @Override
+    void read(BufferedReader reader) throws IOException {
+      String coordinates = null;
+      String type = null;
+      String repositoryUrl = null;
+      List<Dependency> dependencies = new ArrayList<>();
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String[] parts = line.split(" ");
+        if (parts.length != 4) {
+          continue;
+        }
+        if (parts[0].equals("node")) {
+          if (coordinates != null) {
+            nodes.put(coordinates, new Node(type, repositoryUrl, dependencies));
+          }
+          coordinates = parts[1];
+          type = parts[2].equals(NONE) ? null : parts[2];
+          repositoryUrl = parts[3].equals(NONE) ? null : parts[3];
+          dependencies.clear();
+        } else if (parts[0].equals("child") && coordinates != null) {
+          String[] gav = parts[1].split(":");
+          if (gav.length == 3) {
+            dependencies.add(new Dependency(gav[0], gav[1], gav[2], parts[2], parts[3]));
+          }
+        }
+      }
+      if (coordinates != null) {
+        nodes.put(coordinates, new Node(type, repositoryUrl, dependencies));
+      }
+    }
+
+    @Override
+    void write(BufferedWriter writer) throws IOException {
+      for (Map.Entry<String, Node> entry : nodes.entrySet()) {
+        Node node = entry.getValue();
+        writer.write(
+            "node "
+                + entry.getKey()
+                + " "
+                + (node.type == null ? NONE : node.type)
+                + " "
+                + (node.repositoryUrl == null ? NONE : node.repositoryUrl));
+        writer.newLine();
+        for (Dependency dependency : node.dependencies) {
+          writer.write(
+              "child "
+                  + dependency.getGroupId()
+                  + ":"
+                  + dependency.getArtifactId()
+                  + ":"
+                  + dependency.getVersion()
+                  + " "
+                  + dependency.getType()
+                  + " "
+                  + dependency.getScope());
+          writer.newLine();
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,320 @@
+/*
+ *  Copyright (c) 2021 Mohamed Tamer
+ *   Permission is hereby granted, free of charge, to any person obtaining
+ *   a copy of this software and associated documentation files (the
+ *   "Software"), to deal in the Software without restriction, including
+ *   without limitation the rights to use, copy, modify, merge, publish,
+ *   distribute, sublicense, and/or sell copies of the Software, and to
+ *   permit persons to whom the Software is furnished to do so, subject to
+ *   the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be
+ *   included in all copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *   EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *   MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *   NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ *   LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ *   OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ *   WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+// -*- mode: java; c-basic-offset: 2; -*-
+package io.mohamed.resolver.core;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A version which is ordered the way maven orders versions. A version is split on dots, dashes and
+ * transitions between digits and letters, numbers are compared numerically, and qualifiers are
+ * ordered alpha &lt; beta &lt; milestone &lt; rc &lt; snapshot &lt; release &lt; sp &lt; any other
+ * qualifier, so 1.9 &lt; 1.10 and 1.0-rc1 &lt; 1.0 &lt; 1.0-sp1. Trailing zeros are ignored, so 1.0
+ * equals 1.
+ *
+ * <p>Every version string is parsed once into a tree of interned tokens, which is cached for the
+ * whole process, and comparing two parsed versions allocates nothing.
+ *
+ * @author Mohamed Tamer
+ */
+final class ComparableVersion implements Comparable<ComparableVersion> {
+
+  // the maximum number of cached versions, the cache starts over when it's full
+  private static final int MAX_CACHED_VERSIONS = 16_384;
+  // the known qualifiers, in their order, the empty qualifier is a release
+  private static final List<String> QUALIFIERS =
+      Arrays.asList("alpha", "beta", "milestone", "rc", "snapshot", "", "sp");
+  // the comparable form of the release qualifier
+  private static final String RELEASE_VERSION_INDEX = String.valueOf(QUALIFIERS.indexOf(""));
+  // the qualifiers which mean the same as a known qualifier
+  private static final Map<String, String> ALIASES = new HashMap<>();
+  // the parsed versions, by their version string
+  private static final Map<String, ComparableVersion> versions = new ConcurrentHashMap<>();
+  // the number and qualifier tokens, shared by all the versions
+  private static final Map<String, Item> tokens = new ConcurrentHashMap<>();
+
+  static {
+    ALIASES.put("ga", "");
+    ALIASES.put("final", "");
+    ALIASES.put("release", "");
+    ALIASES.put("cr", "rc");
+  }
+
+  // the version string
+  private final String value;
+  // the parsed version
+  private final Item items;
+
+  private ComparableVersion(String value, Item items) {
+    this.value = value;
+    this.items = items;
+  }
+
+  /**
+   * Returns the parsed form of the given version
+   *
+   * @param version the version string
+   * @return the parsed version
+   */
+  static ComparableVersion parse(String version) {
+    ComparableVersion parsed = versions.get(version);
+    if (parsed == null) {
+      parsed = new ComparableVersion(version, parseItems(version));
+      if (versions.size() >= MAX_CACHED_VERSIONS) {
+        versions.clear();
+      }
+      versions.put(version, parsed);
+    }
+    return parsed;
+  }
+
+  /**
+   * Compares two version strings
+   *
+   * @param version1 the first version
+   * @param version2 the second version
+   * @return a negative number, zero or a positive number if the first version is lower than, equal
+   *     to or higher than the second version
+   */
+  static int compare(String version1, String version2) {
+    return parse(version1).compareTo(parse(version2));
+  }
+
+  @Override
+  public int compareTo(ComparableVersion other) {
+    return items.compareTo(other.items);
+  }
+
+  @Override
+  public String toString() {
+    return value;
+  }
+
+  private static Item parseItems(String version) {
+    version = version.toLowerCase(Locale.ENGLISH);
+    List<Object> root = new ArrayList<>();
+    List<Object> list = root;
+    Deque<List<Object>> stack = new ArrayDeque<>();
+    stack.push(list);
+    boolean isDigit = false;
+    int startIndex = 0;
+    for (int i = 0; i < version.length(); i++) {
+      char c = version.charAt(i);
+      if (c == '.' || c == '-') {
+        if (i == startIndex) {
+          list.add(number("0"));
+        } else {
+          list.add(token(isDigit, version.substring(startIndex, i), false));
+        }
+        startIndex = i + 1;
+        if (c == '-') {
+          // everything after a dash is a sub list
+          list = subList(list, stack);
+        }
+      } else if (Character.isDigit(c)) {
+        if (!isDigit && i > startIndex) {
+          // a qualifier followed by a number, e.g. rc1
+          list.add(token(false, version.substring(startIndex, i), true));
+          startIndex = i;
+          list = subList(list, stack);
+        }
+        isDigit = true;
+      } else {
+        if (isDigit && i > startIndex) {
+          // a number followed by a qualifier, e.g. 1rc
+          list.add(token(true, version.substring(startIndex, i), false));
+          startIndex = i;
+          list = subList(list, stack);
+        }
+        isDigit = false;
+      }
+    }
+    if (version.length() > startIndex) {
+      list.add(token(isDigit, version.substring(startIndex), false));
+    }
+    // the inner lists are on top of the stack, so they are normalized before their parents
+    while (!stack.isEmpty()) {
+      normalize(stack.pop());
+    }
+    return freeze(root);
+  }
+
+  private static List<Object> subList(List<Object> list, Deque<List<Object>> stack) {
+    List<Object> subList = new ArrayList<>();
+    list.add(subList);
+    stack.push(subList);
+    return subList;
+  }
+
+  /** Removes the trailing zeros and release qualifiers, which don't change the version */
+  private static void normalize(List<Object> list) {
+    for (int i = list.size() - 1; i >= 0; i--) {
+      Object item = list.get(i);
+      if (item instanceof Item ? ((Item) item).isNull() : ((List<?>) item).isEmpty()) {
+        list.remove(i);
+      } else if (item instanceof Item) {
+        break;
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Item freeze(List<Object> list) {
+    Item[] children = new Item[list.size()];
+    for (int i = 0; i < children.length; i++) {
+      Object item = list.get(i);
+      children[i] = item instanceof Item ? (Item) item : freeze((List<Object>) item);
+    }
+    return new Item(Item.LIST, null, children);
+  }
+
+  private static Item token(boolean isDigit, String token, boolean followedByDigit) {
+    if (isDigit) {
+      return number(token);
+    }
+    if (followedByDigit && token.length() == 1) {
+      // a1, b1 and m1 are short for alpha1, beta1 and milestone1
+      switch (token.charAt(0)) {
+        case 'a':
+          token = "alpha";
+          break;
+        case 'b':
+          token = "beta";
+          break;
+        case 'm':
+          token = "milestone";
+          break;
+        default:
+          break;
+      }
+    }
+    String qualifier = ALIASES.getOrDefault(token, token);
+    int index = QUALIFIERS.indexOf(qualifier);
+    // unknown qualifiers sort after the known ones, and alphabetically among each other
+    String comparable = index == -1 ? QUALIFIERS.size() + "-" + qualifier : String.valueOf(index);
+    return tokens.computeIfAbsent("q" + comparable, key -> new Item(Item.STRING, comparable, null));
+  }
+
+  private static Item number(String digits) {
+    int start = 0;
+    while (start < digits.length() - 1 && digits.charAt(start) == '0') {
+      start++;
+    }
+    String number = digits.substring(start);
+    return tokens.computeIfAbsent("n" + number, key -> new Item(Item.INT, number, null));
+  }
+
+  /** A number, a qualifier or a list of items */
+  private static final class Item {
+
+    // the kinds of items
+    static final int INT = 0;
+    static final int STRING = 1;
+    static final int LIST = 2;
+    // the kind of this item
+    private final int kind;
+    // the digits of a number without leading zeros, or the comparable form of a qualifier
+    private final String value;
+    // the items of a list
+    private final Item[] children;
+
+    Item(int kind, String value, Item[] children) {
+      this.kind = kind;
+      this.value = value;
+      this.children = children;
+    }
+
+    /** @return true if the item is a zero, a release qualifier or an empty list */
+    boolean isNull() {
+      switch (kind) {
+        case INT:
+          return value.equals("0");
+        case STRING:
+          return value.equals(RELEASE_VERSION_INDEX);
+        default:
+          return children.length == 0;
+      }
+    }
+
+    /**
+     * Compares this item with another item
+     *
+     * @param other the other item, or null if the other version has no item at this position
+     * @return a negative number, zero or a positive number if this item is lower than, equal to or
+     *     higher than the other item
+     */
+    int compareTo(Item other) {
+      if (other == null) {
+        switch (kind) {
+          case INT:
+            return isNull() ? 0 : 1;
+          case STRING:
+            return value.compareTo(RELEASE_VERSION_INDEX);
+          default:
+            return children.length == 0 ? 0 : children[0].compareTo(null);
+        }
+      }
+      switch (kind) {
+        case INT:
+          // numbers are higher than qualifiers and lists
+          return other.kind == INT ? compareNumbers(value, other.value) : 1;
+        case STRING:
+          return other.kind == STRING ? value.compareTo(other.value) : -1;
+        default:
+          if (other.kind != LIST) {
+            return other.kind == INT ? -1 : 1;
+          }
+          int length = Math.max(children.length, other.children.length);
+          for (int i = 0; i < length; i++) {
+            Item left = i < children.length ? children[i] : null;
+            Item right = i < other.children.length ? other.children[i] : null;
+            int result;
+            if (left == null) {
+              result = right == null ? 0 : -right.compareTo(null);
+            } else {
+              result = left.compareTo(right);
+            }
+            if (result != 0) {
+              return result;
+            }
+          }
+          return 0;
+      }
+    }
+
+    private static int compareNumbers(String digits1, String digits2) {
+      if (digits1.length() != digits2.length()) {
+        return Integer.compare(digits1.length(), digits2.length());
+      }
+      return digits1.compareTo(digits2);
+    }
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ *  Copyright (c) 2021 Mohamed Tamer
+ *   Permission is hereby granted, free of charge, to any person obtaining
+ *   a copy of this software and associated documentation files (the
+ *   "Software"), to deal in the Software without restriction, including
+ *   without limitation the rights to use, copy, modify, merge, publish,
+ *   distribute, sublicense, and/or sell copies of the Software, and to
+ *   permit persons to whom the Software is furnished to do so, subject to
+ *   the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be
+ *   included in all copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *   EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *   MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *   NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ *   LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ *   OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ *   WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+// -*- mode: java; c-basic-offset: 2; -*-
+package io.mohamed.resolver.core;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Interns the group ID and artifact ID pairs met while resolving and gives each pair a dense int
+ * ID, so the dependency graph can index plain arrays by artifact instead of hashing strings. The
+ * strings themselves are deduplicated, every group ID is stored once however many artifacts share
+ * it.
+ *
+ * @author Mohamed Tamer
+ */
+class CoordinateTable {
+
+  // the canonical instance of every string
+  private final Map<String, String> strings = new HashMap<>();
+  // the ID of every group ID and artifact ID pair
+  private final Map<Key, Integer> ids = new HashMap<>();
+
+  /**
+   * Returns the ID of the given group ID and artifact ID, a new ID is given to pairs which weren't
+   * met before
+   *
+   * @param groupId the group ID
+   * @param artifactId the artifact ID
+   * @return the ID
+   */
+  int intern(String groupId, String artifactId) {
+    Key key = new Key(groupId, artifactId);
+    Integer id = ids.get(key);
+    if (id != null) {
+      return id;
+    }
+    int newId = ids.size();
+    ids.put(new Key(canonical(groupId), canonical(artifactId)), newId);
+    return newId;
+  }
+
+  /**
+   * Returns the ID of the given group ID and artifact ID
+   *
+   * @param groupId the group ID
+   * @param artifactId the artifact ID
+   * @return the ID, or -1 if the pair wasn't interned
+   */
+  int find(String groupId, String artifactId) {
+    Integer id = ids.get(new Key(groupId, artifactId));
+    return id == null ? -1 : id;
+  }
+
+  private String canonical(String string) {
+    String existing = strings.putIfAbsent(string, string);
+    return existing == null ? string : existing;
+  }
+
+  /** A group ID and artifact ID pair with a precomputed hash */
+  private static final class Key {
+
+    // the group ID
+    private final String groupId;
+    // the artifact ID
+    private final String artifactId;
+    // the precomputed hash
+    private final int hash;
+
+    Key(String groupId, String artifactId) {
+      this.groupId = groupId;
+      this.artifactId = artifactId;
+      hash = groupId.hashCode() * 31 + artifactId.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key key = (Key) obj;
+      return hash == key.hash && groupId.equals(key.groupId) && artifactId.equals(key.artifactId);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+}
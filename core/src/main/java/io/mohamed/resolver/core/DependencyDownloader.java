@@ -32,15 +32,20 @@ import io.mohamed.resolver.core.callback.FilesDownloadedCallback;
 import io.mohamed.resolver.core.model.Dependency;
 import io.mohamed.resolver.core.model.Repository;
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.net.URL;
 import java.nio.channels.Channels;
 import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 
 /**
@@ -50,26 +55,38 @@ import org.apache.commons.io.FilenameUtils;
  */
 public class DependencyDownloader {
 
+  // the default number of worker threads used for downloading library files
+  public static final int DEFAULT_MAX_THREADS = 4;
+  // the scope which runs the downloader tasks
+  private final TaskScope scope;
+  // the session whose repository state is shared, or null if this downloader has its own
+  private final ResolutionSession session;
+  // the files which are being downloaded or extracted, by their cache path
+  private final SingleFlight<String, File> downloads;
+  // the thread, cache, retry and timeout options
+  private final SessionOptions options;
+  // the time the download is cancelled after, or 0 for no deadline
+  private final long timeoutMillis;
+  // cancels this download
+  private final CancellationHandle handle = new CancellationHandle();
+  // the list of the downloaded files
+  private List<File> downloadedFiles = new ArrayList<>();
+  // the dependencies which should be downloaded
+  private final List<Dependency> dependenciesToLoad = new ArrayList<>();
+  // the file downloaded for each dependency to load, in the same order
+  private AtomicReferenceArray<File> dependencyFiles;
   // a flag to indicate weather to filter appinventor dependencies from the downloaded dependencies
-  private static boolean filterAppInventorDependencies;
+  private boolean filterAppInventorDependencies;
   // list of all repositories which dependencies will be validated against
-  private static List<Repository> allRepositories = new ArrayList<>();
+  private List<Repository> allRepositories;
   // weather to include jar files only or not
-  private static boolean jarOnly;
+  private boolean jarOnly;
   // weather to log debug messages or not
-  private static boolean verbose;
+  private boolean verbose;
   // the dependency resolver callback
-  private static DependencyResolverCallback dependencyResolverCallback;
-  // the list of the downloaded files
-  List<File> downloadedFiles = new ArrayList<>();
-  // the dependencies which should be downloaded
-  ArrayList<Dependency> dependenciesToLoad = new ArrayList<>();
-  // the dependencies which hasn't been downloaded yet.
-  ArrayList<Dependency> remainingDependencies = new ArrayList<>();
-  // the threads which is currently downloading dependencies
-  List<DownloaderThread> downloaderThreads = new ArrayList<>();
-  // a flag to indicate that this instance has finished downloading
-  private boolean done = false;
+  private DependencyResolverCallback dependencyResolverCallback;
+  // fetches library files from the repositories
+  private RepositoryFetcher fetcher;
   // the callback which is called when downloading all files finishes
   private FilesDownloadedCallback callback;
   // a flag to indicate weather to merge files into one JAR/AAR or not
@@ -80,9 +97,25 @@ public class DependencyDownloader {
   /**
    * Creates a new DependencyDownloader
    *
+   * @param options the thread, cache, retry and timeout options
+   * @param timeoutMillis the time the download is cancelled after, or 0 for no deadline
+   * @param session the session whose repository state is shared, or null to fetch the files with
+   *     the given options
    * @see DependencyDownloader.Builder
    */
-  private DependencyDownloader() {}
+  private DependencyDownloader(
+      SessionOptions options, long timeoutMillis, ResolutionSession session) {
+    this.session = session;
+    downloads = session != null ? session.getDownloads() : new SingleFlight<>(false);
+    this.options = options;
+    this.timeoutMillis = timeoutMillis;
+    scope =
+        new TaskScope(
+            options.getExecutorMode().newExecutor("downloader", options.getMaxThreads()),
+            true,
+            this::finishDownload,
+            t -> dependencyResolverCallback.error("Downloading a library file failed: " + t));
+  }
 
   /**
    * Returns the path for the dependency (JAR/AAR), this path is examined against the supported
@@ -111,7 +144,7 @@ public class DependencyDownloader {
    * @param dependency the dependency
    * @return the output file created for the dependency.
    */
-  private static File getOutputFileForDependency(Dependency dependency, String extension) {
+  private File getOutputFileForDependency(Dependency dependency, String extension) {
     String fileDownloadPath = getFileDownloadUrl(dependency);
     File cachesDir = Util.getCachesDirectory();
     File artifactDirectory =
@@ -142,8 +175,9 @@ public class DependencyDownloader {
    * @param repositories list of custom repository urls
    * @param jarOnly includes jar files only
    * @param dependencyResolverCallback the dependency resolver callback
+   * @return a handle which cancels the download
    */
-  private void resolveDependenciesFiles(
+  private CancellationHandle resolveDependenciesFiles(
       List<Dependency> dependencies,
       FilesDownloadedCallback callback,
       boolean filterAppInventorDependencies,
@@ -153,81 +187,119 @@ public class DependencyDownloader {
       List<String> repositories,
       boolean jarOnly,
       DependencyResolverCallback dependencyResolverCallback) {
-    allRepositories = new ArrayList<>();
     this.callback = callback;
     this.merge = merge;
     this.mainDependency = mainDependency;
-    DependencyDownloader.dependencyResolverCallback = dependencyResolverCallback;
-    DependencyDownloader.verbose = verbose;
-    DependencyDownloader.jarOnly = jarOnly;
-    allRepositories.addAll(Repository.COMMON_MAVEN_REPOSITORIES);
-    for (String repoUrl : repositories) {
-      if (!repoUrl.endsWith("/")) {
-        repoUrl = repoUrl + "/";
-      }
-      allRepositories.add(new Repository(repoUrl));
-    }
-    DependencyDownloader.filterAppInventorDependencies = filterAppInventorDependencies;
-    // don't perform download if we have already finished downloading
-    if (done) {
-      return;
+    this.dependencyResolverCallback = dependencyResolverCallback;
+    this.verbose = verbose;
+    this.jarOnly = jarOnly;
+    this.filterAppInventorDependencies = filterAppInventorDependencies;
+    if (!options.getExecutorMode().isSupported()) {
+      dependencyResolverCallback.info(
+          "[WARNING] Virtual threads aren't supported by this JDK, using platform threads.");
     }
     // filter POM dependencies
+    Set<Dependency> seenDependencies = new HashSet<>();
     for (Dependency dependency : dependencies) {
-      if (!dependency.getType().equals("pom") && !dependenciesToLoad.contains(dependency)) {
+      if (!dependency.getType().equals("pom") && seenDependencies.add(dependency)) {
         dependenciesToLoad.add(dependency);
       }
     }
-    remainingDependencies = dependenciesToLoad;
+    dependencyFiles = new AtomicReferenceArray<>(dependenciesToLoad.size());
+    if (session != null) {
+      allRepositories = session.getRepositories();
+      fetcher = session.getFetcher();
+    } else {
+      allRepositories = ResolutionSession.getRepositories(repositories);
+      fetcher =
+          options.newFetcher(
+              allRepositories,
+              new LinkedHashMap<>(options.getRoutes()),
+              dependencyResolverCallback);
+    }
+    handle.onCancel(this::cancel);
+    handle.cancelAfter(
+        timeoutMillis,
+        () ->
+            dependencyResolverCallback.error(
+                "Downloading the files didn't finish within " + timeoutMillis + "ms."));
     // start downloading
-    doResolve(dependenciesToLoad.get(0));
+    for (int i = 0; i < dependenciesToLoad.size(); i++) {
+      int index = i;
+      scope.fork(
+          new DownloaderTask(
+              dependenciesToLoad.get(i),
+              dependenciesToLoad.get(i).getRepository(),
+              fetcher,
+              (downloadedFile, dependency1) -> dependencyFiles.set(index, downloadedFile)));
+    }
+    scope.finishIfIdle();
+    return handle;
   }
 
-  /**
-   * Recursively downloads all the library files for the dependencies
-   *
-   * @param dependency dependency to download
-   */
-  private void doResolve(Dependency dependency) {
-    DownloaderThread thread =
-        new DownloaderThread(
-            dependency,
-            dependency.getRepository(),
-            ((downloadedFile, dependency1) -> {
-              remainingDependencies.remove(dependency1);
-              if (downloadedFile != null) { // the file wasn't found
-                downloadedFiles.add(downloadedFile);
-              }
-              finishDownload();
-              if (!remainingDependencies.isEmpty()) {
-                doResolve(remainingDependencies.get(0));
-              }
-            }));
-    thread.start();
-    downloaderThreads.add(thread);
+  /** Stops the download when its handle was cancelled */
+  private void cancel() {
+    scope.cancel();
+    if (session == null) {
+      // the fetcher isn't shared, so its requests are aborted too
+      fetcher.abort();
+    }
   }
 
-  /** Called when a download finishes */
+  /** Called exactly once, when all the downloads have finished */
   private void finishDownload() {
-    if (done) {
+    handle.finish();
+    if (session == null) {
+      // the statistics of a shared fetcher are reported when its session is closed
+      logFetcherStatistics();
+    }
+    if (scope.isCancelled()) {
+      // the files of a cancelled download are incomplete, so they aren't merged or reported
+      dependencyResolverCallback.error("The download was cancelled.");
       return;
     }
-    if (dependenciesToLoad.isEmpty()) { // all dependencies has been downloaded
-      done = true;
-      if (merge) {
-        dependencyResolverCallback.merging(MergeStage.START);
-        boolean result = mergeLibraries();
-        if (result) {
-          dependencyResolverCallback.mergeSuccess();
-        } else {
-          dependencyResolverCallback.mergeFailed();
-        }
+    // keep the files in the order of the dependencies, so merging is deterministic
+    for (int i = 0; i < dependencyFiles.length(); i++) {
+      File file = dependencyFiles.get(i);
+      if (file != null) { // the file wasn't found
+        downloadedFiles.add(file);
       }
-      if (callback != null) {
-        callback.done(downloadedFiles);
-        Thread.currentThread().interrupt();
+    }
+    if (merge) {
+      dependencyResolverCallback.merging(MergeStage.START);
+      boolean result = mergeLibraries();
+      if (result) {
+        dependencyResolverCallback.mergeSuccess();
+      } else {
+        dependencyResolverCallback.mergeFailed();
       }
     }
+    if (callback != null) {
+      callback.done(downloadedFiles);
+    }
+  }
+
+  /** Closes the fetcher of this downloader and reports what it did */
+  private void logFetcherStatistics() {
+    fetcher.close();
+    dependencyResolverCallback.verbose(
+        "Skipped "
+            + fetcher.getNegativeCacheHits()
+            + " requests for library files known to be missing, sent "
+            + fetcher.getNegativeCacheMisses()
+            + " requests.");
+    dependencyResolverCallback.verbose(
+        "Found "
+            + fetcher.getRouteHits()
+            + " library files in their predicted repository, "
+            + fetcher.getRouteMisses()
+            + " predictions missed.");
+    dependencyResolverCallback.verbose(
+        "Skipped " + fetcher.getCircuitSkips() + " requests to unhealthy repositories.");
+    dependencyResolverCallback.verbose(
+        "Retried failed requests " + fetcher.getRetryPolicy().getRetries() + " times.");
+    dependencyResolverCallback.verbose(
+        "Coalesced " + downloads.getCoalesced() + " requests with ones which were in flight.");
   }
 
   /**
@@ -272,33 +344,39 @@ public class DependencyDownloader {
     }
   }
 
-  /** The thread which downloads library files */
-  static class DownloaderThread extends Thread {
+  /** The task which downloads library files */
+  class DownloaderTask implements Runnable {
 
     // the callback invoked when the file was download / or an error has occurred.
     private final DownloadCallback callback;
     // the dependency to download
     Dependency dependency;
-    // the dependency's repository
+    // the repository the POM file was found in, or null if it's unknown
     Repository repository;
+    // fetches the file from the repositories
+    private final RepositoryFetcher fetcher;
 
     /**
-     * Creates a new Downloader Thread
+     * Creates a new Downloader Task
      *
      * @param dependency the dependency to download
-     * @param repository the dependency's repository
+     * @param repository the repository the POM file was found in, or null if it's unknown
+     * @param fetcher fetches the file from the repositories
      * @param callback the callback to invoke when the download finishes
      */
-    public DownloaderThread(
-        Dependency dependency, Repository repository, DownloadCallback callback) {
+    public DownloaderTask(
+        Dependency dependency,
+        Repository repository,
+        RepositoryFetcher fetcher,
+        DownloadCallback callback) {
       this.dependency = dependency;
       this.repository = repository;
+      this.fetcher = fetcher;
       this.callback = callback;
     }
 
     @Override
     public void run() {
-      super.run();
       try {
         String fileDownloadPath = getFileDownloadUrl(dependency);
         File outputFile = getOutputFileForDependency(dependency, "");
@@ -308,7 +386,6 @@ public class DependencyDownloader {
           if (cloner.dependencyExists(dependency)) {
             // this file was already included in app inventor libraries, we can skip this
             callback.done(null, dependency);
-            interrupt();
             return;
           }
         }
@@ -316,52 +393,106 @@ public class DependencyDownloader {
           if (outputFile.exists()) {
             // this file was already downloaded in cache, we can directly report success
             callback.done(outputFile, dependency);
-            interrupt();
             return;
           }
         } else if (outputJarFile.exists()) {
           // this file was already downloaded in cache, we can directly report success
           callback.done(outputFile, dependency);
-          interrupt();
           return;
         }
-        URL fileDownloadUrl = null;
-        for (Repository repository : allRepositories) {
-          try {
-            fileDownloadUrl = new URL(repository.getUrl() + fileDownloadPath);
-            try (ReadableByteChannel rbc = Channels.newChannel(fileDownloadUrl.openStream())) {
-              dependencyResolverCallback.dependencyFileDownloading(fileDownloadUrl.toString());
-              try (FileOutputStream fos = new FileOutputStream(outputFile)) {
-                fos.getChannel().transferFrom(rbc, 0, Long.MAX_VALUE);
-                break;
-              }
-            }
-          } catch (FileNotFoundException ignored) {
-          }
+        // tasks which need the same file at the same time share one download
+        File file =
+            downloads.run(outputFile.getPath(), () -> downloadFile(fileDownloadPath, outputFile));
+        if (file != null && jarOnly && Util.isAar(file)) {
+          file =
+              downloads.run(
+                  outputJarFile.getPath(), () -> extractClasses(outputFile, outputJarFile));
         }
-        if (!outputFile.exists()) {
-          callback.done(null, dependency);
-          return;
-        }
-        if (jarOnly && Util.isAar(outputFile)) {
-          dependencyResolverCallback.verbose("Extracting classes.jar from .aar file");
-          Util.extractFile(outputFile.toPath(), "classes.jar", outputJarFile.toPath());
-          dependencyResolverCallback.verbose("Extracted classes.jar from .aar file");
-          if (Util.hasResDirectory(outputFile)) {
-            dependencyResolverCallback.info("[WARNING] The AAR " + outputFile.getName() + " contains resource files. These files will not be included in the final JAR."
-                + "");
+        callback.done(file == null ? null : jarOnly ? outputJarFile : outputFile, dependency);
+      } catch (InterruptedException e) {
+        // the download was cancelled
+        callback.done(null, dependency);
+      }
+    }
+
+    /**
+     * Downloads the file from the first repository which has it, the repository the POM file was
+     * found in is asked first. A download which breaks off is retried as allowed by the retry
+     * policy. The file is written to a temporary file first, so the cached file is never seen
+     * partially downloaded.
+     *
+     * @param fileDownloadPath the path of the file relative to the repository root
+     * @param outputFile the file to save the download to
+     * @return the downloaded file, or null if the download failed
+     * @throws InterruptedException if the download was cancelled
+     */
+    private File downloadFile(String fileDownloadPath, File outputFile)
+        throws InterruptedException {
+      if (outputFile.exists()) {
+        // the file was downloaded by a task which finished in the meantime
+        return outputFile;
+      }
+      for (int attempt = 0; ; attempt++) {
+        File tempFile = null;
+        try (RepositoryFetcher.Response response =
+            fetcher.fetch(dependency.getGroupId(), fileDownloadPath, repository)) {
+          if (response == null) {
+            return null;
+          }
+          dependencyResolverCallback.dependencyFileDownloading(response.getUrl().toString());
+          // other processes may download the same file into the same cache at the same time
+          tempFile =
+              Files.createTempFile(
+                      outputFile.getParentFile().toPath(), outputFile.getName(), ".part")
+                  .toFile();
+          try (ReadableByteChannel rbc = Channels.newChannel(response.getInputStream());
+              FileOutputStream fos = new FileOutputStream(tempFile)) {
+            fos.getChannel().transferFrom(rbc, 0, Long.MAX_VALUE);
+          }
+          Files.move(
+              tempFile.toPath(),
+              outputFile.toPath(),
+              StandardCopyOption.REPLACE_EXISTING,
+              StandardCopyOption.ATOMIC_MOVE);
+          dependencyResolverCallback.dependencyFileDownloaded(response.getUrl().toString());
+          return outputFile;
+        } catch (IOException e) {
+          // don't leave a partially downloaded file in the cache
+          FileUtils.deleteQuietly(tempFile);
+          if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedException();
           }
+          if (!fetcher.getRetryPolicy().acquireRetry(attempt, 0)) {
+            return null;
+          }
+          fetcher.getRetryPolicy().backOff(attempt, 0);
         }
-        if (fileDownloadUrl != null) {
-          dependencyResolverCallback.dependencyFileDownloaded(fileDownloadUrl.toString());
+      }
+    }
+
+    /**
+     * Extracts the classes.jar file of an AAR file
+     *
+     * @param aarFile the AAR file
+     * @param outputJarFile the file to extract the classes to
+     * @return the extracted file, or null if the extraction failed
+     */
+    private File extractClasses(File aarFile, File outputJarFile) {
+      try {
+        dependencyResolverCallback.verbose("Extracting classes.jar from .aar file");
+        Util.extractFile(aarFile.toPath(), "classes.jar", outputJarFile.toPath());
+        dependencyResolverCallback.verbose("Extracted classes.jar from .aar file");
+        if (Util.hasResDirectory(aarFile)) {
+          dependencyResolverCallback.info(
+              "[WARNING] The AAR "
+                  + aarFile.getName()
+                  + " contains resource files. These files will not be included in the final JAR.");
         }
-        callback.done(jarOnly ? outputJarFile : outputFile, dependency);
-        interrupt();
-        return;
-      } catch (IOException ignored) {
+        return outputJarFile;
+      } catch (IOException e) {
+        FileUtils.deleteQuietly(outputJarFile);
+        return null;
       }
-      callback.done(null, dependency);
-      interrupt();
     }
   }
 
@@ -385,6 +516,124 @@ public class DependencyDownloader {
     private boolean jarOnly = false;
     // the dependency resolver callback
     private DependencyResolverCallback dependencyResolverCallback;
+    // the thread, cache, retry and timeout options
+    private final SessionOptions options = new SessionOptions(DEFAULT_MAX_THREADS);
+    // the session whose repository state is shared, or null to use the options of this builder
+    private ResolutionSession session;
+    // the time the download is cancelled after, or 0 for no deadline
+    private long timeoutMillis = 0;
+
+    /**
+     * Specifies the maximum number of files which are downloaded at the same time
+     *
+     * @param maxThreads the number of downloader threads, defaults to {@link #DEFAULT_MAX_THREADS}
+     * @return the Builder instance
+     */
+    public Builder setMaxThreads(int maxThreads) {
+      options.setMaxThreads(maxThreads);
+      return this;
+    }
+
+    /**
+     * Specifies the kind of threads to download files on
+     *
+     * @param executorMode the executor mode, defaults to {@link ExecutorMode#PLATFORM}
+     * @return the Builder instance
+     */
+    public Builder setExecutorMode(ExecutorMode executorMode) {
+      options.setExecutorMode(executorMode);
+      return this;
+    }
+
+    /**
+     * Specifies how long a file which a repository doesn't have is remembered, the repository
+     * isn't asked for that file again until then
+     *
+     * @param negativeCacheTtlMillis the time in milliseconds, defaults to 24 hours, 0 disables the
+     *     negative cache
+     * @return the Builder instance
+     */
+    public Builder setNegativeCacheTtl(long negativeCacheTtlMillis) {
+      options.setNegativeCacheTtl(negativeCacheTtlMillis);
+      return this;
+    }
+
+    /**
+     * Routes the artifacts of a group ID prefix to the given repository, the repository is asked
+     * for these artifacts before any other repository
+     *
+     * @param groupIdPrefix the group ID prefix, e.g. androidx or org.clojure, or * to route all
+     *     artifacts to a mirror
+     * @param repositoryUrl the repository url
+     * @return the Builder instance
+     */
+    public Builder addRoute(String groupIdPrefix, String repositoryUrl) {
+      options.addRoute(groupIdPrefix, repositoryUrl);
+      return this;
+    }
+
+    /**
+     * Specifies how many times a request which failed with a connection error, a server error or
+     * throttling is sent again. Files which the repository doesn't have are never retried.
+     *
+     * @param maxRetries the number of retries, defaults to 3, 0 disables retrying
+     * @return the Builder instance
+     */
+    public Builder setMaxRetries(int maxRetries) {
+      options.setMaxRetries(maxRetries);
+      return this;
+    }
+
+    /**
+     * Specifies how many retries all the requests may use together, which bounds the time an
+     * unreliable repository can add to the whole run
+     *
+     * @param retryBudget the number of retries, defaults to 50
+     * @return the Builder instance
+     */
+    public Builder setRetryBudget(int retryBudget) {
+      options.setRetryBudget(retryBudget);
+      return this;
+    }
+
+    /**
+     * Specifies how long connecting to a repository may take before the request fails, failed
+     * requests are retried as allowed by the retry options
+     *
+     * @param connectTimeoutMillis the time in milliseconds, defaults to 10 seconds, 0 waits forever
+     * @return the Builder instance
+     */
+    public Builder setConnectTimeout(int connectTimeoutMillis) {
+      options.setConnectTimeout(connectTimeoutMillis);
+      return this;
+    }
+
+    /**
+     * Specifies how long a repository may stay silent while a file is read from it before the
+     * request fails, failed requests are retried as allowed by the retry options
+     *
+     * @param readTimeoutMillis the time in milliseconds, defaults to 30 seconds, 0 waits forever
+     * @return the Builder instance
+     */
+    public Builder setReadTimeout(int readTimeoutMillis) {
+      options.setReadTimeout(readTimeoutMillis);
+      return this;
+    }
+
+    /**
+     * Specifies the deadline of the whole download, a download which doesn't finish in time is
+     * cancelled
+     *
+     * @param timeoutMillis the time in milliseconds, defaults to 0, which means no deadline
+     * @return the Builder instance
+     */
+    public Builder setTimeout(long timeoutMillis) {
+      if (timeoutMillis < 0) {
+        throw new IllegalArgumentException("timeoutMillis must not be negative.");
+      }
+      this.timeoutMillis = timeoutMillis;
+      return this;
+    }
 
     /**
      * Specifies weather to log debug messages
@@ -487,12 +736,36 @@ public class DependencyDownloader {
       return this;
     }
 
-    /** Starts resolving dependency files, using the given input */
-    public void resolve() {
+    /**
+     * Downloads the files through the repository fetcher of the given session, so the downloads
+     * share the negative cache, the repository health and the retry budget with the resolves and
+     * downloads which use the same session. The repositories, routes, cache and retry options of
+     * the session replace the ones of this builder, and its dependency resolver callback is used
+     * if none was set.
+     *
+     * @param session the session, or null to download with the options of this builder
+     * @return the Builder instance
+     */
+    public Builder setSession(ResolutionSession session) {
+      this.session = session;
+      return this;
+    }
+
+    /**
+     * Starts resolving dependency files, using the given input. The callback is called once all
+     * the files were downloaded, it isn't called if the download was cancelled.
+     *
+     * @return a handle which cancels the download
+     */
+    public CancellationHandle resolve() {
+      DependencyResolverCallback dependencyResolverCallback = this.dependencyResolverCallback;
+      if (dependencyResolverCallback == null && session != null) {
+        dependencyResolverCallback = session.getCallback();
+      }
       if (dependencyResolverCallback == null) {
         throw new IllegalArgumentException("Dependency Resolver Callback must be set.");
       }
-      new DependencyDownloader()
+      return new DependencyDownloader(options, timeoutMillis, session)
           .resolveDependenciesFiles(
               dependencies,
               callback,
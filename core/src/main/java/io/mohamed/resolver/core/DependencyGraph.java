@@ -0,0 +1,173 @@
+/*
+ *  Copyright (c) 2021 Mohamed Tamer
+ *   Permission is hereby granted, free of charge, to any person obtaining
+ *   a copy of this software and associated documentation files (the
+ *   "Software"), to deal in the Software without restriction, including
+ *   without limitation the rights to use, copy, modify, merge, publish,
+ *   distribute, sublicense, and/or sell copies of the Software, and to
+ *   permit persons to whom the Software is furnished to do so, subject to
+ *   the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be
+ *   included in all copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *   EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *   MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *   NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ *   LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ *   OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ *   WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+// -*- mode: java; c-basic-offset: 2; -*-
+package io.mohamed.resolver.core;
+
+import io.mohamed.resolver.core.model.Dependency;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The dependency graph of a resolve, built one depth level at a time. Only one version of every
+ * group ID and artifact ID is kept, like maven does, the version declared nearest to the root wins
+ * and the version declared first wins between versions at the same depth. The children of a level
+ * are only mediated after every node of the level was resolved, so the subtrees of losing versions
+ * are never fetched.
+ *
+ * <p>Artifacts are interned in a {@link CoordinateTable}, nodes are dense int IDs and the graph is
+ * stored in int arrays, so every lookup is a constant time array access.
+ *
+ * @author Mohamed Tamer
+ */
+class DependencyGraph {
+
+  // gives every group ID and artifact ID pair an int ID
+  private final CoordinateTable coordinates = new CoordinateTable();
+  // the selected node of every artifact ID, or -1 if no version was selected
+  private int[] selectedNodes = new int[64];
+  // the dependency of every node, nodes are numbered in breadth first order
+  private final List<Dependency> nodeDependencies = new ArrayList<>();
+  // the distance of every node from the root
+  private int[] nodeDepths = new int[64];
+  // the artifact IDs of the children of every node, null until the node was resolved
+  private int[][] nodeChildren = new int[64][];
+  // the nodes whose POM file was parsed
+  private final BitSet resolvedNodes = new BitSet();
+  // the declarations of the resolved nodes of the current level, by node, until they're mediated
+  private final Map<Integer, List<Dependency>> pendingChildren = new HashMap<>();
+  // the first node of the current level
+  private int levelStart = 0;
+  // the number of declarations which lost against another version
+  private int omittedVersions = 0;
+
+  /**
+   * Creates a new DependencyGraph
+   *
+   * @param root the dependency given by the user
+   */
+  DependencyGraph(Dependency root) {
+    Arrays.fill(selectedNodes, -1);
+    addNode(root, 0);
+  }
+
+  private int internArtifact(Dependency dependency) {
+    int artifact = coordinates.intern(dependency.getGroupId(), dependency.getArtifactId());
+    if (artifact == selectedNodes.length) {
+      selectedNodes = Arrays.copyOf(selectedNodes, artifact * 2);
+      Arrays.fill(selectedNodes, artifact, selectedNodes.length, -1);
+    }
+    return artifact;
+  }
+
+  private int addNode(Dependency dependency, int depth) {
+    int artifact = internArtifact(dependency);
+    int node = nodeDependencies.size();
+    if (node == nodeDepths.length) {
+      nodeDepths = Arrays.copyOf(nodeDepths, node * 2);
+      nodeChildren = Arrays.copyOf(nodeChildren, node * 2);
+    }
+    nodeDependencies.add(dependency);
+    nodeDepths[node] = depth;
+    selectedNodes[artifact] = node;
+    return node;
+  }
+
+  private int findNode(Dependency dependency) {
+    int artifact = coordinates.find(dependency.getGroupId(), dependency.getArtifactId());
+    return artifact == -1 ? -1 : selectedNodes[artifact];
+  }
+
+  /** @return the dependencies of the level which is being resolved */
+  synchronized List<Dependency> getLevel() {
+    return new ArrayList<>(nodeDependencies.subList(levelStart, nodeDependencies.size()));
+  }
+
+  /**
+   * Records the dependencies declared by a resolved node of the current level
+   *
+   * @param dependency the resolved dependency
+   * @param children the dependencies it declares, in their declared order
+   */
+  synchronized void setChildren(Dependency dependency, List<Dependency> children) {
+    int node = findNode(dependency);
+    if (node < levelStart || nodeDependencies.get(node) != dependency) {
+      return;
+    }
+    int[] childArtifacts = new int[children.size()];
+    for (int i = 0; i < children.size(); i++) {
+      childArtifacts[i] = internArtifact(children.get(i));
+    }
+    nodeChildren[node] = childArtifacts;
+    resolvedNodes.set(node);
+    pendingChildren.put(node, new ArrayList<>(children));
+  }
+
+  /**
+   * Mediates the children of the current level and moves to the next level
+   *
+   * @return the dependencies of the next level which should be resolved, empty if the graph is
+   *     complete
+   */
+  synchronized List<Dependency> nextLevel() {
+    int levelEnd = nodeDependencies.size();
+    for (int node = levelStart; node < levelEnd; node++) {
+      List<Dependency> children = pendingChildren.remove(node);
+      if (children == null) {
+        continue;
+      }
+      for (int i = 0; i < children.size(); i++) {
+        int selected = selectedNodes[nodeChildren[node][i]];
+        if (selected != -1) {
+          // a nearer or earlier declaration won
+          if (!nodeDependencies.get(selected).getVersion().equals(children.get(i).getVersion())) {
+            omittedVersions++;
+          }
+          continue;
+        }
+        addNode(children.get(i), nodeDepths[node] + 1);
+      }
+    }
+    levelStart = levelEnd;
+    return getLevel();
+  }
+
+  /** @return the resolved dependencies, in breadth first order */
+  synchronized List<Dependency> getDependencies() {
+    List<Dependency> dependencies = new ArrayList<>(resolvedNodes.cardinality());
+    for (int node = resolvedNodes.nextSetBit(0);
+        node >= 0;
+        node = resolvedNodes.nextSetBit(node + 1)) {
+      dependencies.add(nodeDependencies.get(node));
+    }
+    return dependencies;
+  }
+
+  /** @return the number of declarations which lost against another version */
+  synchronized int getOmittedVersions() {
+    return omittedVersions;
+  }
+}
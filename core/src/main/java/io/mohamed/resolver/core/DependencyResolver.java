@@ -26,33 +26,13 @@ package io.mohamed.resolver.core;
 import io.mohamed.resolver.core.callback.DependencyResolverCallback;
 import io.mohamed.resolver.core.callback.ResolveCallback;
 import io.mohamed.resolver.core.model.Dependency;
-import io.mohamed.resolver.core.model.ProjectProperty;
 import io.mohamed.resolver.core.model.Repository;
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.URL;
-import java.nio.channels.Channels;
-import java.nio.channels.ReadableByteChannel;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.ConcurrentModificationException;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map.Entry;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import org.jsoup.Jsoup;
-import org.jsoup.select.Elements;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.xml.sax.SAXException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Resolves and downloads the POM file all the dependencies for the given artifact.
@@ -61,374 +41,379 @@ import org.xml.sax.SAXException;
  */
 public class DependencyResolver {
 
-  // keeps track of all the loaded dependencies and the dependency that loaded it
-  private static HashMap<Dependency, Dependency> loadedDependencies = new HashMap<>();
-  // used for iterating asynchronously over the maven repositories
-  int repoIndex = 0;
-  // a flag to indicate that the artifact given by the user was resolved correctly
-  boolean artifactFound = false;
-  // the url to download artifact POM file
-  String pomDownloadUrl = "";
-  // the dependencies collected for the artifact give by the user
-  List<Dependency> dependencies = new ArrayList<>();
-  // the repo url which was used to load the artifact
-  Repository mavenRepo;
-  // keeps track of the dependencies which hasn't been loaded yet
-  List<Dependency> dependenciesToLoad = new ArrayList<>();
-  // keeps track of the threads used for resolving dependencies
-  ArrayList<Thread> resolverThreads = new ArrayList<>();
+  // the default number of worker threads used for resolving POM files
+  public static final int DEFAULT_MAX_THREADS = 8;
+  // the state shared with the resolves of other roots
+  private final ResolutionSession session;
+  // a flag to indicate that the session is closed when this resolve finishes
+  private final boolean ownsSession;
+  // the scope which runs the resolver tasks
+  private final TaskScope scope;
+  // the lock file the result is read from and written to, or null to always traverse the POMs
+  private final File lockFile;
+  // a flag to indicate that the lock file is ignored and written again
+  private final boolean refreshLock;
+  // the lock file which matched this resolve, or null if the POM files are traversed
+  private LockFile lock;
+  // a flag to indicate that some dependency couldn't be found in any repository
+  private volatile boolean failed = false;
+  // the dependency given by the user
+  private Dependency rootDependency;
+  // the dependency graph, built one level at a time
+  private DependencyGraph graph;
+  // the number of resolver tasks of the current level which haven't finished yet
+  private final AtomicInteger levelRemaining = new AtomicInteger();
   // the callback that's called when the resolving is completely done
-  ResolveCallback callback = null;
-  // a flag to indicate that we have finished resolving dependencies
-  private boolean done = false;
+  private ResolveCallback callback = null;
+  // cancels this resolve
+  private final CancellationHandle handle = new CancellationHandle();
   // the list of repositories to search against
-  private List<Repository> allRepositories;
-  private DependencyResolverCallback dependencyResolverCallback;
+  private final List<Repository> allRepositories;
+  private final DependencyResolverCallback dependencyResolverCallback;
 
   /**
    * Creates a new DependencyResolver
    *
+   * @param session the state shared with the resolves of other roots
+   * @param ownsSession true to close the session when this resolve finishes
+   * @param lockFile the lock file to read the result from and write it to, or null for none
+   * @param refreshLock true to ignore the lock file and write it again
    * @see DependencyResolver.Builder
    */
-  private DependencyResolver() {
-    loadedDependencies = new HashMap<>();
-  }
-
-  public static boolean isNumeric(String str) {
-    try {
-      Double.parseDouble(str);
-      return true;
-    } catch (NumberFormatException e) {
-      return false;
-    }
-  }
-
-  /**
-   * Returns the path for the dependency, this path is examined against the supported maven
-   * repositories
-   *
-   * @param dependency The dependency to find its url
-   * @return the dependency url
-   */
-  private static String getPomDownloadUrl(Dependency dependency) {
-    if (dependency == null) {
-      return "";
-    }
-    return dependency.getGroupId().replaceAll("\\.", "/")
-        + "/"
-        + dependency.getArtifactId()
-        + "/"
-        + dependency.getVersion()
-        + "/"
-        + dependency.getArtifactId()
-        + "-"
-        + dependency.getVersion()
-        + ".pom";
+  private DependencyResolver(
+      ResolutionSession session, boolean ownsSession, File lockFile, boolean refreshLock) {
+    this.session = session;
+    this.ownsSession = ownsSession;
+    this.lockFile = lockFile;
+    this.refreshLock = refreshLock;
+    allRepositories = session.getRepositories();
+    dependencyResolverCallback = session.getCallback();
+    scope = new TaskScope(session.getExecutor(), false, this::finish, this::taskFailed);
   }
 
   /**
-   * Replaces the property name declaration in property name with the property value ( if any )
+   * Interpolates the properties referenced by a version, and resolves version ranges and the
+   * LATEST and RELEASE keywords
    *
-   * @param properties the dependency's project properties
+   * @param properties the properties of the project which declares the dependency
    * @param str the dependency version string
+   * @param groupID the dependency group ID
+   * @param artifactId the dependency artifact ID
    * @return the cleaned up version
    */
   private String parseVersion(
-      List<ProjectProperty> properties,
-      String str,
-      String groupID,
-      String artifactId,
-      Repository repository) {
-    Pattern p = Pattern.compile(".*\\$\\{.*}.*");
-    // create matcher for pattern p and given string
-    Matcher m = p.matcher(str);
-    // if an occurrence if a pattern was found in a given string...
-    if (m.find()) {
-      String propertyName = str.replaceAll("(.*)\\$\\{([^&]*)}(.*)", "$1$2$3");
-      for (ProjectProperty projectProperty : properties) {
-        if (projectProperty.getName().equals(propertyName)) {
-          str = projectProperty.getValue();
-        }
-      }
-    }
-    p = Pattern.compile("\\[.*]");
-    m = p.matcher(str);
-    if (!m.find()) {
+      PropertyScope properties, String str, String groupID, String artifactId) {
+    str = properties.interpolate(str);
+    if (!VersionResolver.isDynamic(str)) {
       return str;
     }
-    str = str.replaceAll("\\[(.*)]", "$1");
-    if (str.contains(",")) {
-      String startVersion = str.split(",")[0].trim();
-      String endVersion = str.split(",")[1].trim();
-      try {
-        URL url = new URL(repository.getUrl() + groupID + "/" + artifactId);
-        BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(url.openStream()));
-
-        StringBuilder stringBuilder = new StringBuilder();
-
-        String inputLine;
-        while ((inputLine = bufferedReader.readLine()) != null) {
-          stringBuilder.append(inputLine);
-          stringBuilder.append(System.lineSeparator());
-        }
-
-        bufferedReader.close();
-        String html = stringBuilder.toString().trim();
-        org.jsoup.nodes.Document document = Jsoup.parse(html);
-        Elements elements = document.select("a");
-        List<String> versions = new ArrayList<>();
-        for (org.jsoup.nodes.Element element : elements) {
-          String href = element.attr("href");
-          if (href.endsWith("/") && !href.equals("../")) {
-            versions.add(href.substring(0, href.length() - 1));
-          }
-        }
-        String preferredVersion = null;
-        for (String version : versions) {
-          if (compareVersions(version, startVersion) == 1) {
-            if (compareVersions(version, endVersion) == -1) {
-              preferredVersion = version;
-              break;
-            }
-          }
-        }
-        if (preferredVersion != null) return startVersion;
-      } catch (IOException e) {
-        // the repository doesn't support listing files
-        return startVersion;
-      }
+    String resolvedVersion = null;
+    try {
+      resolvedVersion = session.getVersionResolver().resolve(groupID, artifactId, str);
+    } catch (InterruptedException e) {
+      // the resolve was cancelled
+      Thread.currentThread().interrupt();
     }
-    return str;
+    if (resolvedVersion != null) {
+      return resolvedVersion;
+    }
+    // no known version matches, fall back to the lowest version of the range
+    String lowerBound = VersionResolver.getLowerBound(str);
+    if (lowerBound == null) {
+      dependencyResolverCallback.error(
+          "No version of " + groupID + ":" + artifactId + " matches " + str);
+      return str;
+    }
+    return lowerBound;
   }
 
   /**
-   * Returns a {@link Dependency} for the given dependency XML node
+   * Returns a {@link Dependency} for the given dependency declaration
    *
-   * @param dependencyNode the node to parse
-   * @param properties the project properties
-   * @param parent the dependency parent ( if any )
-   * @return a {@link Dependency} for the xml node or null if the dependency node is bad, or if the
-   *     dependency is a test dependency
+   * @param declaration the declaration to interpret
+   * @param effectivePom the effective POM of the project which declares the dependency
+   * @return a {@link Dependency} for the declaration or null if the dependency is a test dependency
    */
   private Dependency getDependency(
-      Node dependencyNode,
-      List<ProjectProperty> properties,
-      Dependency parent,
-      Repository repository) {
-    if (!dependencyNode.getNodeName().equals("dependency")
-        && !dependencyNode.getNodeName().equals("parent")) {
-      dependencyResolverCallback.error(
-          "Expected a dependency or parent node, found a " + dependencyNode.getNodeName());
-      return null;
-    }
-    Node groupIDNode = null;
-    Node artifactIdNode = null;
-    Node versionNode = null;
-    Node scopeNode = null;
-    Node typeNode = null;
-    // parse groupId, artifactId, version, scope, type nodes for the given dependency
-    for (int y = 0; y < dependencyNode.getChildNodes().getLength(); y++) {
-      Node dependencySubNode = dependencyNode.getChildNodes().item(y);
-      if (dependencySubNode.getNodeName().equals("groupId")) {
-        groupIDNode = dependencySubNode;
-        continue;
-      }
-      if (dependencySubNode.getNodeName().equals("artifactId")) {
-        artifactIdNode = dependencySubNode;
-        continue;
-      }
-      if (dependencySubNode.getNodeName().equals("version")) {
-        versionNode = dependencySubNode;
-        continue;
-      }
-      if (dependencySubNode.getNodeName().equals("scope")) {
-        scopeNode = dependencySubNode;
-      }
-      if (dependencySubNode.getNodeName().equals("type")) {
-        typeNode = dependencySubNode;
-      }
-    }
+      PomModel.PomDependency declaration, EffectivePom effectivePom) {
+    PropertyScope properties = effectivePom.getScope();
     String groupId = "";
     String artifactId = "";
     String version = "";
     String scope = "runtime";
     String type = "jar";
-    if (groupIDNode != null) {
-      groupId = groupIDNode.getTextContent();
+    if (declaration.getGroupId() != null) {
+      groupId = properties.interpolate(declaration.getGroupId());
     } else {
       dependencyResolverCallback.error("No groupId found for dependency!");
     }
-    if (artifactIdNode != null) {
-      artifactId = artifactIdNode.getTextContent();
+    if (declaration.getArtifactId() != null) {
+      artifactId = properties.interpolate(declaration.getArtifactId());
     } else {
       dependencyResolverCallback.error("No artifactId found for dependency " + groupId);
     }
     // TODO: make an optional flag to allow test dependencies
-    if (scopeNode != null) {
-      scope = scopeNode.getTextContent();
+    if (declaration.getScope() != null) {
+      scope = properties.interpolate(declaration.getScope());
       if (scope.equals("test")) {
         return null;
       }
     }
-    if (versionNode != null) {
-      version =
-          parseVersion(properties, versionNode.getTextContent(), groupId, artifactId, repository);
+    if (declaration.getVersion() != null) {
+      version = parseVersion(properties, declaration.getVersion(), groupId, artifactId);
     } else {
-      // make sure no parent has defined the version for this artifact before
-      for (Entry<Dependency, Dependency> dependency : loadedDependencies.entrySet()) {
-        if (dependency.getValue().compare(parent, true)) {
-          // we have this dependency loaded from a prent before!
-          version = dependency.getValue().getVersion();
-          break;
-        }
+      // the version is managed by the project or one of its parents
+      PomModel.PomDependency managed = effectivePom.getManagedDependency(groupId, artifactId);
+      if (managed != null && managed.getVersion() != null) {
+        version = parseVersion(properties, managed.getVersion(), groupId, artifactId);
       }
       if (version.isEmpty()) {
         dependencyResolverCallback.error("No version found for dependency!");
       }
     }
-    if (typeNode != null) {
-      type = typeNode.getTextContent();
+    if (declaration.getType() != null) {
+      type = properties.interpolate(declaration.getType());
     }
     return new Dependency(groupId, artifactId, version, type, scope);
   }
 
-  private int compareVersions(String version1, String version2) {
-    if (isNumeric(version1) && isNumeric(version2)) {
-      double version1Num = Integer.parseInt(version1);
-      double version2Num = Integer.parseInt(version2);
-      return version1Num >= version2Num ? 1 : (version1Num == version2Num ? 0 : -1);
-    } else {
-      int compareToResult = version1.compareToIgnoreCase(version2);
-      return Integer.compare(compareToResult, 0);
-    }
-  }
-
   /**
    * Resolves all dependencies for the given dependency
    *
    * @param dependency the dependency to resolve dependencies for
    * @param callback the callback to call when the resolving is complete
-   * @param repositories custom repositories to search against
-   * @param dependencyResolverCallback the dependency resolver callback
+   * @param timeoutMillis the time the resolve is cancelled after, or 0 for no deadline
+   * @return a handle which cancels the resolve
    */
-  private void resolveDependencies(
-      Dependency dependency,
-      ResolveCallback callback,
-      List<Repository> repositories,
-      DependencyResolverCallback dependencyResolverCallback) {
+  private CancellationHandle resolveDependencies(
+      Dependency dependency, ResolveCallback callback, long timeoutMillis) {
     this.callback = callback;
-    this.dependencyResolverCallback = dependencyResolverCallback;
-    this.artifactFound = false;
-    repoIndex = 0;
-    allRepositories = repositories;
-    resolve(dependency);
+    this.rootDependency = dependency;
+    handle.onCancel(this::cancel);
+    handle.cancelAfter(
+        timeoutMillis,
+        () ->
+            dependencyResolverCallback.error(
+                "Resolving " + dependency + " didn't finish within " + timeoutMillis + "ms."));
+    if (lockFile != null && !refreshLock) {
+      try {
+        lock =
+            LockFile.read(
+                lockFile,
+                dependency,
+                allRepositories,
+                session.getRoutes(),
+                PomSource::getCacheFile);
+      } catch (IOException e) {
+        dependencyResolverCallback.info("[WARNING] Failed to read the lock file " + lockFile);
+      }
+      if (lock != null) {
+        // the POM files are traversed only if the lock file doesn't match
+        dependencyResolverCallback.info("Using the dependencies locked in " + lockFile);
+        scope.finishIfIdle();
+        return handle;
+      }
+    }
+    graph = new DependencyGraph(dependency);
+    resolveLevel(graph.getLevel());
+    // every artifact may have been spliced from the closure store, so no task was forked
+    scope.finishIfIdle();
+    return handle;
   }
 
   /**
-   * Resolves all the dependencies for the given dependency by reading its POM file
+   * Resolves the dependencies of every dependency of a graph level by reading their POM files.
+   * Dependencies which were resolved before are spliced from the closure store right away, and
+   * levels which are spliced completely are followed by their next level without forking a task.
    *
-   * @param dependency the dependency to resolve dependencies for
+   * @param level the dependencies of the level
    */
-  private void resolve(Dependency dependency) {
-    // if resolving is done, it makes no sense to resolve any further dependency
-    if (done) {
-      return;
+  private void resolveLevel(List<Dependency> level) {
+    // if resolving has failed, it makes no sense to resolve any further dependency
+    while (!failed && !scope.isCancelled() && !level.isEmpty()) {
+      List<Dependency> unresolved = new ArrayList<>();
+      for (Dependency dependency : level) {
+        ClosureStore.Node node = session.getClosure(getCoordinates(dependency));
+        if (node != null) {
+          splice(dependency, node);
+        } else {
+          unresolved.add(dependency);
+        }
+      }
+      if (!unresolved.isEmpty()) {
+        levelRemaining.set(unresolved.size());
+        for (Dependency dependency : unresolved) {
+          scope.fork(new ResolverTask(dependency));
+        }
+        return;
+      }
+      // the whole level was spliced, there is no task to continue with the next level
+      level = graph.nextLevel();
     }
-    // don't resolve a dependency which was already resolved/
-    if (loadedDependencies.containsValue(dependency)) {
-      return;
+  }
+
+  /**
+   * Resolves a dependency from its record in the closure store instead of its POM file
+   *
+   * @param dependency the dependency
+   * @param node the record of the dependency
+   */
+  private void splice(Dependency dependency, ClosureStore.Node node) {
+    if (node.getType() != null) {
+      dependency.setType(node.getType());
+    }
+    finishResolve(
+        dependency,
+        PomSource.findRepository(allRepositories, node.getRepositoryUrl()),
+        node.newDependencies());
+  }
+
+  /**
+   * @param dependency a dependency
+   * @param repository the repository its POM file was downloaded from, or null if it's unknown
+   * @return the url of the POM file, or the path of the cached file if the repository is unknown
+   */
+  private static String getPomLocation(Dependency dependency, Repository repository) {
+    if (repository == null) {
+      return PomSource.getCacheFile(dependency).getPath();
     }
-    // start the resolving
-    startResolverThread(dependency);
+    return repository + PomSource.getPath(dependency);
   }
 
-  public void startResolverThread(Dependency dependency) {
-    ResolverThread thread =
-        new ResolverThread(
-            allRepositories.get(repoIndex),
-            dependency,
-            (artifactFound, pomUrl, mavenRepo, dependencies, dependency1) -> {
-              if (!artifactFound) {
-                if (repoIndex >= (allRepositories.size() - 1)) {
-                  this.artifactFound = false;
-                  this.pomDownloadUrl = pomUrl;
-                  this.dependencies = dependencies;
-                  finishResolve(dependency1);
-                } else {
-                  repoIndex++;
-                  resolve(dependency1);
-                }
-              } else {
-                this.artifactFound = true;
-                this.pomDownloadUrl = pomUrl;
-                this.dependencies = dependencies;
-                this.mavenRepo = mavenRepo;
-                finishResolve(dependency1);
-              }
-            });
-    thread.start();
-    resolverThreads.add(thread);
+  private static String getCoordinates(Dependency dependency) {
+    return dependency.getGroupId()
+        + ":"
+        + dependency.getArtifactId()
+        + ":"
+        + dependency.getVersion();
   }
 
   /**
-   * Called when the resolving is done
-   *
-   * @param dependency the dependency which its dependencies were resolved
-   * @throws IOException if any thread throws an IOException
+   * Called when a resolver task of the current level has finished, the children of the level are
+   * mediated and resolved once all its tasks have finished. The calling task is still pending, so
+   * the scope can't finish before the next level was forked.
    */
-  private void finishResolve(Dependency dependency) throws IOException {
-    // it makes no sense to finish resolving dependencies when we had finished resolving already
-    if (done) {
-      return;
+  private void levelTaskFinished() {
+    if (levelRemaining.decrementAndGet() == 0 && !failed && !scope.isCancelled()) {
+      resolveLevel(graph.nextLevel());
     }
-    // we failed to find the artifact in any repository
-    if (!artifactFound) {
-      dependencyResolverCallback.error(
-          "Didn't find artifact " + dependency + " in any repository!");
-      dependencyResolverCallback.error("Searched in:");
-      for (Repository repo : allRepositories) {
-        dependencyResolverCallback.error(repo + pomDownloadUrl);
-      }
-      done = true;
-      return;
+  }
+
+  /** Called exactly once, when all the resolver tasks have finished */
+  private void finish() {
+    handle.finish();
+    List<Dependency> dependencies;
+    if (lock != null) {
+      dependencies = lock.getDependencies();
     } else {
-      dependency.setRepository(mavenRepo);
-      if (!loadedDependencies.containsValue(dependency)) {
-        loadedDependencies.put(dependency, dependency);
+      dependencyResolverCallback.verbose(
+          "Omitted " + graph.getOmittedVersions() + " conflicting versions, nearest wins.");
+      dependencies = graph.getDependencies();
+      if (lockFile != null && !failed) {
+        try {
+          LockFile.write(
+              lockFile,
+              rootDependency,
+              allRepositories,
+              session.getRoutes(),
+              dependencies,
+              PomSource::getCacheFile);
+        } catch (IOException e) {
+          dependencyResolverCallback.info("[WARNING] Failed to write the lock file " + lockFile);
+        }
       }
-      // the artifact's POM was parsed successfully
-      dependencyResolverCallback.dependencyPomParsed(mavenRepo + pomDownloadUrl);
-      // remove dependencies which has been loaded from the dependencies to load
-      try {
-        dependenciesToLoad.removeIf(
-            dependency1 -> dependency1 != null && dependency1.equals(dependency));
-      } catch (ConcurrentModificationException ignored) {
+    }
+    if (ownsSession) {
+      session.close();
+    }
+    done(dependencies);
+  }
 
-      }
-      // load all dependencies for the loaded dependency
-      for (Dependency dependency1 : dependencies) {
-        dependenciesToLoad.add(dependency1);
-        resolveDependencies(dependency1, callback, allRepositories, dependencyResolverCallback);
-      }
+  /**
+   * Reports the result of the resolve to the callback
+   *
+   * @param dependencies the resolved dependencies
+   */
+  private void done(List<Dependency> dependencies) {
+    if (callback == null) {
+      return;
     }
-    // keep track of running threads by removing all dead threads
     try {
-      resolverThreads.removeIf(thread -> thread == null || !thread.isAlive());
-    } catch (ConcurrentModificationException ignored) {
-    }
-    if (resolverThreads.size() <= 1) { // only the current thread is running
-      done = true; // disallow any further methods to be executed
-      if (callback != null) {
-        callback.done(
-            true,
-            pomDownloadUrl,
-            mavenRepo,
-            Arrays.asList(loadedDependencies.values().toArray(new Dependency[0])),
-            dependency);
-      }
+      callback.done(
+          !failed,
+          PomSource.getPath(rootDependency),
+          rootDependency.getRepository(),
+          dependencies,
+          rootDependency);
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Called when the POM file of the given dependency was parsed
+   *
+   * @param dependency the dependency which its dependencies were resolved
+   * @param mavenRepo the repository the POM file was downloaded from, or null if it's unknown
+   * @param dependencies the dependencies declared in the POM file
+   */
+  private void finishResolve(
+      Dependency dependency, Repository mavenRepo, List<Dependency> dependencies) {
+    dependency.setRepository(mavenRepo);
+    // the dependencies are mediated once the whole level was resolved
+    graph.setChildren(dependency, dependencies);
+    // the artifact's POM was parsed successfully
+    dependencyResolverCallback.dependencyPomParsed(getPomLocation(dependency, mavenRepo));
+  }
+
+  /**
+   * Called when the POM file of the given dependency wasn't found in any repository
+   *
+   * @param dependency the dependency which couldn't be found
+   */
+  private void failResolve(Dependency dependency) {
+    // it makes no sense to report more failures when we have failed already
+    if (fail()) {
+      session.reportMissing(dependency);
+    }
+  }
+
+  /**
+   * Called when a resolver task threw, the subtree of its dependency is missing from the graph so
+   * the resolve is reported as failed
+   *
+   * @param t the exception or error the task threw
+   */
+  private void taskFailed(Throwable t) {
+    if (fail()) {
+      dependencyResolverCallback.error("Resolving the dependencies failed: " + t);
+    }
+  }
+
+  /** Stops the resolve when its handle was cancelled, it's reported as failed */
+  private void cancel() {
+    fail();
+    if (ownsSession) {
+      // no other resolve waits for the requests of the session
+      session.abort();
     }
   }
 
+  /**
+   * Marks the resolve as failed and stops it
+   *
+   * @return false if the resolve had failed already
+   */
+  private boolean fail() {
+    if (failed) {
+      return false;
+    }
+    failed = true;
+    // there is no point in resolving the rest of the graph
+    scope.cancel();
+    return true;
+  }
+
   public static class Builder {
     // the dependency to resolve
     private Dependency dependency;
@@ -438,6 +423,16 @@ public class DependencyResolver {
     private List<String> repositoriesUrls = new ArrayList<>();
     // the dependency resolver callback
     private DependencyResolverCallback dependencyResolverCallback;
+    // the thread, cache, retry and timeout options
+    private final SessionOptions options = new SessionOptions(DEFAULT_MAX_THREADS);
+    // the lock file, or null to always traverse the POM files
+    private File lockFile;
+    // a flag to indicate that the lock file is ignored and written again
+    private boolean refreshLock = false;
+    // the session to resolve in, or null to resolve in a new session
+    private ResolutionSession session;
+    // the time the resolve is cancelled after, or 0 for no deadline
+    private long timeoutMillis = 0;
 
     public Builder setCallback(ResolveCallback callback) {
       this.callback = callback;
@@ -466,156 +461,357 @@ public class DependencyResolver {
       return this;
     }
 
-    public void resolve() {
+    /**
+     * Specifies the maximum number of POM files which are resolved at the same time
+     *
+     * @param maxThreads the number of resolver threads, defaults to {@link #DEFAULT_MAX_THREADS}
+     * @return the Builder instance
+     */
+    public Builder setMaxThreads(int maxThreads) {
+      options.setMaxThreads(maxThreads);
+      return this;
+    }
+
+    /**
+     * Specifies the kind of threads to resolve POM files on
+     *
+     * @param executorMode the executor mode, defaults to {@link ExecutorMode#PLATFORM}
+     * @return the Builder instance
+     */
+    public Builder setExecutorMode(ExecutorMode executorMode) {
+      options.setExecutorMode(executorMode);
+      return this;
+    }
+
+    /**
+     * Specifies how long a file which a repository doesn't have is remembered, the repository
+     * isn't asked for that file again until then
+     *
+     * @param negativeCacheTtlMillis the time in milliseconds, defaults to 24 hours, 0 disables the
+     *     negative cache
+     * @return the Builder instance
+     */
+    public Builder setNegativeCacheTtl(long negativeCacheTtlMillis) {
+      options.setNegativeCacheTtl(negativeCacheTtlMillis);
+      return this;
+    }
+
+    /**
+     * Routes the artifacts of a group ID prefix to the given repository, the repository is asked
+     * for these artifacts before any other repository
+     *
+     * @param groupIdPrefix the group ID prefix, e.g. androidx or org.clojure, or * to route all
+     *     artifacts to a mirror
+     * @param repositoryUrl the repository url
+     * @return the Builder instance
+     */
+    public Builder addRoute(String groupIdPrefix, String repositoryUrl) {
+      options.addRoute(groupIdPrefix, repositoryUrl);
+      return this;
+    }
+
+    /**
+     * Specifies how long the versions of an artifact, which are used to resolve version ranges
+     * and the LATEST and RELEASE keywords, are reused before they're fetched again
+     *
+     * @param metadataTtlMillis the time in milliseconds, defaults to 24 hours
+     * @return the Builder instance
+     */
+    public Builder setMetadataTtl(long metadataTtlMillis) {
+      options.setMetadataTtl(metadataTtlMillis);
+      return this;
+    }
+
+    /**
+     * Specifies how many times a request which failed with a connection error, a server error or
+     * throttling is sent again. Files which the repository doesn't have are never retried.
+     *
+     * @param maxRetries the number of retries, defaults to 3, 0 disables retrying
+     * @return the Builder instance
+     */
+    public Builder setMaxRetries(int maxRetries) {
+      options.setMaxRetries(maxRetries);
+      return this;
+    }
+
+    /**
+     * Specifies how many retries all the requests may use together, which bounds the time an
+     * unreliable repository can add to the whole run
+     *
+     * @param retryBudget the number of retries, defaults to 50
+     * @return the Builder instance
+     */
+    public Builder setRetryBudget(int retryBudget) {
+      options.setRetryBudget(retryBudget);
+      return this;
+    }
+
+    /**
+     * Specifies how long connecting to a repository may take before the request fails, failed
+     * requests are retried as allowed by the retry options
+     *
+     * @param connectTimeoutMillis the time in milliseconds, defaults to 10 seconds, 0 waits forever
+     * @return the Builder instance
+     */
+    public Builder setConnectTimeout(int connectTimeoutMillis) {
+      options.setConnectTimeout(connectTimeoutMillis);
+      return this;
+    }
+
+    /**
+     * Specifies how long a repository may stay silent while a file is read from it before the
+     * request fails, failed requests are retried as allowed by the retry options
+     *
+     * @param readTimeoutMillis the time in milliseconds, defaults to 30 seconds, 0 waits forever
+     * @return the Builder instance
+     */
+    public Builder setReadTimeout(int readTimeoutMillis) {
+      options.setReadTimeout(readTimeoutMillis);
+      return this;
+    }
+
+    /**
+     * Specifies the deadline of the whole resolve, a resolve which doesn't finish in time is
+     * cancelled and reported as failed. Every root of a batch has its own deadline.
+     *
+     * @param timeoutMillis the time in milliseconds, defaults to 0, which means no deadline
+     * @return the Builder instance
+     */
+    public Builder setTimeout(long timeoutMillis) {
+      if (timeoutMillis < 0) {
+        throw new IllegalArgumentException("timeoutMillis must not be negative.");
+      }
+      this.timeoutMillis = timeoutMillis;
+      return this;
+    }
+
+    /**
+     * Specifies a lock file for the resolve. The resolved dependencies are written to the lock
+     * file, and later resolves of the same dependency with the same repositories and routes read
+     * them from it instead of traversing the POM files again.
+     *
+     * @param lockFile the lock file, or null to always traverse the POM files
+     * @return the Builder instance
+     */
+    public Builder setLockFile(File lockFile) {
+      this.lockFile = lockFile;
+      return this;
+    }
+
+    /**
+     * Specifies whether the lock file is ignored, so the POM files are traversed and the lock file
+     * is written again
+     *
+     * @param refreshLock true to refresh the lock file, defaults to false
+     * @return the Builder instance
+     */
+    public Builder setRefreshLock(boolean refreshLock) {
+      this.refreshLock = refreshLock;
+      return this;
+    }
+
+    /**
+     * @return a fingerprint of the repositories and routes, which changes whenever the same
+     *     dependency could resolve differently
+     */
+    String getConfiguration() {
+      if (session != null) {
+        return ClosureStore.fingerprint(session.getRepositories(), session.getRoutes());
+      }
+      return ClosureStore.fingerprint(
+          ResolutionSession.getRepositories(repositoriesUrls), options.getRoutes());
+    }
+
+    /**
+     * Resolves the dependencies in the given session, which shares its threads, caches and
+     * repository state with the other resolves and downloads which use it. The repositories,
+     * routes, threads, cache and retry options and the dependency resolver callback of the session
+     * replace the ones of this builder, and the session isn't closed when the resolve finishes.
+     *
+     * @param session the session, or null to resolve in a new session which is closed when the
+     *     resolve finishes
+     * @return the Builder instance
+     */
+    public Builder setSession(ResolutionSession session) {
+      this.session = session;
+      return this;
+    }
+
+    /** @return a new session with the configured repositories and options */
+    private ResolutionSession newSession() {
       if (dependencyResolverCallback == null) {
         throw new IllegalArgumentException("Dependency Resolver Callback must be set.");
       }
-      List<Repository> repositories = new ArrayList<>(Repository.COMMON_MAVEN_REPOSITORIES);
-      for (String repoUrl : repositoriesUrls) {
-        if (!repoUrl.endsWith("/")) {
-          repoUrl = repoUrl + "/";
+      return new ResolutionSession(
+          ResolutionSession.getRepositories(repositoriesUrls), options, dependencyResolverCallback);
+    }
+
+    /**
+     * Starts resolving the dependencies of the dependency, the callback is called once the
+     * resolve has finished
+     *
+     * @return a handle which cancels the resolve
+     */
+    public CancellationHandle resolve() {
+      if (session != null) {
+        return new DependencyResolver(session, false, lockFile, refreshLock)
+            .resolveDependencies(dependency, callback, timeoutMillis);
+      }
+      return new DependencyResolver(newSession(), true, lockFile, refreshLock)
+          .resolveDependencies(dependency, callback, timeoutMillis);
+    }
+
+    /**
+     * Resolves the dependencies of many roots at the same time, in one session which shares the
+     * resolver threads, the parsed POM files, the requests which are in flight and the state of
+     * the repositories between all the roots. The dependency and the lock file of the builder are
+     * ignored. The roots are resolved in the session of the builder if one was set, otherwise in a
+     * new session which is closed when all the roots were resolved.
+     *
+     * @param roots the roots to resolve dependencies for
+     * @param callback called once for every root when it was resolved, it may be called from
+     *     several threads at the same time
+     * @throws InterruptedException if the thread was interrupted while waiting for the roots, the
+     *     roots which weren't resolved yet are cancelled
+     */
+    public void resolveBatch(List<Dependency> roots, ResolveCallback callback)
+        throws InterruptedException {
+      CountDownLatch remaining = new CountDownLatch(roots.size());
+      List<CancellationHandle> handles = new ArrayList<>();
+      ResolutionSession batchSession = session != null ? session : newSession();
+      try {
+        for (Dependency root : roots) {
+          handles.add(
+              new DependencyResolver(batchSession, false, null, false)
+                  .resolveDependencies(
+                      root,
+                      (artifactFound, pomUrl, mavenRepo, dependencyList, dependency) -> {
+                        try {
+                          callback.done(
+                              artifactFound, pomUrl, mavenRepo, dependencyList, dependency);
+                        } finally {
+                          remaining.countDown();
+                        }
+                      },
+                      timeoutMillis));
+        }
+        remaining.await();
+      } catch (InterruptedException e) {
+        // stop the roots which are still being resolved
+        handles.forEach(CancellationHandle::cancel);
+        throw e;
+      } finally {
+        if (batchSession != session) {
+          batchSession.close();
         }
-        repositories.add(new Repository(repoUrl));
       }
-      new DependencyResolver()
-          .resolveDependencies(dependency, callback, repositories, dependencyResolverCallback);
     }
   }
 
-  /** a custom thread to resolve dependencies for the given dependency */
-  class ResolverThread extends Thread {
+  /** a task which resolves the dependencies declared in the POM file of the given dependency */
+  class ResolverTask implements Runnable {
 
-    // the maven repo url for the dependency
-    private final Repository repo;
     // the dependency to resolve dependencies for
     private final Dependency dependency;
-    // the callback to call when resolving is done
-    private final ResolveCallback callback;
-    // the dependency node or null if the project doesn't define a dependency
-    Dependency parent = null;
-    // a flag to indicate weather an artifact was found or not
-    boolean artifactFound = false;
     // the dependencies resolved for the dependency
     ArrayList<Dependency> dependencies = new ArrayList<>();
-    // the properties resolved for the dependency
-    ArrayList<ProjectProperty> properties = new ArrayList<>();
-    // the pom download url
-    String pomDownloadUrl;
 
     /**
-     * Creates a new Resolver thread
+     * Creates a new Resolver task
      *
-     * @param repo the maven repo url
      * @param dependency the dependency
-     * @param callback the callback
      */
-    public ResolverThread(Repository repo, Dependency dependency, ResolveCallback callback) {
-      this.repo = repo;
-      pomDownloadUrl = getPomDownloadUrl(dependency);
+    public ResolverTask(Dependency dependency) {
       this.dependency = dependency;
-      this.callback = callback;
     }
 
     @Override
     public void run() {
       try {
-        URL url = new URL(repo + pomDownloadUrl);
-        File cachesDir = Util.getCachesDirectory();
-        File artifactDirectory =
-            new File(cachesDir, pomDownloadUrl.substring(0, pomDownloadUrl.lastIndexOf('/')));
-        if (!artifactDirectory.exists()) {
-          if (!artifactDirectory.mkdirs()) {
-            dependencyResolverCallback.info("[WARNING] Failed to create some artifact directories");
-          }
-        }
-        String fileName = pomDownloadUrl.split("/")[pomDownloadUrl.split("/").length - 1];
-        File outputFile = new File(artifactDirectory, fileName);
-        Document doc;
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        factory.setIgnoringElementContentWhitespace(true);
-        DocumentBuilder builder = factory.newDocumentBuilder();
-        if (!outputFile.exists()) {
-          // download and save the file first
-          ReadableByteChannel rbc = Channels.newChannel(url.openStream());
-          // if we reached here with no FileNotFoundException, so the POM file was found in this
-          // repo
-          dependencyResolverCallback.dependencyPomDownloading(repo + pomDownloadUrl);
-          FileOutputStream fos = new FileOutputStream(outputFile);
-          fos.getChannel().transferFrom(rbc, 0, Long.MAX_VALUE);
-          dependencyResolverCallback.dependencyPomDownloaded(repo + pomDownloadUrl);
+        resolvePom();
+      } finally {
+        levelTaskFinished();
+      }
+    }
+
+    /** Reads the POM file of the dependency and records the dependencies it declares */
+    private void resolvePom() {
+      if (failed) {
+        return;
+      }
+      PomSource.LoadedPom loaded;
+      EffectivePom effectivePom;
+      try {
+        loaded = session.getPomSource().load(dependency);
+        if (loaded == null) {
+          failResolve(dependency);
+          return;
         }
-        doc = builder.parse(outputFile);
-        dependencyResolverCallback.dependencyPomParsing(repo + pomDownloadUrl);
-        dependency.setRepository(mavenRepo);
-        artifactFound = true;
-        Element rootElement = doc.getDocumentElement();
-        // iterate over the project elements to find parent, dependencies, dependencyManagement,
-        // and properties XML nodes
-        for (int i = 0; i < rootElement.getChildNodes().getLength(); i++) {
-          Node node = rootElement.getChildNodes().item(i);
-          switch (node.getNodeName()) {
-            case "packaging":
-              dependency.setType(node.getTextContent());
-            case "properties":
-              for (int x = 0; x < node.getChildNodes().getLength(); x++) {
-                Node propertyNode = node.getChildNodes().item(x);
-                ProjectProperty projectProperty =
-                    new ProjectProperty(propertyNode.getNodeName(), propertyNode.getTextContent());
-                properties.add(projectProperty);
-              }
-              break;
-            case "parent":
-              // we must load the parent first to get the defined versions ( if any ) !
-              Dependency resolvedDependency = getDependency(node, properties, parent, repo);
-              if (resolvedDependency != null) {
-                parent = resolvedDependency;
-                resolveDependencies(
-                    resolvedDependency,
-                    DependencyResolver.this.callback,
-                    allRepositories,
-                    dependencyResolverCallback);
-              }
-              break;
-            case "dependencyManagement":
-              for (int x = 0; x < node.getChildNodes().getLength(); x++) {
-                Node dependenciesNode = node.getChildNodes().item(x);
-                if (dependenciesNode.getNodeName().equals("dependencies")) {
-                  for (int y = 0; y < node.getChildNodes().getLength(); y++) {
-                    Node dependencyNode = node.getChildNodes().item(y);
-                    if (dependencyNode.getNodeName().equals("dependency")) {
-                      Dependency resolvedDependency1 =
-                          getDependency(dependencyNode, properties, parent, repo);
-                      if (resolvedDependency1 != null) {
-                        dependencies.add(resolvedDependency1);
-                        loadedDependencies.put(dependency, resolvedDependency1);
-                      }
-                    }
-                  }
-                }
-              }
-              break;
-            case "dependencies":
-              for (int x = 0; x < node.getChildNodes().getLength(); x++) {
-                Node dependencyNode = node.getChildNodes().item(x);
-                if (dependencyNode.getNodeName().equals("dependency")) {
-                  Dependency resolvedDependency1 =
-                      getDependency(dependencyNode, properties, parent, repo);
-                  if (resolvedDependency1 != null) {
-                    dependencies.add(resolvedDependency1);
-                    loadedDependencies.put(dependency, resolvedDependency1);
-                  }
-                }
-              }
-              break;
-          }
+        effectivePom = session.getEffectivePoms().build(loaded.getModel());
+      } catch (InterruptedException e) {
+        // the resolve was cancelled
+        return;
+      }
+      if (effectivePom == null) {
+        // a parent or BOM POM file couldn't be found or they form a cycle, which was reported
+        fail();
+        return;
+      }
+      Repository repository = loaded.getRepository();
+      dependencyResolverCallback.dependencyPomParsing(getPomLocation(dependency, repository));
+      if (interpretPom(loaded.getModel(), effectivePom)) {
+        session.putClosure(
+            getCoordinates(dependency),
+            new ClosureStore.Node(
+                loaded.getModel().getPackaging(),
+                repository == null ? null : repository.getUrl(),
+                dependencies));
+      }
+      finishResolve(dependency, repository, dependencies);
+    }
+
+    /**
+     * Reads the packaging and the dependencies of the dependency from its POM model
+     *
+     * @param model the POM model
+     * @param effectivePom the POM model merged with its parents
+     * @return true if the resolved dependencies won't change, so they may be stored as a closure
+     */
+    private boolean interpretPom(PomModel model, EffectivePom effectivePom) {
+      if (model.getPackaging() != null) {
+        dependency.setType(model.getPackaging());
+      }
+      // the POM file of a snapshot may change
+      boolean stable = !dependency.getVersion().endsWith("-SNAPSHOT");
+      for (PomModel.PomDependency declaration : effectivePom.getDependencies()) {
+        Dependency resolvedDependency = getDependency(declaration, effectivePom);
+        if (resolvedDependency != null) {
+          dependencies.add(resolvedDependency);
+          stable &=
+              !resolvedDependency.getVersion().isEmpty() && !isDynamic(declaration, effectivePom);
         }
-      } catch (IOException | ParserConfigurationException | SAXException ignored) {
       }
-      try {
-        callback.done(artifactFound, pomDownloadUrl, repo, dependencies, dependency);
-      } catch (IOException e) {
-        e.printStackTrace();
+      return stable;
+    }
+
+    /**
+     * Checks if the version of a dependency declaration depends on the version metadata
+     *
+     * @param declaration the dependency declaration
+     * @param effectivePom the effective POM of the project which declares the dependency
+     * @return true if the declared or managed version is a range or a keyword
+     */
+    private boolean isDynamic(PomModel.PomDependency declaration, EffectivePom effectivePom) {
+      String version = declaration.getVersion();
+      if (version == null) {
+        PomModel.PomDependency managed =
+            effectivePom.getManagedDependency(
+                effectivePom.getScope().interpolate(declaration.getGroupId()),
+                effectivePom.getScope().interpolate(declaration.getArtifactId()));
+        version = managed == null ? null : managed.getVersion();
       }
+      return version != null
+          && VersionResolver.isDynamic(effectivePom.getScope().interpolate(version));
     }
   }
 }
@@ -0,0 +1,134 @@
+/*
+ *  Copyright (c) 2021 Mohamed Tamer
+ *   Permission is hereby granted, free of charge, to any person obtaining
+ *   a copy of this software and associated documentation files (the
+ *   "Software"), to deal in the Software without restriction, including
+ *   without limitation the rights to use, copy, modify, merge, publish,
+ *   distribute, sublicense, and/or sell copies of the Software, and to
+ *   permit persons to whom the Software is furnished to do so, subject to
+ *   the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be
+ *   included in all copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *   EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *   MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *   NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ *   LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ *   OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ *   WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+// -*- mode: java; c-basic-offset: 2; -*-
+package io.mohamed.resolver.core;
+
+import io.mohamed.resolver.core.PomModel.PomDependency;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A POM model merged with all its parents. Managed dependencies declared by a child override the
+ * ones of its parents, and the dependencies of the parents are inherited. Values are interpolated
+ * with the {@link PropertyScope} of the model, which chains the scopes of its parents. Effective
+ * POMs are immutable, so the effective POM of a parent is shared by all its children.
+ *
+ * @author Mohamed Tamer
+ */
+final class EffectivePom {
+
+  // the properties of the model and its parents
+  private final PropertyScope scope;
+  // the merged managed dependencies, by group ID and artifact ID
+  private final Map<String, PomDependency> dependencyManagement;
+  // the declared and inherited dependencies
+  private final List<PomDependency> dependencies;
+
+  private EffectivePom(
+      PropertyScope scope,
+      Map<String, PomDependency> dependencyManagement,
+      List<PomDependency> dependencies) {
+    this.scope = scope;
+    this.dependencyManagement = Collections.unmodifiableMap(dependencyManagement);
+    this.dependencies = Collections.unmodifiableList(dependencies);
+  }
+
+  /**
+   * Merges a POM model with the effective POM of its parent and the BOMs it imports. Managed
+   * dependencies declared by the model or inherited from the parent win over imported ones, and
+   * earlier imports win over later ones.
+   *
+   * @param model the POM model
+   * @param parent the effective POM of the parent, or null if the model has no parent
+   * @param imports the managed dependencies of the imported BOMs, in their declared order
+   * @param scope the properties of the model and its parents
+   * @return the effective POM of the model
+   */
+  static EffectivePom merge(
+      PomModel model,
+      EffectivePom parent,
+      List<Map<String, PomDependency>> imports,
+      PropertyScope scope) {
+    Map<String, PomDependency> dependencyManagement = new LinkedHashMap<>();
+    Map<String, PomDependency> dependencies = new LinkedHashMap<>();
+    if (parent != null) {
+      dependencyManagement.putAll(parent.dependencyManagement);
+      for (PomDependency dependency : parent.dependencies) {
+        dependencies.put(getKey(dependency), dependency);
+      }
+    }
+    for (PomDependency dependency : model.getDependencyManagement()) {
+      if (!EffectivePomBuilder.isImport(dependency)) {
+        // managed dependencies are looked up by their interpolated coordinates
+        dependencyManagement.put(scope.interpolate(getKey(dependency)), dependency);
+      }
+    }
+    for (Map<String, PomDependency> index : imports) {
+      for (Map.Entry<String, PomDependency> managed : index.entrySet()) {
+        dependencyManagement.putIfAbsent(managed.getKey(), managed.getValue());
+      }
+    }
+    for (PomDependency dependency : model.getDependencies()) {
+      dependencies.put(getKey(dependency), dependency);
+    }
+    return new EffectivePom(scope, dependencyManagement, new ArrayList<>(dependencies.values()));
+  }
+
+  /**
+   * @param dependency a dependency declaration
+   * @return the key managed dependencies are looked up by
+   */
+  static String getKey(PomDependency dependency) {
+    return dependency.getGroupId() + ":" + dependency.getArtifactId();
+  }
+
+  /** @return the properties of the model and its parents */
+  PropertyScope getScope() {
+    return scope;
+  }
+
+  /**
+   * Looks up the managed declaration of a dependency
+   *
+   * @param groupId the group ID
+   * @param artifactId the artifact ID
+   * @return the managed declaration, or null if the dependency isn't managed
+   */
+  PomDependency getManagedDependency(String groupId, String artifactId) {
+    return dependencyManagement.get(groupId + ":" + artifactId);
+  }
+
+  /** @return the merged managed dependencies */
+  Collection<PomDependency> getDependencyManagement() {
+    return dependencyManagement.values();
+  }
+
+  /** @return the declared and inherited dependencies */
+  List<PomDependency> getDependencies() {
+    return dependencies;
+  }
+}
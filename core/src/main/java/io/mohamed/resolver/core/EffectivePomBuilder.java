@@ -0,0 +1,292 @@
+/*
+ *  Copyright (c) 2021 Mohamed Tamer
+ *   Permission is hereby granted, free of charge, to any person obtaining
+ *   a copy of this software and associated documentation files (the
+ *   "Software"), to deal in the Software without restriction, including
+ *   without limitation the rights to use, copy, modify, merge, publish,
+ *   distribute, sublicense, and/or sell copies of the Software, and to
+ *   permit persons to whom the Software is furnished to do so, subject to
+ *   the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be
+ *   included in all copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *   EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *   MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *   NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ *   LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ *   OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ *   WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+// -*- mode: java; c-basic-offset: 2; -*-
+package io.mohamed.resolver.core;
+
+import io.mohamed.resolver.core.PomModel.PomDependency;
+import io.mohamed.resolver.core.callback.DependencyResolverCallback;
+import io.mohamed.resolver.core.model.Dependency;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Builds the {@link EffectivePom} of POM models. The effective POM of every parent is built once
+ * per {@link ResolutionSession} and shared by all its children, children which need a parent which
+ * is being built by another thread wait for it instead of building it again.
+ *
+ * <p>BOMs imported in the dependencyManagement section are loaded the same way, every BOM is
+ * turned once into an index of the versions it manages, which only pins versions, the artifacts a
+ * BOM lists are never resolved because of the import.
+ *
+ * <p>The parents and BOMs of a model are walked for cycles before any of them is built, so threads
+ * which wait for each other's parents never wait in a circle.
+ *
+ * @author Mohamed Tamer
+ */
+class EffectivePomBuilder {
+
+  // loads the POM models of parents and BOMs
+  private final PomLoader loader;
+  // reports the parents and BOMs which form a cycle
+  private final DependencyResolverCallback callback;
+  // the property scopes of the parents and BOMs which lead to no cycle, by coordinates
+  private final Map<String, PropertyScope> acyclic = new ConcurrentHashMap<>();
+  // the effective POMs of the parents, by their coordinates
+  private final SingleFlight<String, EffectivePom> parents = new SingleFlight<>(true);
+  // the managed dependencies of the imported BOMs by group ID and artifact ID, by BOM coordinates
+  private final SingleFlight<String, Map<String, PomDependency>> boms = new SingleFlight<>(true);
+
+  /**
+   * Creates a new EffectivePomBuilder
+   *
+   * @param loader loads the POM models of parents and BOMs
+   * @param callback reports the parents and BOMs which form a cycle
+   */
+  EffectivePomBuilder(PomLoader loader, DependencyResolverCallback callback) {
+    this.loader = loader;
+    this.callback = callback;
+  }
+
+  /**
+   * Checks if a managed dependency imports a BOM
+   *
+   * @param dependency the managed dependency
+   * @return true if the dependency has the import scope and the pom type
+   */
+  static boolean isImport(PomDependency dependency) {
+    return "import".equals(dependency.getScope()) && "pom".equals(dependency.getType());
+  }
+
+  private static String getCoordinates(PomDependency declaration) {
+    return declaration.getGroupId()
+        + ":"
+        + declaration.getArtifactId()
+        + ":"
+        + declaration.getVersion();
+  }
+
+  /**
+   * Builds the effective POM of the given model
+   *
+   * @param model the POM model
+   * @return the effective POM, or null if a parent or a BOM couldn't be loaded or they form a
+   *     cycle, which is reported
+   * @throws InterruptedException if the thread was interrupted while loading a parent or a BOM
+   */
+  EffectivePom build(PomModel model) throws InterruptedException {
+    if (walk(model, new ArrayList<>()) == null) {
+      return null;
+    }
+    return buildAcyclic(model);
+  }
+
+  private static boolean hasCoordinates(PomDependency declaration) {
+    return declaration != null
+        && declaration.getGroupId() != null
+        && declaration.getArtifactId() != null
+        && declaration.getVersion() != null;
+  }
+
+  /**
+   * Creates the declaration of a BOM import, interpolated with the properties of the importer
+   *
+   * @param managed the managed dependency which imports the BOM
+   * @param scope the properties of the importer
+   * @return the BOM declaration
+   */
+  private static PomDependency interpolateImport(PomDependency managed, PropertyScope scope) {
+    return new PomDependency(
+        scope.interpolate(managed.getGroupId()),
+        scope.interpolate(managed.getArtifactId()),
+        scope.interpolate(managed.getVersion()),
+        managed.getScope(),
+        managed.getType());
+  }
+
+  /**
+   * Walks the parents and the imported BOMs of a model, depth first, without building them
+   *
+   * @param model the POM model
+   * @param path the coordinates of the parents and BOMs which lead to the model
+   * @return the property scope of the model, or null if a parent or a BOM couldn't be loaded or
+   *     they form a cycle
+   * @throws InterruptedException if the thread was interrupted while loading a parent or a BOM
+   */
+  private PropertyScope walk(PomModel model, List<String> path) throws InterruptedException {
+    PropertyScope parentScope = null;
+    if (hasCoordinates(model.getParent())) {
+      parentScope = walk(model.getParent(), path);
+      if (parentScope == null) {
+        return null;
+      }
+    }
+    PropertyScope scope = new PropertyScope(model, parentScope);
+    for (PomDependency managed : model.getDependencyManagement()) {
+      if (isImport(managed)
+          && managed.getVersion() != null
+          && walk(interpolateImport(managed, scope), path) == null) {
+        return null;
+      }
+    }
+    return scope;
+  }
+
+  private PropertyScope walk(PomDependency declaration, List<String> path)
+      throws InterruptedException {
+    String coordinates = getCoordinates(declaration);
+    PropertyScope scope = acyclic.get(coordinates);
+    if (scope != null) {
+      return scope;
+    }
+    int start = path.indexOf(coordinates);
+    if (start != -1) {
+      List<String> cycle = new ArrayList<>(path.subList(start, path.size()));
+      cycle.add(coordinates);
+      callback.error("The parents and imported BOMs form a cycle: " + String.join(" -> ", cycle));
+      return null;
+    }
+    PomModel model = loader.load(toDependency(declaration));
+    if (model == null) {
+      return null;
+    }
+    path.add(coordinates);
+    try {
+      scope = walk(model, path);
+    } finally {
+      path.remove(path.size() - 1);
+    }
+    if (scope != null) {
+      acyclic.put(coordinates, scope);
+    }
+    return scope;
+  }
+
+  private EffectivePom buildAcyclic(PomModel model) throws InterruptedException {
+    EffectivePom parentPom = null;
+    if (hasCoordinates(model.getParent())) {
+      parentPom = getParent(model.getParent());
+      if (parentPom == null) {
+        return null;
+      }
+    }
+    PropertyScope scope = new PropertyScope(model, parentPom == null ? null : parentPom.getScope());
+    List<Map<String, PomDependency>> imports = new ArrayList<>();
+    for (PomDependency managed : model.getDependencyManagement()) {
+      if (!isImport(managed) || managed.getVersion() == null) {
+        continue;
+      }
+      Map<String, PomDependency> index = getBom(interpolateImport(managed, scope));
+      if (index == null) {
+        return null;
+      }
+      imports.add(index);
+    }
+    return EffectivePom.merge(model, parentPom, imports, scope);
+  }
+
+  private EffectivePom getParent(PomDependency declaration) throws InterruptedException {
+    return memoize(parents, declaration, this::buildAcyclic);
+  }
+
+  private Map<String, PomDependency> getBom(PomDependency declaration)
+      throws InterruptedException {
+    return memoize(
+        boms,
+        declaration,
+        bomModel -> {
+          EffectivePom bomPom = buildAcyclic(bomModel);
+          if (bomPom == null) {
+            return null;
+          }
+          // the versions are interpolated with the properties of the BOM, not of the importer
+          Map<String, PomDependency> index = new LinkedHashMap<>();
+          PropertyScope scope = bomPom.getScope();
+          for (PomDependency managed : bomPom.getDependencyManagement()) {
+            PomDependency interpolated =
+                new PomDependency(
+                    scope.interpolate(managed.getGroupId()),
+                    scope.interpolate(managed.getArtifactId()),
+                    scope.interpolate(managed.getVersion()),
+                    scope.interpolate(managed.getScope()),
+                    scope.interpolate(managed.getType()));
+            index.put(EffectivePom.getKey(interpolated), interpolated);
+          }
+          return Collections.unmodifiableMap(index);
+        });
+  }
+
+  private static Dependency toDependency(PomDependency declaration) {
+    return new Dependency(
+        declaration.getGroupId(), declaration.getArtifactId(), declaration.getVersion(), "pom");
+  }
+
+  /**
+   * Computes a value from the POM model of the given declaration once, threads which ask for a
+   * value which is being computed wait for it. The parents and BOMs were walked for cycles
+   * already, so no thread waits for a value which waits for its own.
+   *
+   * @param values the computed values, by coordinates
+   * @param declaration the declaration of the POM file
+   * @param function computes the value from the POM model
+   * @return the value, or null if the POM file couldn't be loaded
+   * @throws InterruptedException if the thread was interrupted
+   */
+  private <T> T memoize(
+      SingleFlight<String, T> values, PomDependency declaration, ModelFunction<T> function)
+      throws InterruptedException {
+    return values.run(
+        getCoordinates(declaration),
+        () -> {
+          PomModel model = loader.load(toDependency(declaration));
+          return model == null ? null : function.apply(model);
+        });
+  }
+
+  /** @return the number of parents and BOMs which were asked for while they were being built */
+  int getCoalescedRequests() {
+    return parents.getCoalesced() + boms.getCoalesced();
+  }
+
+  /** Computes a value from a POM model */
+  private interface ModelFunction<T> {
+
+    T apply(PomModel model) throws InterruptedException;
+  }
+
+  /** Loads the POM model of a parent or a BOM */
+  interface PomLoader {
+
+    /**
+     * Loads the POM model of the given parent or BOM
+     *
+     * @param pom the parent or BOM
+     * @return the POM model, or null if it couldn't be loaded
+     * @throws InterruptedException if the thread was interrupted
+     */
+    PomModel load(Dependency pom) throws InterruptedException;
+  }
+}
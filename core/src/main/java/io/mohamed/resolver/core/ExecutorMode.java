@@ -0,0 +1,121 @@
+/*
+ *  Copyright (c) 2021 Mohamed Tamer
+ *   Permission is hereby granted, free of charge, to any person obtaining
+ *   a copy of this software and associated documentation files (the
+ *   "Software"), to deal in the Software without restriction, including
+ *   without limitation the rights to use, copy, modify, merge, publish,
+ *   distribute, sublicense, and/or sell copies of the Software, and to
+ *   permit persons to whom the Software is furnished to do so, subject to
+ *   the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be
+ *   included in all copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *   EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *   MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *   NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ *   LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ *   OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ *   WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+// -*- mode: java; c-basic-offset: 2; -*-
+package io.mohamed.resolver.core;
+
+import java.lang.reflect.Method;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The kind of threads which are used for resolving POM files and downloading library files
+ *
+ * @author Mohamed Tamer
+ */
+public enum ExecutorMode {
+  /** Runs tasks on a bounded pool of platform threads */
+  PLATFORM,
+  /**
+   * Runs every task on its own virtual thread, virtual threads are only available on JDK 21 or
+   * newer, older JDKs fall back to {@link #PLATFORM}
+   */
+  VIRTUAL;
+
+  // the Executors.newVirtualThreadPerTaskExecutor() method, or null if the JDK doesn't have it
+  private static final Method NEW_VIRTUAL_THREAD_EXECUTOR = findVirtualThreadExecutorFactory();
+
+  private static Method findVirtualThreadExecutorFactory() {
+    try {
+      return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Parses the given executor mode name
+   *
+   * @param name the mode name, either "platform" or "virtual"
+   * @return the executor mode
+   * @throws IllegalArgumentException if the name isn't a known executor mode
+   */
+  public static ExecutorMode fromString(String name) {
+    try {
+      return valueOf(name.trim().toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException(
+          "Unknown executor " + name + ", expected one of: platform, virtual");
+    }
+  }
+
+  /** @return true if this mode can be used with the running JDK */
+  public boolean isSupported() {
+    return this == PLATFORM || NEW_VIRTUAL_THREAD_EXECUTOR != null;
+  }
+
+  /**
+   * Creates a new executor for this mode
+   *
+   * @param name the name prefix for platform threads
+   * @param maxThreads the maximum number of platform threads, virtual threads aren't bounded
+   * @return the executor
+   */
+  ExecutorService newExecutor(String name, int maxThreads) {
+    if (this == VIRTUAL && NEW_VIRTUAL_THREAD_EXECUTOR != null) {
+      try {
+        return (ExecutorService) NEW_VIRTUAL_THREAD_EXECUTOR.invoke(null);
+      } catch (ReflectiveOperationException ignored) {
+        // fall back to platform threads
+      }
+    }
+    AtomicInteger threadCount = new AtomicInteger();
+    return Executors.newFixedThreadPool(
+        maxThreads, runnable -> new Thread(runnable, name + "-" + threadCount.incrementAndGet()));
+  }
+
+  /**
+   * Creates a new executor for short blocking tasks which are started on demand, its platform
+   * threads are daemon threads which die after being idle for a while
+   *
+   * @param name the name prefix for platform threads
+   * @return the executor
+   */
+  ExecutorService newUnboundedExecutor(String name) {
+    if (this == VIRTUAL && NEW_VIRTUAL_THREAD_EXECUTOR != null) {
+      try {
+        return (ExecutorService) NEW_VIRTUAL_THREAD_EXECUTOR.invoke(null);
+      } catch (ReflectiveOperationException ignored) {
+        // fall back to platform threads
+      }
+    }
+    AtomicInteger threadCount = new AtomicInteger();
+    return Executors.newCachedThreadPool(
+        runnable -> {
+          Thread thread = new Thread(runnable, name + "-" + threadCount.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        });
+  }
+}
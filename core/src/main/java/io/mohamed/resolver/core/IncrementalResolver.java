@@ -0,0 +1,125 @@
+/*
+ *  Copyright (c) 2021 Mohamed Tamer
+ *   Permission is hereby granted, free of charge, to any person obtaining
+ *   a copy of this software and associated documentation files (the
+ *   "Software"), to deal in the Software without restriction, including
+ *   without limitation the rights to use, copy, modify, merge, publish,
+ *   distribute, sublicense, and/or sell copies of the Software, and to
+ *   permit persons to whom the Software is furnished to do so, subject to
+ *   the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be
+ *   included in all copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *   EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *   MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *   NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ *   LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ *   OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ *   WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+// -*- mode: java; c-basic-offset: 2; -*-
+package io.mohamed.resolver.core;
+
+import io.mohamed.resolver.core.model.Dependency;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Resolves a changing set of root dependencies again and again, such as the dependency list of a
+ * project which is being edited. The result of every root is kept, so a run only resolves the
+ * roots which are new, whose version or type changed, or whose repositories or routes changed. The
+ * roots which changed are resolved as one batch, and the subtrees they share with earlier
+ * resolves are spliced from the {@link ClosureStore}, so only the parts of their graphs which were
+ * never resolved are read from POM files.
+ *
+ * @author Mohamed Tamer
+ */
+public class IncrementalResolver {
+
+  // creates a configured builder for every run
+  private final Supplier<DependencyResolver.Builder> builderFactory;
+  // the resolved dependencies of the roots of the previous run, by root and configuration
+  private Map<String, List<Dependency>> results = new HashMap<>();
+  // the number of roots whose result was reused by the last run
+  private int reusedRoots = 0;
+
+  /**
+   * Creates a new IncrementalResolver
+   *
+   * @param builderFactory creates a builder which has every option set, except the dependency and
+   *     the callback, it's called once for every run
+   */
+  public IncrementalResolver(Supplier<DependencyResolver.Builder> builderFactory) {
+    this.builderFactory = builderFactory;
+  }
+
+  /**
+   * Resolves the given roots, the results of the roots which haven't changed since the previous
+   * run are reused
+   *
+   * @param roots the root dependencies
+   * @return the resolved dependencies of every root which was resolved successfully, in the order
+   *     of the roots
+   * @throws InterruptedException if the thread was interrupted while waiting for the resolves
+   */
+  public synchronized Map<Dependency, List<Dependency>> resolve(List<Dependency> roots)
+      throws InterruptedException {
+    DependencyResolver.Builder builder = builderFactory.get();
+    String configuration = builder.getConfiguration();
+    Map<String, List<Dependency>> currentResults = new ConcurrentHashMap<>();
+    Map<Dependency, String> keys = new IdentityHashMap<>();
+    Map<String, Dependency> changedRoots = new LinkedHashMap<>();
+    reusedRoots = 0;
+    for (Dependency root : roots) {
+      String key = configuration + " " + root;
+      keys.put(root, key);
+      List<Dependency> previous = results.get(key);
+      if (previous != null) {
+        reusedRoots++;
+        currentResults.put(key, previous);
+      } else {
+        changedRoots.putIfAbsent(key, root);
+      }
+    }
+    if (!changedRoots.isEmpty()) {
+      builder.resolveBatch(
+          new ArrayList<>(changedRoots.values()),
+          (artifactFound, pomUrl, mavenRepo, dependencyList, dependency) -> {
+            if (artifactFound) {
+              currentResults.put(
+                  keys.get(dependency), Collections.unmodifiableList(dependencyList));
+            }
+          });
+    }
+    // the roots which were removed are forgotten
+    results = new HashMap<>(currentResults);
+    Map<Dependency, List<Dependency>> resolved = new LinkedHashMap<>();
+    for (Dependency root : roots) {
+      List<Dependency> dependencies = currentResults.get(keys.get(root));
+      if (dependencies != null) {
+        resolved.put(root, dependencies);
+      }
+    }
+    return resolved;
+  }
+
+  /** @return the number of roots whose result was reused by the last run */
+  public synchronized int getReusedRoots() {
+    return reusedRoots;
+  }
+
+  /** Forgets the results of all the roots, so the next run resolves every root again */
+  public synchronized void reset() {
+    results.clear();
+  }
+}
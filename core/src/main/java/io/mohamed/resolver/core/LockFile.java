@@ -0,0 +1,277 @@
+/*
+ *  Copyright (c) 2021 Mohamed Tamer
+ *   Permission is hereby granted, free of charge, to any person obtaining
+ *   a copy of this software and associated documentation files (the
+ *   "Software"), to deal in the Software without restriction, including
+ *   without limitation the rights to use, copy, modify, merge, publish,
+ *   distribute, sublicense, and/or sell copies of the Software, and to
+ *   permit persons to whom the Software is furnished to do so, subject to
+ *   the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be
+ *   included in all copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *   EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *   MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *   NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ *   LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ *   OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ *   WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+// -*- mode: java; c-basic-offset: 2; -*-
+package io.mohamed.resolver.core;
+
+import io.mohamed.resolver.core.model.Dependency;
+import io.mohamed.resolver.core.model.Repository;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * The result of a resolve, saved so later resolves of the same root can skip the POM traversal. A
+ * lock file lists the root, the repositories and routes it was resolved with, and every resolved
+ * dependency with its type, scope, source repository and the SHA-256 checksum of its POM file. A
+ * lock file is only used if it was written for the same root and repository configuration, and if
+ * none of the cached POM files it lists has changed since.
+ *
+ * <p>The file is plain text, one entry per line:
+ *
+ * <pre>
+ * lock-version 1
+ * root com.example:app:1.0 jar https://repo.maven.apache.org/maven2/
+ * repository https://maven.google.com/
+ * route androidx=https://maven.google.com/
+ * dependency com.example:lib:2.1 aar runtime https://maven.google.com/ 3a7bd3e2...
+ * </pre>
+ *
+ * @author Mohamed Tamer
+ */
+final class LockFile {
+
+  // the version of the lock file format
+  private static final int FORMAT_VERSION = 1;
+  // written instead of a missing repository or checksum
+  private static final String NONE = "-";
+
+  // the root dependency, its repository is the one it was found in
+  private final Dependency root;
+  // the resolved dependencies, in their resolved order
+  private final List<Dependency> dependencies;
+
+  private LockFile(Dependency root, List<Dependency> dependencies) {
+    this.root = root;
+    this.dependencies = dependencies;
+  }
+
+  /** @return the root dependency, its repository is the one it was found in */
+  Dependency getRoot() {
+    return root;
+  }
+
+  /** @return the resolved dependencies, in their resolved order */
+  List<Dependency> getDependencies() {
+    return dependencies;
+  }
+
+  /**
+   * Reads a lock file, if it still matches the given resolve
+   *
+   * @param file the lock file
+   * @param root the root dependency which is being resolved, its repository is set to the locked
+   *     one
+   * @param repositories the repositories of the resolve, in their declared order
+   * @param routes the user declared routes of the resolve
+   * @param pomFiles returns the cached POM file of a dependency
+   * @return the lock file, or null if the file doesn't exist or doesn't match the resolve
+   * @throws IOException if the file couldn't be read
+   */
+  static LockFile read(
+      File file,
+      Dependency root,
+      List<Repository> repositories,
+      Map<String, String> routes,
+      Function<Dependency, File> pomFiles)
+      throws IOException {
+    if (!file.exists()) {
+      return null;
+    }
+    List<String> header = getHeader(root, repositories, routes);
+    String rootRepository = null;
+    List<Dependency> dependencies = new ArrayList<>();
+    int headerLine = 0;
+    try (BufferedReader reader =
+        Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.isEmpty() || line.startsWith("#")) {
+          continue;
+        }
+        String[] parts = line.split(" ");
+        if (parts[0].equals("dependency")) {
+          if (parts.length != 6) {
+            return null;
+          }
+          Dependency dependency = parseDependency(parts[1], parts[2], parts[3]);
+          if (dependency == null || !matchesChecksum(pomFiles.apply(dependency), parts[5])) {
+            // the POM file has changed since the lock file was written
+            return null;
+          }
+          dependency.setRepository(
+              PomSource.findRepository(repositories, parseRepositoryUrl(parts[4])));
+          dependencies.add(dependency);
+          continue;
+        }
+        if (parts[0].equals("root") && parts.length == 4) {
+          // the repository of the root is only known after a resolve, it isn't compared
+          rootRepository = parts[3];
+          line = line.substring(0, line.lastIndexOf(' '));
+        }
+        if (headerLine >= header.size() || !line.equals(header.get(headerLine))) {
+          // the lock file was written for another resolve
+          return null;
+        }
+        headerLine++;
+      }
+    }
+    if (rootRepository == null || headerLine != header.size()) {
+      return null;
+    }
+    root.setRepository(
+        PomSource.findRepository(repositories, parseRepositoryUrl(rootRepository)));
+    return new LockFile(root, dependencies);
+  }
+
+  /**
+   * Writes the result of a resolve to a lock file
+   *
+   * @param file the lock file
+   * @param root the resolved root dependency
+   * @param repositories the repositories of the resolve, in their declared order
+   * @param routes the user declared routes of the resolve
+   * @param dependencies the resolved dependencies
+   * @param pomFiles returns the cached POM file of a dependency
+   * @throws IOException if the file couldn't be written
+   */
+  static void write(
+      File file,
+      Dependency root,
+      List<Repository> repositories,
+      Map<String, String> routes,
+      List<Dependency> dependencies,
+      Function<Dependency, File> pomFiles)
+      throws IOException {
+    File parent = file.getAbsoluteFile().getParentFile();
+    if (!parent.exists() && !parent.mkdirs()) {
+      throw new IOException("Failed to create the directory of " + file);
+    }
+    // resolves of the same root in other processes may write the same lock file at the same time
+    Path tempFile = Files.createTempFile(parent.toPath(), file.getName(), ".tmp");
+    try {
+      try (BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+        writer.write("# Generated by dependencies-resolver, resolve with --refresh-lock to update");
+        writer.newLine();
+        for (String line : getHeader(root, repositories, routes)) {
+          writer.write(line);
+          if (line.startsWith("root ")) {
+            writer.write(" " + getRepositoryUrl(root));
+          }
+          writer.newLine();
+        }
+        for (Dependency dependency : dependencies) {
+          String checksum = checksum(pomFiles.apply(dependency));
+          writer.write(
+              "dependency "
+                  + getCoordinates(dependency)
+                  + " "
+                  + dependency.getType()
+                  + " "
+                  + dependency.getScope()
+                  + " "
+                  + getRepositoryUrl(dependency)
+                  + " "
+                  + (checksum == null ? NONE : checksum));
+          writer.newLine();
+        }
+      }
+      Files.move(
+          tempFile,
+          file.toPath(),
+          StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      Files.deleteIfExists(tempFile);
+      throw e;
+    }
+  }
+
+  /** @return the lines which identify a resolve, without the repository of the root */
+  private static List<String> getHeader(
+      Dependency root, List<Repository> repositories, Map<String, String> routes) {
+    List<String> header = new ArrayList<>();
+    header.add("lock-version " + FORMAT_VERSION);
+    header.add("root " + getCoordinates(root) + " " + root.getType());
+    for (Repository repository : repositories) {
+      header.add("repository " + repository.getUrl());
+    }
+    for (Map.Entry<String, String> route : routes.entrySet()) {
+      header.add("route " + route.getKey() + "=" + route.getValue());
+    }
+    return header;
+  }
+
+  private static String getCoordinates(Dependency dependency) {
+    return dependency.getGroupId()
+        + ":"
+        + dependency.getArtifactId()
+        + ":"
+        + dependency.getVersion();
+  }
+
+  private static String getRepositoryUrl(Dependency dependency) {
+    return dependency.getRepository() == null ? NONE : dependency.getRepository().getUrl();
+  }
+
+  private static Dependency parseDependency(String coordinates, String type, String scope) {
+    String[] parts = coordinates.split(":");
+    if (parts.length != 3) {
+      return null;
+    }
+    return new Dependency(parts[0], parts[1], parts[2], type, scope);
+  }
+
+  /** @return the repository url written by {@link #getRepositoryUrl}, or null if it's unknown */
+  private static String parseRepositoryUrl(String url) {
+    return url.equals(NONE) ? null : url;
+  }
+
+  /**
+   * Checks a cached POM file against its locked checksum, a POM file which isn't cached, e.g. on a
+   * fresh machine, is trusted
+   */
+  private static boolean matchesChecksum(File pomFile, String checksum) throws IOException {
+    if (checksum.equals(NONE) || !pomFile.exists()) {
+      return true;
+    }
+    return checksum.equals(checksum(pomFile));
+  }
+
+  /** @return the hex SHA-256 checksum of the file, or null if the file doesn't exist */
+  private static String checksum(File file) throws IOException {
+    if (!file.exists()) {
+      return null;
+    }
+    // POM files are small enough to be read at once
+    return Util.sha256(Files.readAllBytes(file.toPath()));
+  }
+}
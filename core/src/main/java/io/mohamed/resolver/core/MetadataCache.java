@@ -0,0 +1,165 @@
+/*
+ *  Copyright (c) 2021 Mohamed Tamer
+ *   Permission is hereby granted, free of charge, to any person obtaining
+ *   a copy of this software and associated documentation files (the
+ *   "Software"), to deal in the Software without restriction, including
+ *   without limitation the rights to use, copy, modify, merge, publish,
+ *   distribute, sublicense, and/or sell copies of the Software, and to
+ *   permit persons to whom the Software is furnished to do so, subject to
+ *   the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be
+ *   included in all copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *   EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *   MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *   NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ *   LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ *   OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ *   WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+// -*- mode: java; c-basic-offset: 2; -*-
+package io.mohamed.resolver.core;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the merged version metadata of every artifact in memory and on disk, next to the cached
+ * POM files of the artifact. The cache is shared by all the resolves in the process, entries which
+ * are older than the TTL of a resolve are fetched again.
+ *
+ * @author Mohamed Tamer
+ */
+class MetadataCache {
+
+  // the name of the file the metadata of an artifact is persisted in
+  private static final String CACHE_FILE_NAME = "maven-metadata-resolver.txt";
+  // the shared instance
+  private static final MetadataCache instance = new MetadataCache();
+  // the metadata of every artifact, by group ID and artifact ID
+  private final Map<String, VersionMetadata> entries = new ConcurrentHashMap<>();
+
+  private MetadataCache() {}
+
+  /** @return the shared metadata cache */
+  static MetadataCache getInstance() {
+    return instance;
+  }
+
+  private static File getCacheFile(String groupId, String artifactId) {
+    return new File(
+        Util.getCachesDirectory(),
+        groupId.replace('.', '/') + "/" + artifactId + "/" + CACHE_FILE_NAME);
+  }
+
+  /**
+   * Looks up the metadata of an artifact
+   *
+   * @param groupId the group ID
+   * @param artifactId the artifact ID
+   * @param ttlMillis the maximum age of the metadata
+   * @return the metadata, or null if it isn't cached or is older than the TTL
+   */
+  VersionMetadata get(String groupId, String artifactId, long ttlMillis) {
+    String key = groupId + ":" + artifactId;
+    VersionMetadata metadata = entries.get(key);
+    if (metadata == null) {
+      metadata = load(getCacheFile(groupId, artifactId));
+      if (metadata != null) {
+        entries.put(key, metadata);
+      }
+    }
+    if (metadata == null || System.currentTimeMillis() - metadata.getFetchedAt() > ttlMillis) {
+      return null;
+    }
+    return metadata;
+  }
+
+  /**
+   * Caches the metadata of an artifact
+   *
+   * @param groupId the group ID
+   * @param artifactId the artifact ID
+   * @param metadata the merged metadata
+   */
+  void put(String groupId, String artifactId, VersionMetadata metadata) {
+    entries.put(groupId + ":" + artifactId, metadata);
+    File cacheFile = getCacheFile(groupId, artifactId);
+    Path tempFile = null;
+    try {
+      Files.createDirectories(cacheFile.getParentFile().toPath());
+      // other sessions and processes may write the same file at the same time
+      tempFile = Files.createTempFile(cacheFile.getParentFile().toPath(), CACHE_FILE_NAME, ".tmp");
+      try (BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+        writer.write(Long.toString(metadata.getFetchedAt()));
+        writer.newLine();
+        writer.write(metadata.getLatest() == null ? "" : metadata.getLatest());
+        writer.newLine();
+        writer.write(metadata.getRelease() == null ? "" : metadata.getRelease());
+        writer.newLine();
+        for (String version : metadata.getVersions()) {
+          writer.write(version);
+          writer.newLine();
+        }
+      }
+      Files.move(
+          tempFile,
+          cacheFile.toPath(),
+          StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      // the metadata is fetched again by the next process
+      if (tempFile != null) {
+        tempFile.toFile().delete();
+      }
+    }
+  }
+
+  private VersionMetadata load(File cacheFile) {
+    if (!cacheFile.exists()) {
+      return null;
+    }
+    try (BufferedReader reader =
+        Files.newBufferedReader(cacheFile.toPath(), StandardCharsets.UTF_8)) {
+      long fetchedAt = Long.parseLong(reader.readLine());
+      String latest = reader.readLine();
+      String release = reader.readLine();
+      if (latest == null || release == null) {
+        return null;
+      }
+      List<String> versions = new ArrayList<>();
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (!line.isEmpty()) {
+          versions.add(line);
+        }
+      }
+      return new VersionMetadata(
+          latest.isEmpty() ? null : latest,
+          release.isEmpty() ? null : release,
+          versions,
+          fetchedAt);
+    } catch (IOException | RuntimeException e) {
+      // a broken entry is fetched again
+      return null;
+    }
+  }
+
+  /** Forgets all the metadata kept in memory */
+  void clear() {
+    entries.clear();
+  }
+}
@@ -0,0 +1,167 @@
+/*
+ *  Copyright (c) 2021 Mohamed Tamer
+ *   Permission is hereby granted, free of charge, to any person obtaining
+ *   a copy of this software and associated documentation files (the
+ *   "Software"), to deal in the Software without restriction, including
+ *   without limitation the rights to use, copy, modify, merge, publish,
+ *   distribute, sublicense, and/or sell copies of the Software, and to
+ *   permit persons to whom the Software is furnished to do so, subject to
+ *   the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be
+ *   included in all copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *   EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *   MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *   NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ *   LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ *   OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ *   WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+// -*- mode: java; c-basic-offset: 2; -*-
+package io.mohamed.resolver.core;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import io.mohamed.resolver.core.callback.DependencyResolverCallback;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers the files which a repository doesn't have, so they aren't requested again until the
+ * entry expires. The cache is shared by all the resolves in the process and is persisted in the
+ * caches directory. A bloom filter sits in front of the entries, so looking up a file which was
+ * never missed doesn't touch the entries map.
+ *
+ * @author Mohamed Tamer
+ */
+class NegativeCache extends PersistentStore {
+
+  // the default time a miss is remembered for
+  static final long DEFAULT_TTL_MILLIS = TimeUnit.HOURS.toMillis(24);
+  // the name of the file the cache is persisted in
+  private static final String CACHE_FILE_NAME = "negative-cache.txt";
+  // the number of entries the bloom filter is sized for
+  private static final int EXPECTED_ENTRIES = 100_000;
+  // the shared instance, loaded on first use
+  private static final Shared<NegativeCache> instance =
+      new Shared<>(() -> new NegativeCache(new File(Util.getCachesDirectory(), CACHE_FILE_NAME)));
+  // the time each file url was found missing at
+  private final Map<String, Long> misses = new ConcurrentHashMap<>();
+  // the urls which may have an entry, rebuilt when the cache is cleared
+  private volatile BloomFilter<CharSequence> bloomFilter = newBloomFilter();
+
+  private NegativeCache(File cacheFile) {
+    super(cacheFile, "the negative cache");
+  }
+
+  /**
+   * @param callback reports a cache file which couldn't be read
+   * @return the shared negative cache
+   */
+  static NegativeCache getInstance(DependencyResolverCallback callback) {
+    return instance.get(callback);
+  }
+
+  /** @return the shared negative cache, which may not be loaded yet */
+  static NegativeCache getInstance() {
+    return instance.get();
+  }
+
+  private static BloomFilter<CharSequence> newBloomFilter() {
+    return BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8), EXPECTED_ENTRIES);
+  }
+
+  /**
+   * Checks if the given file url was missing less than ttl milliseconds ago
+   *
+   * @param url the file url
+   * @param ttlMillis the time a miss is remembered for
+   * @return true if the file is known to be missing
+   */
+  boolean isKnownMiss(String url, long ttlMillis) {
+    if (ttlMillis <= 0 || !bloomFilter.mightContain(url)) {
+      return false;
+    }
+    Long missedAt = misses.get(url);
+    return missedAt != null && System.currentTimeMillis() - missedAt < ttlMillis;
+  }
+
+  /**
+   * Remembers that the given file url is missing
+   *
+   * @param url the file url
+   */
+  void recordMiss(String url) {
+    misses.put(url, System.currentTimeMillis());
+    bloomFilter.put(url);
+    markDirty();
+  }
+
+  /**
+   * Forgets a previous miss of the given file url, it is called when the file was found
+   *
+   * @param url the file url
+   */
+  void recordHit(String url) {
+    if (bloomFilter.mightContain(url) && misses.remove(url) != null) {
+      markDirty();
+    }
+  }
+
+  /** Forgets all the misses */
+  void clear() {
+    misses.clear();
+    bloomFilter = newBloomFilter();
+    markCleared();
+  }
+
+  @Override
+  void read(BufferedReader reader) throws IOException {
+    String line;
+    while ((line = reader.readLine()) != null) {
+      int separator = line.indexOf(' ');
+      if (separator == -1) {
+        continue;
+      }
+      try {
+        String url = line.substring(separator + 1);
+        misses.put(url, Long.parseLong(line.substring(0, separator)));
+        bloomFilter.put(url);
+      } catch (NumberFormatException ignored) {
+        // skip broken lines
+      }
+    }
+  }
+
+  /**
+   * Forgets the expired misses and persists the others
+   *
+   * @param ttlMillis the time a miss is remembered for
+   * @param callback reports a cache file which couldn't be written
+   */
+  void save(long ttlMillis, DependencyResolverCallback callback) {
+    long now = System.currentTimeMillis();
+    if (misses.values().removeIf(missedAt -> now - missedAt >= ttlMillis)) {
+      markDirty();
+    }
+    save(callback);
+  }
+
+  @Override
+  void write(BufferedWriter writer) throws IOException {
+    for (Entry<String, Long> entry : misses.entrySet()) {
+      writer.write(entry.getValue() + " " + entry.getKey());
+      writer.newLine();
+    }
+  }
+}
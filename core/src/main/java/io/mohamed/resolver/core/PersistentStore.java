@@ -0,0 +1,188 @@
+/*
+ *  Copyright (c) 2021 Mohamed Tamer
+ *   Permission is hereby granted, free of charge, to any person obtaining
+ *   a copy of this software and associated documentation files (the
+ *   "Software"), to deal in the Software without restriction, including
+ *   without limitation the rights to use, copy, modify, merge, publish,
+ *   distribute, sublicense, and/or sell copies of the Software, and to
+ *   permit persons to whom the Software is furnished to do so, subject to
+ *   the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be
+ *   included in all copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *   EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *   MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *   NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ *   LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ *   OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ *   WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+// -*- mode: java; c-basic-offset: 2; -*-
+package io.mohamed.resolver.core;
+
+import io.mohamed.resolver.core.callback.DependencyResolverCallback;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.function.Supplier;
+
+/**
+ * A store which is kept in memory and persisted in a text file in the caches directory. The file
+ * is loaded the first time the store is used, and it's written again only if the store has changed
+ * since. It's written to a unique temporary file first, which then replaces it atomically, so no
+ * thread or process ever reads a half written file. Failures are reported to the callback of the
+ * resolve which hit them, a store which can't be loaded starts empty.
+ *
+ * @author Mohamed Tamer
+ */
+abstract class PersistentStore {
+
+  // the file the store is persisted in
+  private final File file;
+  // names the store in warnings, e.g. "the negative cache"
+  private final String description;
+  // a flag to indicate that the file was loaded, or that there is nothing to load anymore
+  private boolean loaded = false;
+  // a flag to indicate that the store has changed since it was loaded or saved
+  private volatile boolean dirty = false;
+
+  /**
+   * Creates a new PersistentStore
+   *
+   * @param file the file the store is persisted in
+   * @param description names the store in warnings, e.g. "the negative cache"
+   */
+  PersistentStore(File file, String description) {
+    this.file = file;
+    this.description = description;
+  }
+
+  /**
+   * Reads the persisted entries into the store
+   *
+   * @param reader reads the file
+   * @throws IOException if the file couldn't be read
+   */
+  abstract void read(BufferedReader reader) throws IOException;
+
+  /**
+   * Writes the entries of the store
+   *
+   * @param writer writes the temporary file
+   * @throws IOException if the file couldn't be written
+   */
+  abstract void write(BufferedWriter writer) throws IOException;
+
+  /** Marks the store as changed, so it's written the next time it's saved */
+  final void markDirty() {
+    dirty = true;
+  }
+
+  /** Marks the store as emptied, its file isn't loaded anymore and is replaced on the next save */
+  final synchronized void markCleared() {
+    loaded = true;
+    dirty = true;
+  }
+
+  /**
+   * Loads the file, only the first call does anything
+   *
+   * @param callback reports a file which couldn't be read
+   */
+  final synchronized void load(DependencyResolverCallback callback) {
+    if (loaded) {
+      return;
+    }
+    loaded = true;
+    if (!file.exists()) {
+      return;
+    }
+    try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+      read(reader);
+    } catch (IOException e) {
+      callback.info("[WARNING] Failed to load " + description + ": " + e.getMessage());
+    }
+  }
+
+  /**
+   * Writes the file if the store has changed since it was loaded or saved
+   *
+   * @param callback reports a file which couldn't be written
+   */
+  final synchronized void save(DependencyResolverCallback callback) {
+    if (!dirty) {
+      return;
+    }
+    dirty = false;
+    Path directory = file.getParentFile().toPath();
+    Path tempFile = null;
+    try {
+      Files.createDirectories(directory);
+      tempFile = Files.createTempFile(directory, file.getName(), ".tmp");
+      try (BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+        write(writer);
+      }
+      Files.move(
+          tempFile,
+          file.toPath(),
+          StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      callback.info("[WARNING] Failed to save " + description + ": " + e.getMessage());
+      if (tempFile != null) {
+        tempFile.toFile().delete();
+      }
+    }
+  }
+
+  /**
+   * Holds the instance of a store which is shared by the whole process, it's created and loaded
+   * when it's first used
+   *
+   * @param <T> the type of the store
+   */
+  static final class Shared<T extends PersistentStore> {
+
+    // creates the store
+    private final Supplier<T> factory;
+    // the store, or null if it wasn't used yet
+    private T instance;
+
+    /**
+     * Creates a new Shared
+     *
+     * @param factory creates the store
+     */
+    Shared(Supplier<T> factory) {
+      this.factory = factory;
+    }
+
+    /**
+     * Returns the store, its file is loaded if this is the first use
+     *
+     * @param callback reports a file which couldn't be read
+     * @return the loaded store
+     */
+    synchronized T get(DependencyResolverCallback callback) {
+      T store = get();
+      store.load(callback);
+      return store;
+    }
+
+    /** @return the store, which may not be loaded yet, e.g. to clear it */
+    synchronized T get() {
+      if (instance == null) {
+        instance = factory.get();
+      }
+      return instance;
+    }
+  }
+}
@@ -0,0 +1,183 @@
+/*
+ *  Copyright (c) 2021 Mohamed Tamer
+ *   Permission is hereby granted, free of charge, to any person obtaining
+ *   a copy of this software and associated documentation files (the
+ *   "Software"), to deal in the Software without restriction, including
+ *   without limitation the rights to use, copy, modify, merge, publish,
+ *   distribute, sublicense, and/or sell copies of the Software, and to
+ *   permit persons to whom the Software is furnished to do so, subject to
+ *   the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be
+ *   included in all copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *   EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *   MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *   NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ *   LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ *   OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ *   WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+// -*- mode: java; c-basic-offset: 2; -*-
+package io.mohamed.resolver.core;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The parts of a POM file which are needed for resolving, exactly as they are written in the file.
+ * Properties aren't interpolated and nothing is inherited from the parent, so a model can be shared
+ * by all the resolves which meet the same POM file.
+ *
+ * @author Mohamed Tamer
+ */
+final class PomModel {
+
+  // the project group ID, or null if it's inherited from the parent
+  private final String groupId;
+  // the project artifact ID
+  private final String artifactId;
+  // the project version, or null if it's inherited from the parent
+  private final String version;
+  // the project packaging, or null if it isn't declared
+  private final String packaging;
+  // the parent project, or null if there is no parent
+  private final PomDependency parent;
+  // the project properties, in their declared order
+  private final Map<String, String> properties;
+  // the declared dependencies
+  private final List<PomDependency> dependencies;
+  // the dependencies declared in the dependencyManagement section
+  private final List<PomDependency> dependencyManagement;
+
+  /**
+   * Creates a new PomModel
+   *
+   * @param groupId the project group ID, or null if it's inherited from the parent
+   * @param artifactId the project artifact ID
+   * @param version the project version, or null if it's inherited from the parent
+   * @param packaging the project packaging, or null if it isn't declared
+   * @param parent the parent project, or null if there is no parent
+   * @param properties the project properties, in their declared order
+   * @param dependencies the declared dependencies
+   * @param dependencyManagement the dependencies declared in the dependencyManagement section
+   */
+  PomModel(
+      String groupId,
+      String artifactId,
+      String version,
+      String packaging,
+      PomDependency parent,
+      Map<String, String> properties,
+      List<PomDependency> dependencies,
+      List<PomDependency> dependencyManagement) {
+    this.groupId = groupId;
+    this.artifactId = artifactId;
+    this.version = version;
+    this.packaging = packaging;
+    this.parent = parent;
+    this.properties = Collections.unmodifiableMap(properties);
+    this.dependencies = Collections.unmodifiableList(dependencies);
+    this.dependencyManagement = Collections.unmodifiableList(dependencyManagement);
+  }
+
+  /** @return the project group ID, or null if it's inherited from the parent */
+  String getGroupId() {
+    return groupId;
+  }
+
+  /** @return the project artifact ID */
+  String getArtifactId() {
+    return artifactId;
+  }
+
+  /** @return the project version, or null if it's inherited from the parent */
+  String getVersion() {
+    return version;
+  }
+
+  /** @return the project packaging, or null if it isn't declared */
+  String getPackaging() {
+    return packaging;
+  }
+
+  /** @return the parent project, or null if there is no parent */
+  PomDependency getParent() {
+    return parent;
+  }
+
+  /** @return the project properties, in their declared order */
+  Map<String, String> getProperties() {
+    return properties;
+  }
+
+  /** @return the declared dependencies */
+  List<PomDependency> getDependencies() {
+    return dependencies;
+  }
+
+  /** @return the dependencies declared in the dependencyManagement section */
+  List<PomDependency> getDependencyManagement() {
+    return dependencyManagement;
+  }
+
+  /** A dependency or parent declaration, exactly as it's written in the POM file */
+  static final class PomDependency {
+
+    // the group ID, or null if it's missing
+    private final String groupId;
+    // the artifact ID, or null if it's missing
+    private final String artifactId;
+    // the version, or null if it's missing
+    private final String version;
+    // the scope, or null if it isn't declared
+    private final String scope;
+    // the type, or null if it isn't declared
+    private final String type;
+
+    /**
+     * Creates a new PomDependency
+     *
+     * @param groupId the group ID, or null if it's missing
+     * @param artifactId the artifact ID, or null if it's missing
+     * @param version the version, or null if it's missing
+     * @param scope the scope, or null if it isn't declared
+     * @param type the type, or null if it isn't declared
+     */
+    PomDependency(String groupId, String artifactId, String version, String scope, String type) {
+      this.groupId = groupId;
+      this.artifactId = artifactId;
+      this.version = version;
+      this.scope = scope;
+      this.type = type;
+    }
+
+    /** @return the group ID, or null if it's missing */
+    String getGroupId() {
+      return groupId;
+    }
+
+    /** @return the artifact ID, or null if it's missing */
+    String getArtifactId() {
+      return artifactId;
+    }
+
+    /** @return the version, or null if it's missing */
+    String getVersion() {
+      return version;
+    }
+
+    /** @return the scope, or null if it isn't declared */
+    String getScope() {
+      return scope;
+    }
+
+    /** @return the type, or null if it isn't declared */
+    String getType() {
+      return type;
+    }
+  }
+}
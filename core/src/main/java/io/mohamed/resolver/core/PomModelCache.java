@@ -0,0 +1,140 @@
+/*
+ *  Copyright (c) 2021 Mohamed Tamer
+ *   Permission is hereby granted, free of charge, to any person obtaining
+ *   a copy of this software and associated documentation files (the
+ *   "Software"), to deal in the Software without restriction, including
+ *   without limitation the rights to use, copy, modify, merge, publish,
+ *   distribute, sublicense, and/or sell copies of the Software, and to
+ *   permit persons to whom the Software is furnished to do so, subject to
+ *   the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be
+ *   included in all copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *   EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *   MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *   NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ *   LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ *   OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ *   WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+// -*- mode: java; c-basic-offset: 2; -*-
+package io.mohamed.resolver.core;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the parsed POM models in memory, so a POM file which is met again by another branch of the
+ * graph, or by another resolve in the same process, isn't parsed again. Every model is kept with
+ * the url of the repository its POM file was downloaded from. The cache holds a bounded number of
+ * models and evicts the least recently used one when it's full.
+ *
+ * @author Mohamed Tamer
+ */
+class PomModelCache {
+
+  // the maximum number of models which are kept in memory
+  static final int MAX_ENTRIES = 2048;
+  // the shared instance
+  private static final PomModelCache instance = new PomModelCache(MAX_ENTRIES);
+  // the models by their coordinates, in access order
+  private final Map<String, CachedPom> models;
+  // the number of lookups which found a model
+  private final AtomicLong hits = new AtomicLong();
+  // the number of lookups which didn't find a model
+  private final AtomicLong misses = new AtomicLong();
+
+  private PomModelCache(int maxEntries) {
+    models =
+        new LinkedHashMap<String, CachedPom>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, CachedPom> eldest) {
+            return size() > maxEntries;
+          }
+        };
+  }
+
+  /** @return the shared POM model cache */
+  static PomModelCache getInstance() {
+    return instance;
+  }
+
+  /**
+   * Looks up the model of a POM file
+   *
+   * @param coordinates the coordinates of the POM file, in the groupId:artifactId:version format
+   * @return the model and its source, or null if it isn't cached
+   */
+  CachedPom get(String coordinates) {
+    CachedPom entry;
+    synchronized (models) {
+      entry = models.get(coordinates);
+    }
+    if (entry == null) {
+      misses.incrementAndGet();
+    } else {
+      hits.incrementAndGet();
+    }
+    return entry;
+  }
+
+  /**
+   * Caches the model of a POM file
+   *
+   * @param coordinates the coordinates of the POM file, in the groupId:artifactId:version format
+   * @param model the parsed model
+   * @param repositoryUrl the url of the repository the POM file was downloaded from, or null if
+   *     it's unknown
+   */
+  void put(String coordinates, PomModel model, String repositoryUrl) {
+    CachedPom entry = new CachedPom(model, repositoryUrl);
+    synchronized (models) {
+      models.put(coordinates, entry);
+    }
+  }
+
+  /** @return the number of lookups which found a model */
+  long getHits() {
+    return hits.get();
+  }
+
+  /** @return the number of lookups which didn't find a model */
+  long getMisses() {
+    return misses.get();
+  }
+
+  /** Forgets all the models */
+  void clear() {
+    synchronized (models) {
+      models.clear();
+    }
+  }
+
+  /** A parsed POM model and the url of the repository its POM file was downloaded from */
+  static final class CachedPom {
+
+    // the parsed model
+    private final PomModel model;
+    // the url of the repository the POM file was downloaded from, or null if it's unknown
+    private final String repositoryUrl;
+
+    private CachedPom(PomModel model, String repositoryUrl) {
+      this.model = model;
+      this.repositoryUrl = repositoryUrl;
+    }
+
+    /** @return the parsed model */
+    PomModel getModel() {
+      return model;
+    }
+
+    /** @return the url of the repository the POM file was downloaded from, or null */
+    String getRepositoryUrl() {
+      return repositoryUrl;
+    }
+  }
+}
@@ -0,0 +1,282 @@
+/*
+ *  Copyright (c) 2021 Mohamed Tamer
+ *   Permission is hereby granted, free of charge, to any person obtaining
+ *   a copy of this software and associated documentation files (the
+ *   "Software"), to deal in the Software without restriction, including
+ *   without limitation the rights to use, copy, modify, merge, publish,
+ *   distribute, sublicense, and/or sell copies of the Software, and to
+ *   permit persons to whom the Software is furnished to do so, subject to
+ *   the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be
+ *   included in all copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *   EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *   MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *   NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ *   LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ *   OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ *   WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+// -*- mode: java; c-basic-offset: 2; -*-
+package io.mohamed.resolver.core;
+
+import io.mohamed.resolver.core.PomModel.PomDependency;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Stores parsed POM models in a compact binary file next to the POM file they were parsed from, so
+ * a warm cache can be resolved without parsing any XML. Every binary file starts with a header
+ * holding the format version and the size and modification time of the POM file, binary files
+ * written by another format version or for a changed POM file are ignored and rewritten.
+ *
+ * @author Mohamed Tamer
+ */
+class PomModelStore {
+
+  // the extension added to the POM file name
+  static final String EXTENSION = ".bin";
+  // the first bytes of every binary file, "POMB"
+  private static final int MAGIC = 0x504F4D42;
+  // the version of the binary format, increment it whenever the format or PomModel changes
+  private static final int FORMAT_VERSION = 1;
+  // a flag to indicate that the existing caches were converted in this process
+  private static final AtomicBoolean converted = new AtomicBoolean();
+
+  private PomModelStore() {}
+
+  /**
+   * Returns the binary file for the given POM file
+   *
+   * @param pomFile the POM file
+   * @return the binary file next to it
+   */
+  static File getBinaryFile(File pomFile) {
+    return new File(pomFile.getParentFile(), pomFile.getName() + EXTENSION);
+  }
+
+  /**
+   * Reads the model of the given POM file from its binary file
+   *
+   * @param pomFile the POM file
+   * @return the model, or null if there is no up to date binary file
+   */
+  static PomModel read(File pomFile) {
+    File binaryFile = getBinaryFile(pomFile);
+    if (!binaryFile.exists()) {
+      return null;
+    }
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(binaryFile.toPath())))) {
+      if (in.readInt() != MAGIC
+          || in.readInt() != FORMAT_VERSION
+          || in.readLong() != pomFile.length()
+          || in.readLong() != pomFile.lastModified()) {
+        // the binary file is stale
+        return null;
+      }
+      // no length or count can be larger than the file, a damaged one must not be allocated
+      long limit = binaryFile.length();
+      String groupId = readString(in, limit);
+      String artifactId = readString(in, limit);
+      String version = readString(in, limit);
+      String packaging = readString(in, limit);
+      PomDependency parent = in.readBoolean() ? readDependency(in, limit) : null;
+      int propertyCount = readSize(in, limit);
+      Map<String, String> properties = new LinkedHashMap<>();
+      for (int i = 0; i < propertyCount; i++) {
+        properties.put(readString(in, limit), readString(in, limit));
+      }
+      List<PomDependency> dependencies = readDependencies(in, limit);
+      List<PomDependency> dependencyManagement = readDependencies(in, limit);
+      return new PomModel(
+          groupId,
+          artifactId,
+          version,
+          packaging,
+          parent,
+          properties,
+          dependencies,
+          dependencyManagement);
+    } catch (IOException | RuntimeException e) {
+      // the binary file is truncated or corrupted, it's rewritten after parsing the POM file
+      return null;
+    }
+  }
+
+  /**
+   * Writes the model of the given POM file to its binary file
+   *
+   * @param pomFile the POM file the model was parsed from
+   * @param model the model
+   */
+  static void write(File pomFile, PomModel model) {
+    File binaryFile = getBinaryFile(pomFile);
+    Path tempFile = null;
+    try {
+      // the converter thread and the resolver threads may write the same file at the same time
+      tempFile =
+          Files.createTempFile(binaryFile.getParentFile().toPath(), binaryFile.getName(), ".tmp");
+      try (DataOutputStream out =
+          new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeLong(pomFile.length());
+        out.writeLong(pomFile.lastModified());
+        writeString(out, model.getGroupId());
+        writeString(out, model.getArtifactId());
+        writeString(out, model.getVersion());
+        writeString(out, model.getPackaging());
+        out.writeBoolean(model.getParent() != null);
+        if (model.getParent() != null) {
+          writeDependency(out, model.getParent());
+        }
+        out.writeInt(model.getProperties().size());
+        for (Map.Entry<String, String> property : model.getProperties().entrySet()) {
+          writeString(out, property.getKey());
+          writeString(out, property.getValue());
+        }
+        writeDependencies(out, model.getDependencies());
+        writeDependencies(out, model.getDependencyManagement());
+      }
+      Files.move(
+          tempFile,
+          binaryFile.toPath(),
+          StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      // the POM file is parsed again next time
+      if (tempFile != null) {
+        tempFile.toFile().delete();
+      }
+    }
+  }
+
+  /**
+   * Writes the binary file of every cached POM file which doesn't have an up to date one, on a
+   * background thread. Only the first call in the process does anything.
+   *
+   * @param cachesDirectory the directory the POM files are cached in
+   */
+  static void convertInBackground(File cachesDirectory) {
+    if (!converted.compareAndSet(false, true)) {
+      return;
+    }
+    Thread thread = new Thread(() -> convert(cachesDirectory), "pom-cache-converter");
+    thread.setDaemon(true);
+    thread.setPriority(Thread.MIN_PRIORITY);
+    thread.start();
+  }
+
+  private static void convert(File cachesDirectory) {
+    if (!cachesDirectory.isDirectory()) {
+      return;
+    }
+    try (Stream<Path> files = Files.walk(cachesDirectory.toPath())) {
+      files
+          .filter(path -> path.getFileName().toString().endsWith(".pom"))
+          .map(Path::toFile)
+          .filter(pomFile -> read(pomFile) == null)
+          .forEach(
+              pomFile -> {
+                try {
+                  write(pomFile, PomParser.parse(pomFile));
+                } catch (IOException ignored) {
+                  // the resolver deletes broken POM files when it meets them
+                }
+              });
+    } catch (IOException | RuntimeException ignored) {
+      // the caches directory changed while walking it, e.g. because it was cleared
+    }
+  }
+
+  private static List<PomDependency> readDependencies(DataInputStream in, long limit)
+      throws IOException {
+    int count = readSize(in, limit);
+    List<PomDependency> dependencies = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      dependencies.add(readDependency(in, limit));
+    }
+    return dependencies;
+  }
+
+  private static void writeDependencies(DataOutputStream out, List<PomDependency> dependencies)
+      throws IOException {
+    out.writeInt(dependencies.size());
+    for (PomDependency dependency : dependencies) {
+      writeDependency(out, dependency);
+    }
+  }
+
+  private static PomDependency readDependency(DataInputStream in, long limit)
+      throws IOException {
+    return new PomDependency(
+        readString(in, limit),
+        readString(in, limit),
+        readString(in, limit),
+        readString(in, limit),
+        readString(in, limit));
+  }
+
+  private static void writeDependency(DataOutputStream out, PomDependency dependency)
+      throws IOException {
+    writeString(out, dependency.getGroupId());
+    writeString(out, dependency.getArtifactId());
+    writeString(out, dependency.getVersion());
+    writeString(out, dependency.getScope());
+    writeString(out, dependency.getType());
+  }
+
+  /**
+   * Reads a length or a count, which can't be larger than the binary file it was read from
+   *
+   * @param in the binary file
+   * @param limit the length of the binary file
+   * @return the length or the count
+   * @throws IOException if the value is larger than the binary file, i.e. the file is corrupted
+   */
+  private static int readSize(DataInputStream in, long limit) throws IOException {
+    int size = in.readInt();
+    if (size > limit) {
+      throw new IOException("Corrupted binary POM file, size " + size + " exceeds " + limit);
+    }
+    return size;
+  }
+
+  private static String readString(DataInputStream in, long limit) throws IOException {
+    int length = readSize(in, limit);
+    if (length < 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    if (value == null) {
+      out.writeInt(-1);
+      return;
+    }
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+}
@@ -0,0 +1,299 @@
+/*
+ *  Copyright (c) 2021 Mohamed Tamer
+ *   Permission is hereby granted, free of charge, to any person obtaining
+ *   a copy of this software and associated documentation files (the
+ *   "Software"), to deal in the Software without restriction, including
+ *   without limitation the rights to use, copy, modify, merge, publish,
+ *   distribute, sublicense, and/or sell copies of the Software, and to
+ *   permit persons to whom the Software is furnished to do so, subject to
+ *   the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be
+ *   included in all copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *   EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *   MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *   NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ *   LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ *   OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ *   WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+// -*- mode: java; c-basic-offset: 2; -*-
+package io.mohamed.resolver.core;
+
+import io.mohamed.resolver.core.PomModel.PomDependency;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Reads a {@link PomModel} from a POM file. The file is streamed once, only the elements the model
+ * needs are kept and everything else is skipped without building a document tree.
+ *
+ * @author Mohamed Tamer
+ */
+class PomParser {
+
+  // the shared factory, which is thread safe once it's configured
+  private static final XMLInputFactory inputFactory = newInputFactory();
+
+  private PomParser() {}
+
+  private static XMLInputFactory newInputFactory() {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    // POM files never need a DTD, and resolving external entities is a security risk
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+    return factory;
+  }
+
+  /**
+   * Parses the given POM file
+   *
+   * @param pomFile the POM file
+   * @return the parsed model
+   * @throws IOException if the file couldn't be read or isn't a valid POM file
+   */
+  static PomModel parse(File pomFile) throws IOException {
+    try (InputStream inputStream =
+        new BufferedInputStream(Files.newInputStream(pomFile.toPath()))) {
+      return parse(inputStream);
+    } catch (IOException e) {
+      throw new IOException("Failed to parse " + pomFile, e);
+    }
+  }
+
+  /**
+   * Parses a POM file from the given stream, the stream isn't closed
+   *
+   * @param inputStream the POM file content
+   * @return the parsed model
+   * @throws IOException if the stream couldn't be read
+   * @throws MalformedPomException if the stream isn't a valid POM file
+   */
+  static PomModel parse(InputStream inputStream) throws IOException {
+    XMLStreamReader reader = null;
+    try {
+      reader = createReader(inputStream);
+      reader.nextTag();
+      if (!"project".equals(reader.getLocalName())) {
+        // e.g. an HTML error page or the XML error body of a repository manager
+        throw new MalformedPomException(
+            "Expected a project element, found " + reader.getLocalName());
+      }
+      return parseProject(reader);
+    } catch (XMLStreamException e) {
+      if (e.getNestedException() instanceof IOException) {
+        // reading the stream failed, the content may be fine
+        throw (IOException) e.getNestedException();
+      }
+      throw new MalformedPomException(e);
+    } finally {
+      if (reader != null) {
+        try {
+          reader.close();
+        } catch (XMLStreamException ignored) {
+        }
+      }
+    }
+  }
+
+  /**
+   * Creates a streaming reader for an XML file from the shared factory
+   *
+   * @param inputStream the XML file content
+   * @return the reader
+   * @throws XMLStreamException if the reader couldn't be created
+   */
+  static XMLStreamReader createReader(InputStream inputStream) throws XMLStreamException {
+    return inputFactory.createXMLStreamReader(inputStream);
+  }
+
+  private static PomModel parseProject(XMLStreamReader reader) throws XMLStreamException {
+    String groupId = null;
+    String artifactId = null;
+    String version = null;
+    String packaging = null;
+    PomDependency parent = null;
+    Map<String, String> properties = new LinkedHashMap<>();
+    List<PomDependency> dependencies = new ArrayList<>();
+    List<PomDependency> dependencyManagement = new ArrayList<>();
+    while (nextChild(reader)) {
+      switch (reader.getLocalName()) {
+        case "groupId":
+          groupId = readText(reader);
+          break;
+        case "artifactId":
+          artifactId = readText(reader);
+          break;
+        case "version":
+          version = readText(reader);
+          break;
+        case "packaging":
+          packaging = readText(reader);
+          break;
+        case "properties":
+          while (nextChild(reader)) {
+            String name = reader.getLocalName();
+            properties.put(name, readText(reader));
+          }
+          break;
+        case "parent":
+          parent = parseDependency(reader);
+          break;
+        case "dependencyManagement":
+          while (nextChild(reader)) {
+            if (reader.getLocalName().equals("dependencies")) {
+              parseDependencies(reader, dependencyManagement);
+            } else {
+              skip(reader);
+            }
+          }
+          break;
+        case "dependencies":
+          parseDependencies(reader, dependencies);
+          break;
+        default:
+          skip(reader);
+      }
+    }
+    return new PomModel(
+        groupId,
+        artifactId,
+        version,
+        packaging,
+        parent,
+        properties,
+        dependencies,
+        dependencyManagement);
+  }
+
+  private static void parseDependencies(XMLStreamReader reader, List<PomDependency> dependencies)
+      throws XMLStreamException {
+    while (nextChild(reader)) {
+      if (reader.getLocalName().equals("dependency")) {
+        dependencies.add(parseDependency(reader));
+      } else {
+        skip(reader);
+      }
+    }
+  }
+
+  private static PomDependency parseDependency(XMLStreamReader reader) throws XMLStreamException {
+    String groupId = null;
+    String artifactId = null;
+    String version = null;
+    String scope = null;
+    String type = null;
+    while (nextChild(reader)) {
+      switch (reader.getLocalName()) {
+        case "groupId":
+          groupId = readText(reader);
+          break;
+        case "artifactId":
+          artifactId = readText(reader);
+          break;
+        case "version":
+          version = readText(reader);
+          break;
+        case "scope":
+          scope = readText(reader);
+          break;
+        case "type":
+          type = readText(reader);
+          break;
+        default:
+          skip(reader);
+      }
+    }
+    return new PomDependency(groupId, artifactId, version, scope, type);
+  }
+
+  /**
+   * Moves to the next child element of the current element
+   *
+   * @param reader the reader, positioned inside the parent element
+   * @return true if the reader is at the start of a child element, false if it's at the end of the
+   *     parent element
+   */
+  static boolean nextChild(XMLStreamReader reader) throws XMLStreamException {
+    while (reader.hasNext()) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        return true;
+      }
+      if (event == XMLStreamConstants.END_ELEMENT) {
+        return false;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Reads the text of the current element, the text of nested elements is included
+   *
+   * @param reader the reader, positioned at the start of the element
+   * @return the trimmed text, the reader is left at the end of the element
+   */
+  static String readText(XMLStreamReader reader) throws XMLStreamException {
+    StringBuilder text = new StringBuilder();
+    int depth = 1;
+    while (depth > 0) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        depth++;
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+        depth--;
+      } else if (event == XMLStreamConstants.CHARACTERS
+          || event == XMLStreamConstants.CDATA
+          || event == XMLStreamConstants.SPACE) {
+        text.append(reader.getText());
+      }
+    }
+    return text.toString().trim();
+  }
+
+  /**
+   * Skips the current element and all its children
+   *
+   * @param reader the reader, positioned at the start of the element
+   */
+  static void skip(XMLStreamReader reader) throws XMLStreamException {
+    int depth = 1;
+    while (depth > 0) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        depth++;
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+        depth--;
+      }
+    }
+  }
+
+  /** Thrown when the content of a POM file isn't valid XML or isn't a project */
+  static class MalformedPomException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    MalformedPomException(String message) {
+      super(message);
+    }
+
+    MalformedPomException(Throwable cause) {
+      super(cause);
+    }
+  }
+}
@@ -0,0 +1,340 @@
+/*
+ *  Copyright (c) 2021 Mohamed Tamer
+ *   Permission is hereby granted, free of charge, to any person obtaining
+ *   a copy of this software and associated documentation files (the
+ *   "Software"), to deal in the Software without restriction, including
+ *   without limitation the rights to use, copy, modify, merge, publish,
+ *   distribute, sublicense, and/or sell copies of the Software, and to
+ *   permit persons to whom the Software is furnished to do so, subject to
+ *   the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be
+ *   included in all copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *   EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *   MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *   NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ *   LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ *   OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ *   WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+// -*- mode: java; c-basic-offset: 2; -*-
+package io.mohamed.resolver.core;
+
+import io.mohamed.resolver.core.callback.DependencyResolverCallback;
+import io.mohamed.resolver.core.model.Dependency;
+import io.mohamed.resolver.core.model.Repository;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.TeeInputStream;
+
+/**
+ * Loads the POM models of artifacts from the parsed models cache, the caches directory or the
+ * repositories. Threads which ask for a POM file which is being loaded by another thread wait for
+ * it instead of downloading it again. The url of the repository a POM file was downloaded from is
+ * saved next to the cached file, so a POM file which is loaded from the caches directory reports
+ * its real source.
+ *
+ * @author Mohamed Tamer
+ */
+class PomSource {
+
+  // the extension added to the POM file name for the file which holds its repository url
+  static final String SOURCE_EXTENSION = ".repository";
+  // fetches POM files from the repositories
+  private final RepositoryFetcher fetcher;
+  // the repositories to search against
+  private final List<Repository> repositories;
+  // reports the downloads
+  private final DependencyResolverCallback callback;
+  // the POM files which are being loaded, by coordinates
+  private final SingleFlight<String, LoadedPom> loading = new SingleFlight<>(false);
+
+  /**
+   * Creates a new PomSource
+   *
+   * @param fetcher fetches POM files from the repositories
+   * @param repositories the repositories to search against
+   * @param callback reports the downloads
+   */
+  PomSource(
+      RepositoryFetcher fetcher,
+      List<Repository> repositories,
+      DependencyResolverCallback callback) {
+    this.fetcher = fetcher;
+    this.repositories = repositories;
+    this.callback = callback;
+  }
+
+  /**
+   * Returns the path of the POM file of the dependency, relative to the repository root
+   *
+   * @param dependency the dependency
+   * @return the path of the POM file
+   */
+  static String getPath(Dependency dependency) {
+    if (dependency == null) {
+      return "";
+    }
+    return dependency.getGroupId().replaceAll("\\.", "/")
+        + "/"
+        + dependency.getArtifactId()
+        + "/"
+        + dependency.getVersion()
+        + "/"
+        + dependency.getArtifactId()
+        + "-"
+        + dependency.getVersion()
+        + ".pom";
+  }
+
+  /**
+   * @param dependency a dependency
+   * @return the file the POM file of the dependency is cached in
+   */
+  static File getCacheFile(Dependency dependency) {
+    return new File(Util.getCachesDirectory(), getPath(dependency));
+  }
+
+  /**
+   * @param pomFile a cached POM file
+   * @return the file which holds the url of the repository the POM file was downloaded from
+   */
+  static File getSourceFile(File pomFile) {
+    return new File(pomFile.getParentFile(), pomFile.getName() + SOURCE_EXTENSION);
+  }
+
+  /**
+   * Finds the configured repository with the given url, so dependencies share its instance
+   *
+   * @param repositories the configured repositories
+   * @param url the repository url, or null if it's unknown
+   * @return the repository, a new one if it isn't configured, or null if the url is null
+   */
+  static Repository findRepository(List<Repository> repositories, String url) {
+    if (url == null) {
+      return null;
+    }
+    for (Repository repository : repositories) {
+      if (repository.getUrl().equals(url)) {
+        return repository;
+      }
+    }
+    return new Repository(url);
+  }
+
+  /**
+   * Loads the POM model of the dependency
+   *
+   * @param dependency the dependency
+   * @return the POM model and the repository it was downloaded from, or null if the POM file
+   *     couldn't be found or parsed
+   * @throws InterruptedException if the thread was interrupted
+   */
+  LoadedPom load(Dependency dependency) throws InterruptedException {
+    String coordinates =
+        dependency.getGroupId() + ":" + dependency.getArtifactId() + ":" + dependency.getVersion();
+    // the loaded model is kept by the parsed models cache
+    return loading.run(coordinates, () -> loadModel(dependency, coordinates));
+  }
+
+  /** @return the number of requests for POM files which attached to a load which was in flight */
+  int getCoalescedRequests() {
+    return loading.getCoalesced();
+  }
+
+  private LoadedPom loadModel(Dependency dependency, String coordinates)
+      throws InterruptedException {
+    PomModelCache.CachedPom cached = PomModelCache.getInstance().get(coordinates);
+    if (cached != null) {
+      return new LoadedPom(
+          cached.getModel(), findRepository(repositories, cached.getRepositoryUrl()));
+    }
+    PomModel model;
+    String repositoryUrl;
+    File outputFile = getCacheFile(dependency);
+    if (!outputFile.exists()) {
+      File artifactDirectory = outputFile.getParentFile();
+      if (!artifactDirectory.exists() && !artifactDirectory.mkdirs()) {
+        callback.info("[WARNING] Failed to create some artifact directories");
+      }
+      LoadedPom downloaded = download(dependency, outputFile);
+      if (downloaded == null) {
+        return null;
+      }
+      model = downloaded.getModel();
+      repositoryUrl = downloaded.getRepository().getUrl();
+      PomModelStore.write(outputFile, model);
+    } else {
+      model = PomModelStore.read(outputFile);
+      repositoryUrl = readSource(outputFile);
+    }
+    if (model == null) {
+      try {
+        model = PomParser.parse(outputFile);
+      } catch (IOException e) {
+        // don't keep a broken POM file in the cache
+        if (outputFile.exists() && !outputFile.delete()) {
+          callback.info("[WARNING] Failed to delete " + outputFile);
+        }
+        return null;
+      }
+      PomModelStore.write(outputFile, model);
+    }
+    PomModelCache.getInstance().put(coordinates, model, repositoryUrl);
+    return new LoadedPom(model, findRepository(repositories, repositoryUrl));
+  }
+
+  /**
+   * Reads the url of the repository a cached POM file was downloaded from
+   *
+   * @param pomFile the cached POM file
+   * @return the repository url, or null if it's unknown, e.g. because the POM file was cached by an
+   *     older version
+   */
+  private static String readSource(File pomFile) {
+    File sourceFile = getSourceFile(pomFile);
+    if (!sourceFile.exists()) {
+      return null;
+    }
+    try {
+      String url = new String(Files.readAllBytes(sourceFile.toPath()), StandardCharsets.UTF_8);
+      return url.isEmpty() ? null : url;
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Saves the url of the repository a POM file was downloaded from next to the cached file
+   *
+   * @param pomFile the cached POM file
+   * @param repository the repository the POM file was downloaded from
+   */
+  private static void writeSource(File pomFile, Repository repository) {
+    File sourceFile = getSourceFile(pomFile);
+    Path tempFile = null;
+    try {
+      tempFile =
+          Files.createTempFile(pomFile.getParentFile().toPath(), sourceFile.getName(), ".tmp");
+      Files.write(tempFile, repository.getUrl().getBytes(StandardCharsets.UTF_8));
+      Files.move(
+          tempFile,
+          sourceFile.toPath(),
+          StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      // the source of the POM file is unknown next time
+      if (tempFile != null) {
+        FileUtils.deleteQuietly(tempFile.toFile());
+      }
+    }
+  }
+
+  /**
+   * Downloads the POM file from the first repository which has it and parses it while it's
+   * downloaded. The file is written to a temporary file at the same time, which replaces the
+   * cached file only after it was parsed successfully. A repository which serves a broken POM
+   * file, e.g. a mirror which answers with an HTML error page, is skipped and the other
+   * repositories are asked again.
+   *
+   * @param dependency the dependency
+   * @param outputFile the file to save the POM file to
+   * @return the parsed POM model, or null if no repository has a valid POM file
+   * @throws InterruptedException if the thread was interrupted
+   */
+  private LoadedPom download(Dependency dependency, File outputFile)
+      throws InterruptedException {
+    // the repositories which served a broken POM file
+    Set<String> broken = new HashSet<>();
+    int attempt = 0;
+    while (true) {
+      File tempFile = null;
+      Repository repository = null;
+      try (RepositoryFetcher.Response response =
+          fetcher.fetch(dependency.getGroupId(), getPath(dependency), null, broken)) {
+        if (response == null) {
+          return null;
+        }
+        repository = response.getRepository();
+        callback.dependencyPomDownloading(response.getUrl().toString());
+        // other processes may download the same POM file into the same cache at the same time
+        tempFile =
+            Files.createTempFile(outputFile.getParentFile().toPath(), outputFile.getName(), ".part")
+                .toFile();
+        PomModel model;
+        try (OutputStream fos = new FileOutputStream(tempFile);
+            TeeInputStream tee = new TeeInputStream(response.getInputStream(), fos)) {
+          model = PomParser.parse(tee);
+          // keep whatever follows the project element, so the cached file is complete
+          IOUtils.skip(tee, Long.MAX_VALUE);
+        }
+        // the source is saved first, so the cached POM file never has a missing source
+        writeSource(outputFile, response.getRepository());
+        Files.move(
+            tempFile.toPath(),
+            outputFile.toPath(),
+            StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+        callback.dependencyPomDownloaded(response.getUrl().toString());
+        return new LoadedPom(model, response.getRepository());
+      } catch (PomParser.MalformedPomException e) {
+        // the repository serves a broken POM file, downloading it again won't help but another
+        // repository may have a valid one
+        FileUtils.deleteQuietly(tempFile);
+        callback.info(
+            "[WARNING] " + repository.getUrl() + " served a broken POM file for " + dependency);
+        broken.add(repository.getUrl());
+      } catch (IOException e) {
+        // don't leave a partially downloaded POM file in the cache
+        FileUtils.deleteQuietly(tempFile);
+        if (Thread.currentThread().isInterrupted()) {
+          throw new InterruptedException();
+        }
+        // the connection was reset while downloading
+        if (!fetcher.getRetryPolicy().acquireRetry(attempt, 0)) {
+          return null;
+        }
+        fetcher.getRetryPolicy().backOff(attempt, 0);
+        attempt++;
+      }
+    }
+  }
+
+  /** A POM model and the repository it was downloaded from */
+  static final class LoadedPom {
+
+    // the POM model
+    private final PomModel model;
+    // the repository the POM file was downloaded from, or null if it's unknown
+    private final Repository repository;
+
+    LoadedPom(PomModel model, Repository repository) {
+      this.model = model;
+      this.repository = repository;
+    }
+
+    /** @return the POM model */
+    PomModel getModel() {
+      return model;
+    }
+
+    /** @return the repository the POM file was downloaded from, or null if it's unknown */
+    Repository getRepository() {
+      return repository;
+    }
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ *  Copyright (c) 2021 Mohamed Tamer
+ *   Permission is hereby granted, free of charge, to any person obtaining
+ *   a copy of this software and associated documentation files (the
+ *   "Software"), to deal in the Software without restriction, including
+ *   without limitation the rights to use, copy, modify, merge, publish,
+ *   distribute, sublicense, and/or sell copies of the Software, and to
+ *   permit persons to whom the Software is furnished to do so, subject to
+ *   the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be
+ *   included in all copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *   EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *   MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *   NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ *   LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ *   OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ *   WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+// -*- mode: java; c-basic-offset: 2; -*-
+package io.mohamed.resolver.core;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The properties a POM value is interpolated with. A property is looked up in the project, then
+ * in its parents, and then in the built in properties of the project, such as project.version.
+ * Properties may reference other properties, references which form a cycle are left unresolved.
+ *
+ * @author Mohamed Tamer
+ */
+final class PropertyScope {
+
+  // the properties declared by the project
+  private final Map<String, String> properties;
+  // the scope of the parent, or null if the project has no parent
+  private final PropertyScope parent;
+  // the built in properties of the project
+  private final Map<String, String> builtIns = new HashMap<>();
+
+  /**
+   * Creates a new PropertyScope
+   *
+   * @param model the POM model of the project
+   * @param parent the scope of the parent, or null if the project has no parent
+   */
+  PropertyScope(PomModel model, PropertyScope parent) {
+    this.properties = model.getProperties();
+    this.parent = parent;
+    PomModel.PomDependency parentDeclaration = model.getParent();
+    String groupId = model.getGroupId();
+    String version = model.getVersion();
+    if (parentDeclaration != null) {
+      // the coordinates which aren't declared are inherited from the parent
+      groupId = groupId == null ? parentDeclaration.getGroupId() : groupId;
+      version = version == null ? parentDeclaration.getVersion() : version;
+      addBuiltIn("parent.groupId", parentDeclaration.getGroupId());
+      addBuiltIn("parent.artifactId", parentDeclaration.getArtifactId());
+      addBuiltIn("parent.version", parentDeclaration.getVersion());
+    }
+    addBuiltIn("groupId", groupId);
+    addBuiltIn("artifactId", model.getArtifactId());
+    addBuiltIn("version", version);
+    addBuiltIn("packaging", model.getPackaging() == null ? "jar" : model.getPackaging());
+  }
+
+  private void addBuiltIn(String name, String value) {
+    if (value != null) {
+      builtIns.put("project." + name, value);
+      // the deprecated prefix, which older POM files still use
+      builtIns.put("pom." + name, value);
+    }
+  }
+
+  private String lookupProperty(String name) {
+    for (PropertyScope scope = this; scope != null; scope = scope.parent) {
+      String value = scope.properties.get(name);
+      if (value != null) {
+        return value;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Looks up a property without interpolating its value
+   *
+   * @param name the property name
+   * @return the raw value, or null if the property is unknown
+   */
+  String lookup(String name) {
+    String value = lookupProperty(name);
+    return value != null ? value : builtIns.get(name);
+  }
+
+  /**
+   * Replaces the ${name} references in the given value
+   *
+   * @param value the value, may be null
+   * @return the interpolated value, references to unknown properties are kept as they are
+   */
+  String interpolate(String value) {
+    if (value == null) {
+      return null;
+    }
+    return interpolate(value, new HashSet<>());
+  }
+
+  private String interpolate(String value, Set<String> resolving) {
+    PropertyTemplate template = PropertyTemplate.compile(value);
+    if (template.isConstant()) {
+      return value;
+    }
+    return template.resolve(
+        name -> {
+          String raw = lookup(name);
+          if (raw == null || !resolving.add(name)) {
+            // the property is unknown or references itself
+            return null;
+          }
+          try {
+            return interpolate(raw, resolving);
+          } finally {
+            resolving.remove(name);
+          }
+        });
+  }
+}
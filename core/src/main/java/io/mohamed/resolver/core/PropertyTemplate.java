@@ -0,0 +1,118 @@
+/*
+ *  Copyright (c) 2021 Mohamed Tamer
+ *   Permission is hereby granted, free of charge, to any person obtaining
+ *   a copy of this software and associated documentation files (the
+ *   "Software"), to deal in the Software without restriction, including
+ *   without limitation the rights to use, copy, modify, merge, publish,
+ *   distribute, sublicense, and/or sell copies of the Software, and to
+ *   permit persons to whom the Software is furnished to do so, subject to
+ *   the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be
+ *   included in all copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *   EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *   MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *   NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ *   LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ *   OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ *   WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+// -*- mode: java; c-basic-offset: 2; -*-
+package io.mohamed.resolver.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * A POM value split once into its literal parts and its ${name} references. Templates are cached
+ * by their source value for the whole process, so a value which is met in many POM files is only
+ * tokenized once.
+ *
+ * @author Mohamed Tamer
+ */
+final class PropertyTemplate {
+
+  // the maximum number of cached templates, the cache starts over when it's full
+  private static final int MAX_CACHED_TEMPLATES = 16_384;
+  // the cached templates, by their source value
+  private static final Map<String, PropertyTemplate> templates = new ConcurrentHashMap<>();
+  // the literal parts, there is one more literal than references
+  private final String[] literals;
+  // the names of the referenced properties
+  private final String[] names;
+
+  private PropertyTemplate(String[] literals, String[] names) {
+    this.literals = literals;
+    this.names = names;
+  }
+
+  /**
+   * Returns the template of the given value
+   *
+   * @param value the value
+   * @return the template
+   */
+  static PropertyTemplate compile(String value) {
+    PropertyTemplate template = templates.get(value);
+    if (template == null) {
+      template = tokenize(value);
+      if (templates.size() >= MAX_CACHED_TEMPLATES) {
+        templates.clear();
+      }
+      templates.put(value, template);
+    }
+    return template;
+  }
+
+  private static PropertyTemplate tokenize(String value) {
+    List<String> literals = new ArrayList<>();
+    List<String> names = new ArrayList<>();
+    int start = 0;
+    int reference;
+    while ((reference = value.indexOf("${", start)) != -1) {
+      int end = value.indexOf('}', reference + 2);
+      if (end == -1) {
+        break;
+      }
+      literals.add(value.substring(start, reference));
+      names.add(value.substring(reference + 2, end).trim());
+      start = end + 1;
+    }
+    literals.add(value.substring(start));
+    return new PropertyTemplate(literals.toArray(new String[0]), names.toArray(new String[0]));
+  }
+
+  /** @return true if the value references no property */
+  boolean isConstant() {
+    return names.length == 0;
+  }
+
+  /**
+   * Resolves the references of the template
+   *
+   * @param lookup returns the value of a property, or null if it's unknown
+   * @return the resolved value, references to unknown properties are kept as they are
+   */
+  String resolve(Function<String, String> lookup) {
+    if (names.length == 0) {
+      return literals[0];
+    }
+    StringBuilder result = new StringBuilder(literals[0]);
+    for (int i = 0; i < names.length; i++) {
+      String value = lookup.apply(names[i]);
+      if (value == null) {
+        result.append("${").append(names[i]).append('}');
+      } else {
+        result.append(value);
+      }
+      result.append(literals[i + 1]);
+    }
+    return result.toString();
+  }
+}
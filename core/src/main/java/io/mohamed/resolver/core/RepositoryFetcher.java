@@ -0,0 +1,655 @@
+/*
+ *  Copyright (c) 2021 Mohamed Tamer
+ *   Permission is hereby granted, free of charge, to any person obtaining
+ *   a copy of this software and associated documentation files (the
+ *   "Software"), to deal in the Software without restriction, including
+ *   without limitation the rights to use, copy, modify, merge, publish,
+ *   distribute, sublicense, and/or sell copies of the Software, and to
+ *   permit persons to whom the Software is furnished to do so, subject to
+ *   the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be
+ *   included in all copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *   EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *   MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *   NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ *   LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ *   OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ *   WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+// -*- mode: java; c-basic-offset: 2; -*-
+package io.mohamed.resolver.core;
+
+import io.mohamed.resolver.core.callback.DependencyResolverCallback;
+import io.mohamed.resolver.core.model.Repository;
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fetches files from a list of maven repositories. Every repository is probed at the same time,
+ * and the earliest declared repository which has the file wins, the other requests are cancelled.
+ * Once a later repository has the file, the earlier ones are only waited for as long as their
+ * {@link RepositoryHealth} says they usually take, and unhealthy ones are skipped. Repositories
+ * which are known to miss a file are skipped, see {@link NegativeCache}, and the repository
+ * predicted by the {@link RepositoryRoutes} is asked alone before all the others. Transient
+ * failures are retried as allowed by the {@link RetryPolicy}.
+ *
+ * @author Mohamed Tamer
+ */
+class RepositoryFetcher implements Closeable {
+
+  // how long an earlier declared repository may answer after a later one and still win
+  static final long TIE_BREAK_WINDOW_MILLIS = 50;
+  // the longest time an earlier declared repository is waited for once a later one has the file
+  static final long MAX_PREFERENCE_WAIT_MILLIS = 2_000;
+  // the default time a connection to a repository may take to be established
+  static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 10_000;
+  // the default time a repository may stay silent while a file is read from it
+  static final int DEFAULT_READ_TIMEOUT_MILLIS = 30_000;
+  // the too many requests HTTP status code, which HttpURLConnection has no constant for
+  private static final int HTTP_TOO_MANY_REQUESTS = 429;
+  // the repositories to fetch files from, in their declared order
+  private final List<Repository> repositories;
+  // the executor which runs the probes
+  private final ExecutorService probeExecutor;
+  // remembers the files which the repositories don't have
+  private final NegativeCache negativeCache;
+  // the time a miss is remembered for, or 0 to always ask the repositories
+  private final long negativeCacheTtlMillis;
+  // the number of requests which were skipped because the repository is known to miss the file
+  private final AtomicInteger negativeCacheHits = new AtomicInteger();
+  // the number of requests which were sent because no miss was known
+  private final AtomicInteger negativeCacheMisses = new AtomicInteger();
+  // predicts the repository of a group ID
+  private final RepositoryRoutes routes;
+  // the user declared routes, by group ID prefix
+  private final Map<String, String> userRoutes;
+  // the number of files which were found in the predicted repository
+  private final AtomicInteger routeHits = new AtomicInteger();
+  // the number of files which weren't found in the predicted repository
+  private final AtomicInteger routeMisses = new AtomicInteger();
+  // tracks the latency and the errors of every repository host
+  private final RepositoryHealth health;
+  // the number of requests which were skipped because the repository circuit was open
+  private final AtomicInteger circuitSkips = new AtomicInteger();
+  // decides which failed requests are sent again
+  private final RetryPolicy retryPolicy;
+  // the time a connection may take to be established, or 0 to wait forever
+  private final int connectTimeoutMillis;
+  // the time a repository may stay silent while reading, or 0 to wait forever
+  private final int readTimeoutMillis;
+  // reports the state files which couldn't be loaded or saved
+  private final DependencyResolverCallback callback;
+  // the connections which are open, so they can be aborted
+  private final Set<URLConnection> connections = ConcurrentHashMap.newKeySet();
+  // a flag to indicate that the requests were aborted
+  private volatile boolean aborted = false;
+
+  /**
+   * Creates a new RepositoryFetcher
+   *
+   * @param repositories the repositories to fetch files from, in their declared order
+   * @param executorMode the kind of threads to probe the repositories on
+   * @param negativeCacheTtlMillis the time a miss is remembered for, or 0 to disable the cache
+   * @param userRoutes the user declared repository urls, by group ID prefix
+   * @param retryPolicy decides which failed requests are sent again
+   * @param connectTimeoutMillis the time a connection may take to be established, 0 for no limit
+   * @param readTimeoutMillis the time a repository may stay silent while reading, 0 for no limit
+   * @param callback reports the state files which couldn't be loaded or saved
+   */
+  RepositoryFetcher(
+      List<Repository> repositories,
+      ExecutorMode executorMode,
+      long negativeCacheTtlMillis,
+      Map<String, String> userRoutes,
+      RetryPolicy retryPolicy,
+      int connectTimeoutMillis,
+      int readTimeoutMillis,
+      DependencyResolverCallback callback) {
+    this.repositories = repositories;
+    this.negativeCacheTtlMillis = negativeCacheTtlMillis;
+    this.userRoutes = userRoutes;
+    this.retryPolicy = retryPolicy;
+    this.connectTimeoutMillis = connectTimeoutMillis;
+    this.readTimeoutMillis = readTimeoutMillis;
+    this.callback = callback;
+    negativeCache = NegativeCache.getInstance(callback);
+    routes = RepositoryRoutes.getInstance(callback);
+    health = RepositoryHealth.getInstance(callback);
+    probeExecutor = executorMode.newUnboundedExecutor("repository-probe");
+  }
+
+  /** @return the repositories files are fetched from */
+  List<Repository> getRepositories() {
+    return repositories;
+  }
+
+  /**
+   * Predicts the repository which hosts the artifacts of the given group ID
+   *
+   * @param groupId the group ID
+   * @return the predicted repository, or null if there is no prediction
+   */
+  Repository predictRepository(String groupId) {
+    return routes.predict(userRoutes, repositories, groupId);
+  }
+
+  /**
+   * Opens the file at the given path from the first repository which has it. The preferred
+   * repository, or the predicted one if there is no preferred repository, is asked first.
+   *
+   * @param groupId the group ID of the artifact the file belongs to
+   * @param path the path of the file relative to the repository root
+   * @param preferred the repository to ask first, or null to use the predicted repository
+   * @return the response of the winning repository, or null if no repository has the file
+   * @throws InterruptedException if the thread was interrupted while waiting for the repositories
+   */
+  Response fetch(String groupId, String path, Repository preferred) throws InterruptedException {
+    return fetch(groupId, path, preferred, Collections.emptySet());
+  }
+
+  /**
+   * Opens the file at the given path from the first repository which has it, without asking the
+   * skipped repositories, e.g. because they served a broken copy of the file
+   *
+   * @param groupId the group ID of the artifact the file belongs to
+   * @param path the path of the file relative to the repository root
+   * @param preferred the repository to ask first, or null to use the predicted repository
+   * @param skipped the urls of the repositories not to ask
+   * @return the response of the winning repository, or null if no other repository has the file
+   * @throws InterruptedException if the thread was interrupted while waiting for the repositories
+   */
+  Response fetch(String groupId, String path, Repository preferred, Set<String> skipped)
+      throws InterruptedException {
+    Repository candidate = preferred != null ? preferred : predictRepository(groupId);
+    Repository first =
+        candidate != null && !skipped.contains(candidate.getUrl()) ? candidate : null;
+    // the declared order decides which repository wins, so the same one supplies a file every run
+    List<Repository> others = new ArrayList<>(repositories);
+    others.removeIf(repository -> skipped.contains(repository.getUrl()));
+    if (first != null) {
+      Response response = probeAll(Collections.singletonList(first), path);
+      if (response != null) {
+        routeHits.incrementAndGet();
+        routes.learn(groupId, response.getRepository());
+        return response;
+      }
+      routeMisses.incrementAndGet();
+      others.removeIf(repository -> repository.getUrl().equals(first.getUrl()));
+    }
+    Response response = probeAll(others, path);
+    if (response != null) {
+      routes.learn(groupId, response.getRepository());
+    }
+    return response;
+  }
+
+  /**
+   * Opens the file at the given path from the first of the given repositories which has it
+   *
+   * @param repositories the repositories to probe, in their declared order
+   * @param path the path of the file relative to the repository root
+   * @return the response of the winning repository, or null if no repository has the file
+   * @throws InterruptedException if the thread was interrupted while waiting for the repositories
+   */
+  private Response probeAll(List<Repository> repositories, String path)
+      throws InterruptedException {
+    long[] waitNanos = new long[repositories.size()];
+    for (int i = 0; i < repositories.size(); i++) {
+      waitNanos[i] =
+          TimeUnit.MILLISECONDS.toNanos(
+              health.getWaitMillis(
+                  repositories.get(i), TIE_BREAK_WINDOW_MILLIS, MAX_PREFERENCE_WAIT_MILLIS));
+    }
+    ProbeRound round = new ProbeRound(waitNanos);
+    Future<?>[] probes = new Future<?>[repositories.size()];
+    try {
+      for (int i = 0; i < repositories.size(); i++) {
+        int index = i;
+        Repository repository = repositories.get(i);
+        if (negativeCache.isKnownMiss(repository.getUrl() + path, negativeCacheTtlMillis)) {
+          negativeCacheHits.incrementAndGet();
+          round.finished.add(index);
+          continue;
+        }
+        negativeCacheMisses.incrementAndGet();
+        try {
+          probes[i] = probeExecutor.submit(() -> probe(round, index, repository, path));
+        } catch (RejectedExecutionException e) {
+          round.finished.add(index);
+        }
+      }
+      return round.await();
+    } finally {
+      for (Future<?> probe : probes) {
+        if (probe != null) {
+          probe.cancel(true);
+        }
+      }
+    }
+  }
+
+  /**
+   * Requests the file from one repository and reports the result to the round
+   *
+   * @param round the probe round
+   * @param index the index of the repository in the round
+   * @param repository the repository to probe
+   * @param path the path of the file
+   */
+  private void probe(ProbeRound round, int index, Repository repository, String path) {
+    Response response = null;
+    try {
+      response = request(repository, path);
+    } catch (InterruptedException ignored) {
+      // the probe lost and was cancelled
+    } finally {
+      round.report(index, response);
+    }
+  }
+
+  /**
+   * Opens the file at the given path from every repository which has it, all the repositories are
+   * asked at the same time
+   *
+   * @param path the path of the file relative to the repository root
+   * @return the responses of the repositories which have the file, in their declared order
+   * @throws InterruptedException if the thread was interrupted while waiting for the repositories
+   */
+  List<Response> fetchAll(String path) throws InterruptedException {
+    List<Future<Response>> requests = new ArrayList<>();
+    for (Repository repository : repositories) {
+      if (negativeCache.isKnownMiss(repository.getUrl() + path, negativeCacheTtlMillis)) {
+        negativeCacheHits.incrementAndGet();
+        continue;
+      }
+      negativeCacheMisses.incrementAndGet();
+      try {
+        requests.add(probeExecutor.submit(() -> request(repository, path)));
+      } catch (RejectedExecutionException ignored) {
+        // the fetcher was closed
+      }
+    }
+    List<Response> responses = new ArrayList<>();
+    try {
+      for (Future<Response> request : requests) {
+        try {
+          Response response = request.get();
+          if (response != null) {
+            responses.add(response);
+          }
+        } catch (ExecutionException ignored) {
+          // the repository couldn't be asked
+        }
+      }
+      return responses;
+    } catch (InterruptedException e) {
+      for (Future<Response> request : requests) {
+        if (!request.cancel(true)) {
+          // the request has finished already, close its response
+          try {
+            Response response = request.get();
+            if (response != null) {
+              response.close();
+            }
+          } catch (ExecutionException ignored) {
+          }
+        }
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Requests the file from one repository. Connection errors, server errors and throttling are
+   * retried as allowed by the {@link RetryPolicy}, while a missing file is never retried.
+   *
+   * @param repository the repository to request the file from
+   * @param path the path of the file
+   * @return the response, or null if the repository doesn't have the file or couldn't be reached
+   * @throws InterruptedException if the thread was interrupted
+   */
+  private Response request(Repository repository, String path) throws InterruptedException {
+    for (int attempt = 0; ; attempt++) {
+      if (!health.allowRequest(repository)) {
+        // the circuit of this repository is open
+        circuitSkips.incrementAndGet();
+        return null;
+      }
+      long start = System.nanoTime();
+      long retryAfterMillis = 0;
+      URLConnection connection = null;
+      try {
+        URL url = new URL(repository.getUrl() + path);
+        connection = url.openConnection();
+        connection.setConnectTimeout(connectTimeoutMillis);
+        connection.setReadTimeout(readTimeoutMillis);
+        connections.add(connection);
+        if (aborted) {
+          // the fetcher was aborted before the connection could be tracked
+          disconnect(connection);
+          throw new InterruptedException();
+        }
+        int responseCode =
+            connection instanceof HttpURLConnection
+                ? ((HttpURLConnection) connection).getResponseCode()
+                : HttpURLConnection.HTTP_OK;
+        if (responseCode == HttpURLConnection.HTTP_OK) {
+          Response response =
+              new Response(
+                  repository, url, connection, connection.getInputStream(), connections);
+          health.recordSuccess(repository, elapsedMillis(start));
+          negativeCache.recordHit(url.toString());
+          return response;
+        }
+        HttpURLConnection httpConnection = (HttpURLConnection) connection;
+        retryAfterMillis =
+            RetryPolicy.parseRetryAfter(httpConnection.getHeaderField("Retry-After"));
+        httpConnection.disconnect();
+        connections.remove(connection);
+        if (responseCode < HttpURLConnection.HTTP_INTERNAL_ERROR
+            && responseCode != HTTP_TOO_MANY_REQUESTS) {
+          // the repository answered, it just doesn't have the file
+          if (responseCode == HttpURLConnection.HTTP_NOT_FOUND
+              || responseCode == HttpURLConnection.HTTP_GONE) {
+            negativeCache.recordMiss(url.toString());
+          }
+          health.recordSuccess(repository, elapsedMillis(start));
+          return null;
+        }
+        // server errors and throttling count against the health of the repository
+        health.recordFailure(repository);
+      } catch (FileNotFoundException e) {
+        // a repository on the file system doesn't have the file
+        connections.remove(connection);
+        health.recordSuccess(repository, elapsedMillis(start));
+        negativeCache.recordMiss(repository.getUrl() + path);
+        return null;
+      } catch (IOException e) {
+        if (connection != null) {
+          disconnect(connection);
+        }
+        if (Thread.currentThread().isInterrupted() || aborted) {
+          // the request was cancelled, this says nothing about the repository
+          health.recordCancelled(repository);
+          throw new InterruptedException();
+        }
+        // the repository couldn't be reached
+        health.recordFailure(repository);
+      }
+      if (!retryPolicy.acquireRetry(attempt, retryAfterMillis)) {
+        return null;
+      }
+      retryPolicy.backOff(attempt, retryAfterMillis);
+    }
+  }
+
+  /**
+   * Closes a connection and stops tracking it
+   *
+   * @param connection the connection
+   */
+  private void disconnect(URLConnection connection) {
+    connections.remove(connection);
+    if (connection instanceof HttpURLConnection) {
+      ((HttpURLConnection) connection).disconnect();
+    }
+  }
+
+  /**
+   * Aborts all the requests which are in flight and the responses which are being read, the
+   * threads which wait for them fail right away instead of waiting for their timeouts. No request
+   * is sent after the fetcher was aborted.
+   */
+  void abort() {
+    aborted = true;
+    probeExecutor.shutdownNow();
+    for (URLConnection connection : connections) {
+      disconnect(connection);
+    }
+  }
+
+  private static long elapsedMillis(long startNanos) {
+    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+  }
+
+  /** @return the number of requests which were avoided thanks to the negative cache */
+  int getNegativeCacheHits() {
+    return negativeCacheHits.get();
+  }
+
+  /** @return the number of requests which were sent because no miss was known */
+  int getNegativeCacheMisses() {
+    return negativeCacheMisses.get();
+  }
+
+  /** @return the number of files which were found in the predicted repository */
+  int getRouteHits() {
+    return routeHits.get();
+  }
+
+  /** @return the number of files which weren't found in the predicted repository */
+  int getRouteMisses() {
+    return routeMisses.get();
+  }
+
+  /** @return the number of requests which were skipped because the repository was unhealthy */
+  int getCircuitSkips() {
+    return circuitSkips.get();
+  }
+
+  /** @return decides which failed requests are sent again */
+  RetryPolicy getRetryPolicy() {
+    return retryPolicy;
+  }
+
+  /** Stops all the running probes and persists what was learned about the repositories */
+  @Override
+  public void close() {
+    probeExecutor.shutdownNow();
+    routes.save(callback);
+    health.save(callback);
+    if (negativeCacheTtlMillis > 0) {
+      negativeCache.save(negativeCacheTtlMillis, callback);
+    }
+  }
+
+  /** The probes for a single file */
+  private static class ProbeRound {
+
+    // the indices of the repositories which have answered
+    final BlockingQueue<Integer> finished = new LinkedBlockingQueue<>();
+    // the successful responses, by repository index
+    private final Response[] responses;
+    // how long each repository is waited for after the round started, by repository index
+    private final long[] waitNanos;
+    // the time the round started at
+    private final long start = System.nanoTime();
+    // a flag to indicate that the winner was chosen
+    private boolean decided = false;
+
+    /**
+     * Creates a new ProbeRound
+     *
+     * @param waitNanos how long each repository is waited for after the round started, once a
+     *     later declared repository has the file
+     */
+    ProbeRound(long[] waitNanos) {
+      this.waitNanos = waitNanos;
+      responses = new Response[waitNanos.length];
+    }
+
+    /**
+     * Records the result of a probe, responses which arrive after the winner was chosen are closed
+     *
+     * @param index the repository index
+     * @param response the response, or null if the repository doesn't have the file
+     */
+    void report(int index, Response response) {
+      synchronized (this) {
+        if (decided && response != null) {
+          response.close();
+          response = null;
+        }
+        responses[index] = response;
+      }
+      finished.add(index);
+    }
+
+    /**
+     * Waits for the winning response and closes the others. The winner is the earliest declared
+     * repository which has the file, unless it didn't answer within its wait.
+     *
+     * @return the winning response, or null if no repository has the file
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    Response await() throws InterruptedException {
+      boolean[] done = new boolean[responses.length];
+      int remaining = responses.length;
+      int best = -1;
+      long tieBreakEnd = 0;
+      int winner = -1;
+      try {
+        while (remaining > 0) {
+          Integer index;
+          if (best == -1) {
+            index = finished.take();
+          } else {
+            long wait = waitForEarlier(done, best, tieBreakEnd);
+            index = wait > 0 ? finished.poll(wait, TimeUnit.NANOSECONDS) : null;
+            if (index == null) {
+              // the earlier repositories took longer than they usually do
+              break;
+            }
+          }
+          remaining--;
+          done[index] = true;
+          synchronized (this) {
+            if (responses[index] != null && (best == -1 || index < best)) {
+              if (best == -1) {
+                tieBreakEnd =
+                    System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIE_BREAK_WINDOW_MILLIS);
+              }
+              best = index;
+            }
+          }
+          if (best != -1 && waitForEarlier(done, best, tieBreakEnd) <= 0) {
+            // no earlier repository can win anymore
+            break;
+          }
+        }
+        winner = best;
+      } finally {
+        synchronized (this) {
+          decided = true;
+          for (int i = 0; i < responses.length; i++) {
+            if (i != winner && responses[i] != null) {
+              responses[i].close();
+              responses[i] = null;
+            }
+          }
+        }
+      }
+      return winner == -1 ? null : responses[winner];
+    }
+
+    /**
+     * Computes how long the round still waits for the repositories declared before the current
+     * best one. Each of them is waited for until its own wait has passed since the round started,
+     * and at least until the tie break window after the first success is over.
+     *
+     * @param done the repositories which have answered, by index
+     * @param best the index of the best repository which has the file
+     * @param tieBreakEnd the time the tie break window ends at
+     * @return the time left to wait in nanoseconds, 0 or less if no earlier repository can win
+     */
+    private long waitForEarlier(boolean[] done, int best, long tieBreakEnd) {
+      long now = System.nanoTime();
+      long wait = 0;
+      for (int i = 0; i < best; i++) {
+        if (!done[i]) {
+          long deadline = Math.max(start + waitNanos[i], tieBreakEnd);
+          wait = Math.max(wait, deadline - now);
+        }
+      }
+      return wait;
+    }
+  }
+
+  /** An open response for a file in a repository */
+  static class Response implements Closeable {
+
+    // the repository which has the file
+    private final Repository repository;
+    // the file url
+    private final URL url;
+    // the connection to the repository
+    private final URLConnection connection;
+    // the file content
+    private final InputStream inputStream;
+    // the open connections of the fetcher, which this connection is removed from when closed
+    private final Set<URLConnection> connections;
+
+    Response(
+        Repository repository,
+        URL url,
+        URLConnection connection,
+        InputStream inputStream,
+        Set<URLConnection> connections) {
+      this.repository = repository;
+      this.url = url;
+      this.connection = connection;
+      this.inputStream = inputStream;
+      this.connections = connections;
+    }
+
+    /** @return the repository which has the file */
+    Repository getRepository() {
+      return repository;
+    }
+
+    /** @return the file url */
+    URL getUrl() {
+      return url;
+    }
+
+    /** @return the file content */
+    InputStream getInputStream() {
+      return inputStream;
+    }
+
+    @Override
+    public void close() {
+      try {
+        inputStream.close();
+      } catch (IOException ignored) {
+      }
+      if (connection instanceof HttpURLConnection) {
+        ((HttpURLConnection) connection).disconnect();
+      }
+      connections.remove(connection);
+    }
+  }
+}
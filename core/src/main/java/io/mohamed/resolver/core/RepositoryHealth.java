@@ -0,0 +1,250 @@
+/*
+ *  Copyright (c) 2021 Mohamed Tamer
+ *   Permission is hereby granted, free of charge, to any person obtaining
+ *   a copy of this software and associated documentation files (the
+ *   "Software"), to deal in the Software without restriction, including
+ *   without limitation the rights to use, copy, modify, merge, publish,
+ *   distribute, sublicense, and/or sell copies of the Software, and to
+ *   permit persons to whom the Software is furnished to do so, subject to
+ *   the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be
+ *   included in all copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *   EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *   MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *   NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ *   LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ *   OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ *   WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+// -*- mode: java; c-basic-offset: 2; -*-
+package io.mohamed.resolver.core;
+
+import io.mohamed.resolver.core.callback.DependencyResolverCallback;
+import io.mohamed.resolver.core.model.Repository;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks the latency and the error rate of every repository host, so a slow repository isn't
+ * waited for longer than it usually takes. A host which fails too many times in a row is skipped
+ * by a circuit breaker until a cool down passes, then a single trial request decides whether it
+ * is skipped again. The statistics are persisted in the caches directory, so a new process
+ * doesn't have to relearn that a host is dead.
+ *
+ * @author Mohamed Tamer
+ */
+class RepositoryHealth extends PersistentStore {
+
+  // the number of failures in a row which opens the circuit of a host
+  static final int FAILURE_THRESHOLD = 3;
+  // the first cool down of an open circuit, it doubles with every failed trial
+  static final long INITIAL_COOL_DOWN_MILLIS = TimeUnit.MINUTES.toMillis(1);
+  // the longest cool down of an open circuit
+  static final long MAX_COOL_DOWN_MILLIS = TimeUnit.HOURS.toMillis(6);
+  // the weight of a new sample in the rolling averages
+  private static final double SMOOTHING = 0.2;
+  // the latency assumed for hosts which were never asked
+  private static final double DEFAULT_LATENCY_MILLIS = 500;
+  // the name of the file the statistics are persisted in
+  private static final String HEALTH_FILE_NAME = "repository-health.txt";
+  // the shared instance, loaded on first use
+  private static final Shared<RepositoryHealth> instance =
+      new Shared<>(
+          () -> new RepositoryHealth(new File(Util.getCachesDirectory(), HEALTH_FILE_NAME)));
+  // the statistics of each host
+  private final Map<String, HostHealth> hosts = new ConcurrentHashMap<>();
+
+  private RepositoryHealth(File healthFile) {
+    super(healthFile, "the repository health");
+  }
+
+  /**
+   * @param callback reports a health file which couldn't be read
+   * @return the shared repository health
+   */
+  static RepositoryHealth getInstance(DependencyResolverCallback callback) {
+    return instance.get(callback);
+  }
+
+  /** @return the shared repository health, which may not be loaded yet */
+  static RepositoryHealth getInstance() {
+    return instance.get();
+  }
+
+  private HostHealth get(Repository repository) {
+    return hosts.computeIfAbsent(repository.getHost(), host -> new HostHealth());
+  }
+
+  /**
+   * Returns how long a file is waited for from the given repository when a repository declared
+   * after it has the file already. A host is waited for twice as long as it usually takes to
+   * answer, so a healthy host keeps winning over later ones while a slow or failing host is given
+   * up on.
+   *
+   * @param repository the repository
+   * @param minMillis the shortest wait
+   * @param maxMillis the longest wait
+   * @return the wait in milliseconds
+   */
+  long getWaitMillis(Repository repository, long minMillis, long maxMillis) {
+    double expectedMillis = 2 * get(repository).score();
+    return (long) Math.max(minMillis, Math.min(maxMillis, expectedMillis));
+  }
+
+  /**
+   * Checks if a request may be sent to the given repository, hosts with an open circuit are
+   * skipped until their cool down passes, then one trial request is let through
+   *
+   * @param repository the repository
+   * @return true if the request may be sent
+   */
+  boolean allowRequest(Repository repository) {
+    return get(repository).allowRequest();
+  }
+
+  /**
+   * Records an answer from the given repository, a missing file is a healthy answer too
+   *
+   * @param repository the repository
+   * @param latencyMillis the time the repository took to answer
+   */
+  void recordSuccess(Repository repository, long latencyMillis) {
+    get(repository).recordSuccess(latencyMillis);
+    markDirty();
+  }
+
+  /**
+   * Records a failed request to the given repository
+   *
+   * @param repository the repository
+   */
+  void recordFailure(Repository repository) {
+    get(repository).recordFailure();
+    markDirty();
+  }
+
+  /**
+   * Records a request to the given repository which was cancelled before it was answered
+   *
+   * @param repository the repository
+   */
+  void recordCancelled(Repository repository) {
+    get(repository).recordCancelled();
+  }
+
+  /** Forgets the statistics of all hosts */
+  void clear() {
+    hosts.clear();
+    markCleared();
+  }
+
+  @Override
+  void read(BufferedReader reader) throws IOException {
+    String line;
+    while ((line = reader.readLine()) != null) {
+      String[] values = line.split(" ");
+      if (values.length != 5) {
+        continue;
+      }
+      try {
+        HostHealth health = new HostHealth();
+        health.latencyMillis = Double.parseDouble(values[1]);
+        health.errorRate = Double.parseDouble(values[2]);
+        health.consecutiveFailures = Integer.parseInt(values[3]);
+        health.openUntil = Long.parseLong(values[4]);
+        hosts.put(values[0], health);
+      } catch (NumberFormatException ignored) {
+        // skip broken lines
+      }
+    }
+  }
+
+  @Override
+  void write(BufferedWriter writer) throws IOException {
+    for (Entry<String, HostHealth> entry : hosts.entrySet()) {
+      HostHealth health = entry.getValue();
+      synchronized (health) {
+        writer.write(
+            entry.getKey()
+                + " "
+                + health.latencyMillis
+                + " "
+                + health.errorRate
+                + " "
+                + health.consecutiveFailures
+                + " "
+                + health.openUntil);
+      }
+      writer.newLine();
+    }
+  }
+
+  /** The statistics and the circuit breaker state of a single host */
+  private static class HostHealth {
+
+    // the rolling average latency
+    double latencyMillis = DEFAULT_LATENCY_MILLIS;
+    // the rolling share of failed requests
+    double errorRate = 0;
+    // the number of failed requests in a row
+    int consecutiveFailures = 0;
+    // the time the circuit may be tried again at, or 0 if the circuit is closed
+    long openUntil = 0;
+    // a flag to indicate that the trial request of an open circuit was let through
+    boolean trialInFlight = false;
+
+    synchronized double score() {
+      if (openUntil != 0) {
+        return Double.MAX_VALUE;
+      }
+      // a host which fails half of the time is as bad as a host which is 3 times slower
+      return latencyMillis * (1 + 4 * errorRate);
+    }
+
+    synchronized boolean allowRequest() {
+      if (openUntil == 0) {
+        return true;
+      }
+      if (System.currentTimeMillis() < openUntil || trialInFlight) {
+        return false;
+      }
+      trialInFlight = true;
+      return true;
+    }
+
+    synchronized void recordSuccess(long latency) {
+      latencyMillis += SMOOTHING * (latency - latencyMillis);
+      errorRate -= SMOOTHING * errorRate;
+      consecutiveFailures = 0;
+      openUntil = 0;
+      trialInFlight = false;
+    }
+
+    synchronized void recordCancelled() {
+      // let the next request be the trial
+      trialInFlight = false;
+    }
+
+    synchronized void recordFailure() {
+      errorRate += SMOOTHING * (1 - errorRate);
+      consecutiveFailures++;
+      if (consecutiveFailures >= FAILURE_THRESHOLD) {
+        // double the cool down with every failure after the circuit opened
+        int doublings = Math.min(consecutiveFailures - FAILURE_THRESHOLD, 16);
+        long coolDown = Math.min(INITIAL_COOL_DOWN_MILLIS << doublings, MAX_COOL_DOWN_MILLIS);
+        openUntil = System.currentTimeMillis() + coolDown;
+      }
+      trialInFlight = false;
+    }
+  }
+}
@@ -0,0 +1,184 @@
+/*
+ *  Copyright (c) 2021 Mohamed Tamer
+ *   Permission is hereby granted, free of charge, to any person obtaining
+ *   a copy of this software and associated documentation files (the
+ *   "Software"), to deal in the Software without restriction, including
+ *   without limitation the rights to use, copy, modify, merge, publish,
+ *   distribute, sublicense, and/or sell copies of the Software, and to
+ *   permit persons to whom the Software is furnished to do so, subject to
+ *   the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be
+ *   included in all copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *   EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *   MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *   NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ *   LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ *   OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ *   WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+// -*- mode: java; c-basic-offset: 2; -*-
+package io.mohamed.resolver.core;
+
+import io.mohamed.resolver.core.callback.DependencyResolverCallback;
+import io.mohamed.resolver.core.model.Repository;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Predicts the repository which hosts the artifacts of a group ID. Routes are learned from the
+ * repositories files were found in and are persisted in the caches directory, user declared routes
+ * always win over learned ones. A route applies to its group ID prefix and all the group IDs below
+ * it, the longest matching prefix wins, and the prefix "*" matches every group ID.
+ *
+ * @author Mohamed Tamer
+ */
+class RepositoryRoutes extends PersistentStore {
+
+  // the prefix which matches every group ID
+  static final String ANY_GROUP = "*";
+  // the name of the file the learned routes are persisted in
+  private static final String ROUTES_FILE_NAME = "routes.txt";
+  // top level group ID segments which are too broad to learn a route for
+  private static final Set<String> GENERIC_ROOTS =
+      new HashSet<>(Arrays.asList("com", "org", "net", "io", "me", "dev", "de", "uk", "edu"));
+  // the shared instance, loaded on first use
+  private static final Shared<RepositoryRoutes> instance =
+      new Shared<>(
+          () -> new RepositoryRoutes(new File(Util.getCachesDirectory(), ROUTES_FILE_NAME)));
+  // the learned repository url for each group ID prefix
+  private final Map<String, String> learnedRoutes = new ConcurrentHashMap<>();
+
+  private RepositoryRoutes(File routesFile) {
+    super(routesFile, "the repository routes");
+  }
+
+  /**
+   * @param callback reports a routes file which couldn't be read
+   * @return the shared repository routes
+   */
+  static RepositoryRoutes getInstance(DependencyResolverCallback callback) {
+    return instance.get(callback);
+  }
+
+  /** @return the shared repository routes, which may not be loaded yet */
+  static RepositoryRoutes getInstance() {
+    return instance.get();
+  }
+
+  /**
+   * Finds the route with the longest prefix matching the given group ID
+   *
+   * @param routes the routes, by group ID prefix
+   * @param groupId the group ID
+   * @return the repository url, or null if no route matches
+   */
+  static String findRoute(Map<String, String> routes, String groupId) {
+    if (routes.isEmpty()) {
+      return null;
+    }
+    String prefix = groupId;
+    while (true) {
+      String url = routes.get(prefix);
+      if (url != null) {
+        return url;
+      }
+      int lastDot = prefix.lastIndexOf('.');
+      if (lastDot == -1) {
+        return routes.get(ANY_GROUP);
+      }
+      prefix = prefix.substring(0, lastDot);
+    }
+  }
+
+  /**
+   * Predicts the repository of the given group ID
+   *
+   * @param userRoutes the user declared routes, by group ID prefix
+   * @param repositories the configured repositories
+   * @param groupId the group ID
+   * @return the predicted repository, or null if there is no prediction
+   */
+  Repository predict(Map<String, String> userRoutes, List<Repository> repositories, String groupId) {
+    String url = findRoute(userRoutes, groupId);
+    if (url != null) {
+      // user routes may point to repositories which aren't configured
+      Repository repository = find(repositories, url);
+      return repository != null ? repository : new Repository(url);
+    }
+    url = findRoute(learnedRoutes, groupId);
+    // learned routes only apply if their repository is still configured
+    return url == null ? null : find(repositories, url);
+  }
+
+  /**
+   * Learns that the artifacts of the given group ID are hosted in the given repository. The route
+   * is also learned for the parent prefix of the group ID unless it's too broad, so sibling groups
+   * like androidx.core and androidx.appcompat share a route. The parent route is only learned if
+   * the parent has none yet, so a prefix whose groups are spread over several repositories, like
+   * com.google, doesn't flip between them.
+   *
+   * @param groupId the group ID
+   * @param repository the repository the file was found in
+   */
+  void learn(String groupId, Repository repository) {
+    String url = repository.getUrl();
+    if (!url.equals(learnedRoutes.put(groupId, url))) {
+      markDirty();
+    }
+    int lastDot = groupId.lastIndexOf('.');
+    if (lastDot != -1) {
+      String parent = groupId.substring(0, lastDot);
+      if ((parent.indexOf('.') != -1 || !GENERIC_ROOTS.contains(parent))
+          && learnedRoutes.putIfAbsent(parent, url) == null) {
+        markDirty();
+      }
+    }
+  }
+
+  private static Repository find(List<Repository> repositories, String url) {
+    for (Repository repository : repositories) {
+      if (repository.getUrl().equals(url)) {
+        return repository;
+      }
+    }
+    return null;
+  }
+
+  /** Forgets all the learned routes */
+  void clear() {
+    learnedRoutes.clear();
+    markCleared();
+  }
+
+  @Override
+  void read(BufferedReader reader) throws IOException {
+    String line;
+    while ((line = reader.readLine()) != null) {
+      int separator = line.indexOf(' ');
+      if (separator != -1) {
+        learnedRoutes.put(line.substring(0, separator), line.substring(separator + 1));
+      }
+    }
+  }
+
+  @Override
+  void write(BufferedWriter writer) throws IOException {
+    for (Entry<String, String> entry : learnedRoutes.entrySet()) {
+      writer.write(entry.getKey() + " " + entry.getValue());
+      writer.newLine();
+    }
+  }
+}
@@ -0,0 +1,436 @@
+/*
+ *  Copyright (c) 2021 Mohamed Tamer
+ *   Permission is hereby granted, free of charge, to any person obtaining
+ *   a copy of this software and associated documentation files (the
+ *   "Software"), to deal in the Software without restriction, including
+ *   without limitation the rights to use, copy, modify, merge, publish,
+ *   distribute, sublicense, and/or sell copies of the Software, and to
+ *   permit persons to whom the Software is furnished to do so, subject to
+ *   the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be
+ *   included in all copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *   EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *   MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *   NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ *   LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ *   OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ *   WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+// -*- mode: java; c-basic-offset: 2; -*-
+package io.mohamed.resolver.core;
+
+import io.mohamed.resolver.core.callback.DependencyResolverCallback;
+import io.mohamed.resolver.core.model.Dependency;
+import io.mohamed.resolver.core.model.Repository;
+import java.io.Closeable;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The state which the resolves of one or more roots share: the resolver threads, the repository
+ * fetcher, the POM files and version metadata which are being loaded, and the effective POMs of
+ * the parents and BOMs. A batch of roots resolved in one session pays for every shared subtree,
+ * parent and repository request once.
+ *
+ * <p>Sessions don't share any state with each other, except the caches on disk, so independent
+ * resolves and downloads may run in parallel in one process, each in its own session. A session
+ * is passed to {@link DependencyResolver.Builder#setSession(ResolutionSession)} and {@link
+ * DependencyDownloader.Builder#setSession(ResolutionSession)}, and it must be closed once they all
+ * have finished.
+ *
+ * @author Mohamed Tamer
+ */
+public final class ResolutionSession implements Closeable {
+
+  // the repositories to search against
+  private final List<Repository> repositories;
+  // the user declared repository urls, by group ID prefix
+  private final Map<String, String> routes;
+  // reports the progress of the resolves
+  private final DependencyResolverCallback callback;
+  // the executor which runs the resolver tasks of all the roots
+  private final ExecutorService executor;
+  // fetches POM files and version metadata from the repositories
+  private final RepositoryFetcher fetcher;
+  // resolves version ranges from the version metadata of the artifacts
+  private final VersionResolver versionResolver;
+  // loads the POM models of the artifacts
+  private final PomSource pomSource;
+  // builds the effective POMs, sharing the parents and BOMs between all the roots
+  private final EffectivePomBuilder effectivePoms;
+  // the resolved dependencies of the artifacts resolved before with the same repositories
+  private final ClosureStore.Partition closures;
+  // the library files which are being downloaded or extracted, by their cache path
+  private final SingleFlight<String, File> downloads = new SingleFlight<>(false);
+  // the number of artifacts whose dependencies were spliced from the closure store
+  private final AtomicInteger splicedNodes = new AtomicInteger();
+  // a flag to indicate that the session was closed
+  private final AtomicBoolean closed = new AtomicBoolean();
+
+  /**
+   * Creates a new ResolutionSession
+   *
+   * @param repositories the repositories to search against
+   * @param options the thread, cache, retry and timeout options, the session copies the routes
+   * @param callback reports the progress of the resolves
+   */
+  ResolutionSession(
+      List<Repository> repositories, SessionOptions options, DependencyResolverCallback callback) {
+    this.repositories = repositories;
+    this.routes = new LinkedHashMap<>(options.getRoutes());
+    this.callback = callback;
+    ExecutorMode executorMode = options.getExecutorMode();
+    if (!executorMode.isSupported()) {
+      callback.info(
+          "[WARNING] Virtual threads aren't supported by this JDK, using platform threads.");
+    }
+    executor = executorMode.newExecutor("resolver", options.getMaxThreads());
+    fetcher = options.newFetcher(repositories, routes, callback);
+    versionResolver =
+        new VersionResolver(fetcher, options.getMetadataTtlMillis(), ComparableVersion::compare);
+    pomSource = new PomSource(fetcher, repositories, callback);
+    effectivePoms = new EffectivePomBuilder(this::loadManagingPom, callback);
+    closures =
+        ClosureStore.getInstance()
+            .getPartition(ClosureStore.fingerprint(repositories, routes), callback);
+    // POM files cached by older versions have no binary models yet
+    PomModelStore.convertInBackground(Util.getCachesDirectory());
+  }
+
+  /**
+   * Creates the repositories to search against from user declared repository urls
+   *
+   * @param repositoryUrls the user declared repository urls
+   * @return the common maven repositories, followed by the user declared ones
+   */
+  static List<Repository> getRepositories(List<String> repositoryUrls) {
+    List<Repository> repositories = new ArrayList<>(Repository.COMMON_MAVEN_REPOSITORIES);
+    for (String repoUrl : repositoryUrls) {
+      if (!repoUrl.endsWith("/")) {
+        repoUrl = repoUrl + "/";
+      }
+      repositories.add(new Repository(repoUrl));
+    }
+    return repositories;
+  }
+
+  /** @return the repositories to search against */
+  List<Repository> getRepositories() {
+    return repositories;
+  }
+
+  /** @return the user declared repository urls, by group ID prefix */
+  Map<String, String> getRoutes() {
+    return routes;
+  }
+
+  /** @return reports the progress of the resolves */
+  DependencyResolverCallback getCallback() {
+    return callback;
+  }
+
+  /** @return the executor which runs the resolver tasks of all the roots */
+  ExecutorService getExecutor() {
+    return executor;
+  }
+
+  /** @return fetches files from the repositories */
+  RepositoryFetcher getFetcher() {
+    return fetcher;
+  }
+
+  /** @return the library files which are being downloaded or extracted, by their cache path */
+  SingleFlight<String, File> getDownloads() {
+    return downloads;
+  }
+
+  /** @return resolves version ranges from the version metadata of the artifacts */
+  VersionResolver getVersionResolver() {
+    return versionResolver;
+  }
+
+  /** @return loads the POM models of the artifacts */
+  PomSource getPomSource() {
+    return pomSource;
+  }
+
+  /** @return builds the effective POMs, sharing the parents and BOMs between all the roots */
+  EffectivePomBuilder getEffectivePoms() {
+    return effectivePoms;
+  }
+
+  /**
+   * Looks up the stored closure record of a dependency
+   *
+   * @param coordinates the group ID, artifact ID and version of the dependency
+   * @return the record, or null if the dependency wasn't resolved before
+   */
+  ClosureStore.Node getClosure(String coordinates) {
+    ClosureStore.Node node = closures.get(coordinates);
+    if (node != null) {
+      splicedNodes.incrementAndGet();
+    }
+    return node;
+  }
+
+  /**
+   * Stores the closure record of a resolved dependency
+   *
+   * @param coordinates the group ID, artifact ID and version of the dependency
+   * @param node the record
+   */
+  void putClosure(String coordinates, ClosureStore.Node node) {
+    closures.put(coordinates, node);
+  }
+
+  /**
+   * Reports a POM file which wasn't found in any repository
+   *
+   * @param dependency the dependency whose POM file is missing
+   */
+  void reportMissing(Dependency dependency) {
+    callback.error("Didn't find artifact " + dependency + " in any repository!");
+    callback.error("Searched in:");
+    for (Repository repo : repositories) {
+      callback.error(repo + PomSource.getPath(dependency));
+    }
+  }
+
+  /**
+   * Loads the POM model of a parent or an imported BOM, they aren't dependencies so they aren't
+   * part of any graph
+   *
+   * @param pom the parent or BOM
+   * @return the POM model, or null if it couldn't be found
+   * @throws InterruptedException if the thread was interrupted
+   */
+  private PomModel loadManagingPom(Dependency pom) throws InterruptedException {
+    PomSource.LoadedPom loaded = pomSource.load(pom);
+    if (loaded == null) {
+      reportMissing(pom);
+      return null;
+    }
+    return loaded.getModel();
+  }
+
+  /**
+   * Aborts all the requests of the session which are in flight, used when the only resolve or
+   * download which uses the session is cancelled
+   */
+  void abort() {
+    fetcher.abort();
+  }
+
+  /**
+   * Stops the resolver threads and persists what was learned about the repositories, closing a
+   * session which is already closed has no effect
+   */
+  @Override
+  public void close() {
+    if (!closed.compareAndSet(false, true)) {
+      return;
+    }
+    executor.shutdown();
+    fetcher.close();
+    closures.save(callback);
+    callback.verbose(
+        "Spliced the dependencies of "
+            + splicedNodes.get()
+            + " artifacts from previously resolved closures.");
+    callback.verbose(
+        "Skipped "
+            + fetcher.getNegativeCacheHits()
+            + " requests for POM files known to be missing, sent "
+            + fetcher.getNegativeCacheMisses()
+            + " requests.");
+    callback.verbose(
+        "Found "
+            + fetcher.getRouteHits()
+            + " POM files in their predicted repository, "
+            + fetcher.getRouteMisses()
+            + " predictions missed.");
+    callback.verbose(
+        "Skipped " + fetcher.getCircuitSkips() + " requests to unhealthy repositories.");
+    callback.verbose(
+        "Retried failed requests " + fetcher.getRetryPolicy().getRetries() + " times.");
+    callback.verbose(
+        "Coalesced "
+            + (pomSource.getCoalescedRequests()
+                + versionResolver.getCoalescedRequests()
+                + effectivePoms.getCoalescedRequests()
+                + downloads.getCoalesced())
+            + " requests with ones which were in flight.");
+    callback.verbose(
+        "Fetched the version metadata of "
+            + versionResolver.getMetadataFetches()
+            + " artifacts from the repositories.");
+    callback.verbose(
+        "Parsed POM models cache: "
+            + PomModelCache.getInstance().getHits()
+            + " hits, "
+            + PomModelCache.getInstance().getMisses()
+            + " misses so far.");
+  }
+
+  /** Creates a ResolutionSession instance */
+  public static class Builder {
+    // custom repositories to search against
+    private List<String> repositoryUrls = new ArrayList<>();
+    // the dependency resolver callback
+    private DependencyResolverCallback dependencyResolverCallback;
+    // the thread, cache, retry and timeout options
+    private final SessionOptions options =
+        new SessionOptions(DependencyResolver.DEFAULT_MAX_THREADS);
+
+    /**
+     * Specifies custom repository urls to search within
+     *
+     * @param repositoryUrls the repository url list
+     * @return the Builder instance
+     */
+    public Builder setRepositories(List<String> repositoryUrls) {
+      this.repositoryUrls = repositoryUrls;
+      return this;
+    }
+
+    /**
+     * Routes the artifacts of a group ID prefix to the given repository, the repository is asked
+     * for these artifacts before any other repository
+     *
+     * @param groupIdPrefix the group ID prefix, e.g. androidx or org.clojure, or * to route all
+     *     artifacts to a mirror
+     * @param repositoryUrl the repository url
+     * @return the Builder instance
+     */
+    public Builder addRoute(String groupIdPrefix, String repositoryUrl) {
+      options.addRoute(groupIdPrefix, repositoryUrl);
+      return this;
+    }
+
+    /**
+     * Specifies the dependency resolver callback, which reports the progress of everything which
+     * runs in the session
+     *
+     * @param dependencyResolverCallback the dependency resolver callback
+     * @return the Builder instance
+     */
+    public Builder setDependencyResolverCallback(
+        DependencyResolverCallback dependencyResolverCallback) {
+      this.dependencyResolverCallback = dependencyResolverCallback;
+      return this;
+    }
+
+    /**
+     * Specifies the maximum number of POM files which are resolved at the same time
+     *
+     * @param maxThreads the number of resolver threads, defaults to {@link
+     *     DependencyResolver#DEFAULT_MAX_THREADS}
+     * @return the Builder instance
+     */
+    public Builder setMaxThreads(int maxThreads) {
+      options.setMaxThreads(maxThreads);
+      return this;
+    }
+
+    /**
+     * Specifies the kind of threads to resolve POM files on
+     *
+     * @param executorMode the executor mode, defaults to {@link ExecutorMode#PLATFORM}
+     * @return the Builder instance
+     */
+    public Builder setExecutorMode(ExecutorMode executorMode) {
+      options.setExecutorMode(executorMode);
+      return this;
+    }
+
+    /**
+     * Specifies how long a file which a repository doesn't have is remembered
+     *
+     * @param negativeCacheTtlMillis the time in milliseconds, defaults to 24 hours, 0 disables the
+     *     negative cache
+     * @return the Builder instance
+     */
+    public Builder setNegativeCacheTtl(long negativeCacheTtlMillis) {
+      options.setNegativeCacheTtl(negativeCacheTtlMillis);
+      return this;
+    }
+
+    /**
+     * Specifies how long the versions of an artifact, which are used to resolve version ranges
+     * and the LATEST and RELEASE keywords, are reused before they're fetched again
+     *
+     * @param metadataTtlMillis the time in milliseconds, defaults to 24 hours
+     * @return the Builder instance
+     */
+    public Builder setMetadataTtl(long metadataTtlMillis) {
+      options.setMetadataTtl(metadataTtlMillis);
+      return this;
+    }
+
+    /**
+     * Specifies how many times a request which failed with a connection error, a server error or
+     * throttling is sent again
+     *
+     * @param maxRetries the number of retries, defaults to 3, 0 disables retrying
+     * @return the Builder instance
+     */
+    public Builder setMaxRetries(int maxRetries) {
+      options.setMaxRetries(maxRetries);
+      return this;
+    }
+
+    /**
+     * Specifies how many retries all the requests of the session may use together
+     *
+     * @param retryBudget the number of retries, defaults to 50
+     * @return the Builder instance
+     */
+    public Builder setRetryBudget(int retryBudget) {
+      options.setRetryBudget(retryBudget);
+      return this;
+    }
+
+    /**
+     * Specifies how long connecting to a repository may take before the request fails, failed
+     * requests are retried as allowed by the retry options
+     *
+     * @param connectTimeoutMillis the time in milliseconds, defaults to 10 seconds, 0 waits forever
+     * @return the Builder instance
+     */
+    public Builder setConnectTimeout(int connectTimeoutMillis) {
+      options.setConnectTimeout(connectTimeoutMillis);
+      return this;
+    }
+
+    /**
+     * Specifies how long a repository may stay silent while a file is read from it before the
+     * request fails, failed requests are retried as allowed by the retry options
+     *
+     * @param readTimeoutMillis the time in milliseconds, defaults to 30 seconds, 0 waits forever
+     * @return the Builder instance
+     */
+    public Builder setReadTimeout(int readTimeoutMillis) {
+      options.setReadTimeout(readTimeoutMillis);
+      return this;
+    }
+
+    /** @return a new session with the given options, which must be closed by the caller */
+    public ResolutionSession build() {
+      if (dependencyResolverCallback == null) {
+        throw new IllegalArgumentException("Dependency Resolver Callback must be set.");
+      }
+      return new ResolutionSession(
+          getRepositories(repositoryUrls), options, dependencyResolverCallback);
+    }
+  }
+}
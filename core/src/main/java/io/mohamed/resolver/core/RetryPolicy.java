@@ -0,0 +1,134 @@
+/*
+ *  Copyright (c) 2021 Mohamed Tamer
+ *   Permission is hereby granted, free of charge, to any person obtaining
+ *   a copy of this software and associated documentation files (the
+ *   "Software"), to deal in the Software without restriction, including
+ *   without limitation the rights to use, copy, modify, merge, publish,
+ *   distribute, sublicense, and/or sell copies of the Software, and to
+ *   permit persons to whom the Software is furnished to do so, subject to
+ *   the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be
+ *   included in all copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *   EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *   MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *   NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ *   LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ *   OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ *   WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+// -*- mode: java; c-basic-offset: 2; -*-
+package io.mohamed.resolver.core;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decides whether a failed request is sent again, and how long to wait before that. Delays grow
+ * exponentially with full jitter, a Retry-After header sent by the repository is honored, and all
+ * the requests of a run share one retry budget, so a flaky repository can't multiply the time of
+ * the whole run.
+ *
+ * @author Mohamed Tamer
+ */
+class RetryPolicy {
+
+  // the default number of times a single request is retried
+  static final int DEFAULT_MAX_RETRIES = 3;
+  // the default number of retries all the requests of a run may use together
+  static final int DEFAULT_RETRY_BUDGET = 50;
+  // the delay cap of the first retry, it doubles with every retry
+  static final long BASE_DELAY_MILLIS = 250;
+  // the longest delay before a retry, requests which must wait longer aren't retried
+  static final long MAX_DELAY_MILLIS = 10_000;
+  // the number of times a single request is retried
+  private final int maxRetries;
+  // the number of retries left for this run
+  private final AtomicInteger remainingBudget;
+  // the number of retries used so far
+  private final AtomicInteger retries = new AtomicInteger();
+
+  /**
+   * Creates a new RetryPolicy
+   *
+   * @param maxRetries the number of times a single request is retried
+   * @param retryBudget the number of retries all the requests may use together
+   */
+  RetryPolicy(int maxRetries, int retryBudget) {
+    this.maxRetries = maxRetries;
+    remainingBudget = new AtomicInteger(retryBudget);
+  }
+
+  /**
+   * Parses the value of a Retry-After header, which is either a number of seconds or an HTTP date
+   *
+   * @param value the header value, or null if there is no header
+   * @return the time to wait in milliseconds, or 0 if there is no valid header
+   */
+  static long parseRetryAfter(String value) {
+    if (value == null || value.trim().isEmpty()) {
+      return 0;
+    }
+    value = value.trim();
+    try {
+      return Math.max(0, Long.parseLong(value) * 1000);
+    } catch (NumberFormatException ignored) {
+      // not a number of seconds, so it must be a date
+    }
+    try {
+      ZonedDateTime date = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME);
+      return Math.max(0, Duration.between(ZonedDateTime.now(), date).toMillis());
+    } catch (DateTimeParseException e) {
+      return 0;
+    }
+  }
+
+  /**
+   * Checks if a request which failed on the given attempt should be sent again, and takes a retry
+   * from the budget if so
+   *
+   * @param attempt the attempt which failed, starting from 0
+   * @param retryAfterMillis the time the repository asked to wait, or 0
+   * @return true if the request should be sent again
+   */
+  boolean acquireRetry(int attempt, long retryAfterMillis) {
+    if (attempt >= maxRetries || retryAfterMillis > MAX_DELAY_MILLIS) {
+      return false;
+    }
+    while (true) {
+      int remaining = remainingBudget.get();
+      if (remaining <= 0) {
+        return false;
+      }
+      if (remainingBudget.compareAndSet(remaining, remaining - 1)) {
+        retries.incrementAndGet();
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Waits before the next attempt of a request
+   *
+   * @param attempt the attempt which failed, starting from 0
+   * @param retryAfterMillis the time the repository asked to wait, or 0
+   * @throws InterruptedException if the thread was interrupted while waiting
+   */
+  void backOff(int attempt, long retryAfterMillis) throws InterruptedException {
+    long cap = Math.min(MAX_DELAY_MILLIS, BASE_DELAY_MILLIS << Math.min(attempt, 16));
+    long delay = ThreadLocalRandom.current().nextLong(cap + 1);
+    Thread.sleep(Math.max(delay, retryAfterMillis));
+  }
+
+  /** @return the number of retries used so far */
+  int getRetries() {
+    return retries.get();
+  }
+}
@@ -0,0 +1,177 @@
+/*
+ *  Copyright (c) 2021 Mohamed Tamer
+ *   Permission is hereby granted, free of charge, to any person obtaining
+ *   a copy of this software and associated documentation files (the
+ *   "Software"), to deal in the Software without restriction, including
+ *   without limitation the rights to use, copy, modify, merge, publish,
+ *   distribute, sublicense, and/or sell copies of the Software, and to
+ *   permit persons to whom the Software is furnished to do so, subject to
+ *   the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be
+ *   included in all copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *   EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *   MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *   NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ *   LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ *   OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ *   WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+// -*- mode: java; c-basic-offset: 2; -*-
+package io.mohamed.resolver.core;
+
+import io.mohamed.resolver.core.callback.DependencyResolverCallback;
+import io.mohamed.resolver.core.model.Repository;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The thread, cache, retry and timeout options of the repository requests. The builders of
+ * resolves, downloads and sessions keep one instance each and delegate their setters to it, so
+ * the options are validated in one place.
+ *
+ * @author Mohamed Tamer
+ */
+final class SessionOptions {
+
+  // the maximum number of tasks which run at the same time on platform threads
+  private int maxThreads;
+  // the kind of threads to run the tasks on
+  private ExecutorMode executorMode = ExecutorMode.PLATFORM;
+  // the time a repository miss is remembered for
+  private long negativeCacheTtlMillis = NegativeCache.DEFAULT_TTL_MILLIS;
+  // the time the version metadata of an artifact is reused for
+  private long metadataTtlMillis = VersionResolver.DEFAULT_METADATA_TTL_MILLIS;
+  // the user declared repository urls, by group ID prefix
+  private final Map<String, String> routes = new LinkedHashMap<>();
+  // the number of times a single request is retried
+  private int maxRetries = RetryPolicy.DEFAULT_MAX_RETRIES;
+  // the number of retries all the requests may use together
+  private int retryBudget = RetryPolicy.DEFAULT_RETRY_BUDGET;
+  // the time a connection may take to be established
+  private int connectTimeoutMillis = RepositoryFetcher.DEFAULT_CONNECT_TIMEOUT_MILLIS;
+  // the time a repository may stay silent while reading
+  private int readTimeoutMillis = RepositoryFetcher.DEFAULT_READ_TIMEOUT_MILLIS;
+
+  /**
+   * Creates a new SessionOptions
+   *
+   * @param maxThreads the default maximum number of tasks which run at the same time
+   */
+  SessionOptions(int maxThreads) {
+    this.maxThreads = maxThreads;
+  }
+
+  /** @param maxThreads the maximum number of tasks which run at the same time, at least 1 */
+  void setMaxThreads(int maxThreads) {
+    if (maxThreads < 1) {
+      throw new IllegalArgumentException("maxThreads must be at least 1.");
+    }
+    this.maxThreads = maxThreads;
+  }
+
+  /** @param executorMode the kind of threads to run the tasks on */
+  void setExecutorMode(ExecutorMode executorMode) {
+    this.executorMode = executorMode;
+  }
+
+  /** @param negativeCacheTtlMillis the time a repository miss is remembered for, 0 disables it */
+  void setNegativeCacheTtl(long negativeCacheTtlMillis) {
+    this.negativeCacheTtlMillis = Math.max(0, negativeCacheTtlMillis);
+  }
+
+  /** @param metadataTtlMillis the time the version metadata of an artifact is reused for */
+  void setMetadataTtl(long metadataTtlMillis) {
+    this.metadataTtlMillis = Math.max(0, metadataTtlMillis);
+  }
+
+  /**
+   * Routes the artifacts of a group ID prefix to the given repository
+   *
+   * @param groupIdPrefix the group ID prefix, or * to route all artifacts to a mirror
+   * @param repositoryUrl the repository url
+   */
+  void addRoute(String groupIdPrefix, String repositoryUrl) {
+    routes.put(groupIdPrefix, repositoryUrl.endsWith("/") ? repositoryUrl : repositoryUrl + "/");
+  }
+
+  /** @param maxRetries the number of times a single request is retried, 0 disables retrying */
+  void setMaxRetries(int maxRetries) {
+    if (maxRetries < 0) {
+      throw new IllegalArgumentException("maxRetries must not be negative.");
+    }
+    this.maxRetries = maxRetries;
+  }
+
+  /** @param retryBudget the number of retries all the requests may use together */
+  void setRetryBudget(int retryBudget) {
+    if (retryBudget < 0) {
+      throw new IllegalArgumentException("retryBudget must not be negative.");
+    }
+    this.retryBudget = retryBudget;
+  }
+
+  /** @param connectTimeoutMillis the time a connection may take to be established, 0 waits */
+  void setConnectTimeout(int connectTimeoutMillis) {
+    if (connectTimeoutMillis < 0) {
+      throw new IllegalArgumentException("connectTimeoutMillis must not be negative.");
+    }
+    this.connectTimeoutMillis = connectTimeoutMillis;
+  }
+
+  /** @param readTimeoutMillis the time a repository may stay silent while reading, 0 waits */
+  void setReadTimeout(int readTimeoutMillis) {
+    if (readTimeoutMillis < 0) {
+      throw new IllegalArgumentException("readTimeoutMillis must not be negative.");
+    }
+    this.readTimeoutMillis = readTimeoutMillis;
+  }
+
+  /** @return the maximum number of tasks which run at the same time on platform threads */
+  int getMaxThreads() {
+    return maxThreads;
+  }
+
+  /** @return the kind of threads to run the tasks on */
+  ExecutorMode getExecutorMode() {
+    return executorMode;
+  }
+
+  /** @return the time the version metadata of an artifact is reused for */
+  long getMetadataTtlMillis() {
+    return metadataTtlMillis;
+  }
+
+  /** @return the user declared repository urls, by group ID prefix */
+  Map<String, String> getRoutes() {
+    return Collections.unmodifiableMap(routes);
+  }
+
+  /**
+   * Creates a fetcher with these options, the fetcher keeps the given routes
+   *
+   * @param repositories the repositories to fetch files from, in their declared order
+   * @param routes the user declared repository urls, by group ID prefix, which the caller owns
+   * @param callback reports the state files which couldn't be loaded or saved
+   * @return the fetcher
+   */
+  RepositoryFetcher newFetcher(
+      List<Repository> repositories,
+      Map<String, String> routes,
+      DependencyResolverCallback callback) {
+    return new RepositoryFetcher(
+        repositories,
+        executorMode,
+        negativeCacheTtlMillis,
+        routes,
+        new RetryPolicy(maxRetries, retryBudget),
+        connectTimeoutMillis,
+        readTimeoutMillis,
+        callback);
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ *  Copyright (c) 2021 Mohamed Tamer
+ *   Permission is hereby granted, free of charge, to any person obtaining
+ *   a copy of this software and associated documentation files (the
+ *   "Software"), to deal in the Software without restriction, including
+ *   without limitation the rights to use, copy, modify, merge, publish,
+ *   distribute, sublicense, and/or sell copies of the Software, and to
+ *   permit persons to whom the Software is furnished to do so, subject to
+ *   the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be
+ *   included in all copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *   EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *   MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *   NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ *   LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ *   OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ *   WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+// -*- mode: java; c-basic-offset: 2; -*-
+package io.mohamed.resolver.core;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a call at most once at a time for every key. Threads which ask for a key whose call is in
+ * flight attach to it and wait for its result, instead of sending the same request or writing the
+ * same file again. The results are either forgotten once the call finishes, so later callers run
+ * it again, or kept, so the call runs once for the lifetime of the instance.
+ *
+ * <p>A call which was interrupted is forgotten, and the threads which waited for it run it again
+ * on their own, so cancelling one caller doesn't fail the others. A call which failed or returned
+ * null is never kept, so a file which couldn't be fetched once is fetched again when it's next
+ * asked for.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the results
+ * @author Mohamed Tamer
+ */
+final class SingleFlight<K, V> {
+
+  // the calls which are in flight, and the finished ones if results are kept, by key
+  private final ConcurrentMap<K, CompletableFuture<V>> calls = new ConcurrentHashMap<>();
+  // a flag to indicate that the results are kept after the calls finish
+  private final boolean keepResults;
+  // the number of callers which attached to a call which was in flight
+  private final AtomicInteger coalesced = new AtomicInteger();
+
+  /**
+   * Creates a new SingleFlight
+   *
+   * @param keepResults true to keep the non-null result of every key once its call finished,
+   *     false to only share the calls which are in flight
+   */
+  SingleFlight(boolean keepResults) {
+    this.keepResults = keepResults;
+  }
+
+  /**
+   * Runs the call of the given key, or waits for the call which is in flight for it
+   *
+   * @param key the key, e.g. the coordinates or the path of the requested file
+   * @param call computes the result
+   * @return the result, or null if the call which this thread waited for failed
+   * @throws InterruptedException if the thread was interrupted
+   */
+  V run(K key, Call<V> call) throws InterruptedException {
+    while (true) {
+      CompletableFuture<V> future = new CompletableFuture<>();
+      CompletableFuture<V> existing = calls.putIfAbsent(key, future);
+      if (existing != null) {
+        if (!existing.isDone()) {
+          coalesced.incrementAndGet();
+        }
+        try {
+          return existing.get();
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof InterruptedException) {
+            // the calling thread was cancelled, run the call on this thread
+            continue;
+          }
+          return null;
+        }
+      }
+      V value;
+      try {
+        value = call.call();
+      } catch (InterruptedException | RuntimeException e) {
+        // forget the failed call first, so the waiters which try again don't find it
+        calls.remove(key, future);
+        future.completeExceptionally(e);
+        throw e;
+      }
+      if (!keepResults || value == null) {
+        // a call which found nothing isn't kept, so a later caller tries again
+        calls.remove(key, future);
+      }
+      future.complete(value);
+      return value;
+    }
+  }
+
+  /** @return the number of callers which attached to a call which was in flight */
+  int getCoalesced() {
+    return coalesced.get();
+  }
+
+  /**
+   * Computes the result of a key
+   *
+   * @param <V> the type of the result
+   */
+  interface Call<V> {
+
+    V call() throws InterruptedException;
+  }
+}
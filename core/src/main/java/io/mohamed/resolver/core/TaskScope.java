@@ -0,0 +1,223 @@
+/*
+ *  Copyright (c) 2021 Mohamed Tamer
+ *   Permission is hereby granted, free of charge, to any person obtaining
+ *   a copy of this software and associated documentation files (the
+ *   "Software"), to deal in the Software without restriction, including
+ *   without limitation the rights to use, copy, modify, merge, publish,
+ *   distribute, sublicense, and/or sell copies of the Software, and to
+ *   permit persons to whom the Software is furnished to do so, subject to
+ *   the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be
+ *   included in all copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *   EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *   MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *   NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ *   LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ *   OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ *   WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+// -*- mode: java; c-basic-offset: 2; -*-
+package io.mohamed.resolver.core;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Runs a tree of tasks on an executor, tasks may fork further tasks while they are running. The
+ * scope keeps an exact count of the tasks which haven't finished yet and calls the finish
+ * listener exactly once when the last of them finishes. Cancelling the scope cancels all the
+ * queued tasks and interrupts the running ones, a running task counts as finished only once it
+ * has actually returned. A task which throws is passed to the failure listener before it counts
+ * as finished, so the failure is known when the finish listener is called.
+ *
+ * @author Mohamed Tamer
+ */
+class TaskScope {
+
+  // the executor which runs the tasks
+  private final ExecutorService executor;
+  // a flag to indicate that the executor is shut down when the scope finishes
+  private final boolean ownsExecutor;
+  // called once all the forked tasks have finished
+  private final Runnable onFinished;
+  // called with the exception or error thrown by a task
+  private final Consumer<Throwable> onFailure;
+  // the number of tasks which were forked but haven't finished yet
+  private final AtomicInteger pendingTasks = new AtomicInteger();
+  // the tasks which were forked but haven't finished yet
+  private final Set<Task> activeTasks = ConcurrentHashMap.newKeySet();
+  // a flag to indicate that the finish listener was called
+  private final AtomicBoolean finished = new AtomicBoolean();
+  // a flag to indicate that the scope was cancelled
+  private volatile boolean cancelled = false;
+
+  /**
+   * Creates a new TaskScope
+   *
+   * @param executor the executor to run tasks on, it is shut down when the scope finishes
+   * @param onFinished the listener to call when all the forked tasks have finished
+   */
+  TaskScope(ExecutorService executor, Runnable onFinished) {
+    this(executor, true, onFinished);
+  }
+
+  /**
+   * Creates a new TaskScope
+   *
+   * @param executor the executor to run tasks on
+   * @param ownsExecutor true to shut the executor down when the scope finishes, false if the
+   *     executor is shared with other scopes
+   * @param onFinished the listener to call when all the forked tasks have finished
+   */
+  TaskScope(ExecutorService executor, boolean ownsExecutor, Runnable onFinished) {
+    this(executor, ownsExecutor, onFinished, Throwable::printStackTrace);
+  }
+
+  /**
+   * Creates a new TaskScope
+   *
+   * @param executor the executor to run tasks on
+   * @param ownsExecutor true to shut the executor down when the scope finishes, false if the
+   *     executor is shared with other scopes
+   * @param onFinished the listener to call when all the forked tasks have finished
+   * @param onFailure the listener to call with the exception or error thrown by a task, it's
+   *     called on the thread of the task before the task counts as finished
+   */
+  TaskScope(
+      ExecutorService executor,
+      boolean ownsExecutor,
+      Runnable onFinished,
+      Consumer<Throwable> onFailure) {
+    this.executor = executor;
+    this.ownsExecutor = ownsExecutor;
+    this.onFinished = onFinished;
+    this.onFailure = onFailure;
+  }
+
+  /**
+   * Forks the given task, the task is counted before it is queued, so the pending count can't
+   * drop to zero while a running task may still fork more work
+   *
+   * @param task the task to run
+   * @return false if the scope was cancelled and the task was dropped
+   */
+  boolean fork(Runnable task) {
+    if (cancelled) {
+      return false;
+    }
+    pendingTasks.incrementAndGet();
+    Task futureTask = new Task(task);
+    activeTasks.add(futureTask);
+    try {
+      executor.execute(futureTask);
+    } catch (RejectedExecutionException e) {
+      futureTask.drop();
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Finishes the scope right away if no task was ever forked
+   *
+   * @return true if the scope had no pending tasks
+   */
+  boolean finishIfIdle() {
+    if (pendingTasks.get() == 0 && finished.compareAndSet(false, true)) {
+      if (ownsExecutor) {
+        executor.shutdown();
+      }
+      onFinished.run();
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Cancels all the queued tasks and interrupts the running ones, the scope finishes once the
+   * interrupted tasks have returned
+   */
+  void cancel() {
+    cancelled = true;
+    for (Task task : activeTasks) {
+      if (!task.drop()) {
+        task.cancel(true);
+      }
+    }
+  }
+
+  /** @return true if the scope was cancelled */
+  boolean isCancelled() {
+    return cancelled;
+  }
+
+  private void taskFinished(Task task) {
+    activeTasks.remove(task);
+    if (pendingTasks.decrementAndGet() == 0 && finished.compareAndSet(false, true)) {
+      if (ownsExecutor) {
+        executor.shutdown();
+      }
+      onFinished.run();
+    }
+  }
+
+  /**
+   * A forked task, which is counted as finished exactly once: when its run method returns, or
+   * when it's dropped before it started
+   */
+  private final class Task extends FutureTask<Void> {
+
+    // a flag to indicate that the task started running or was dropped
+    private final AtomicBoolean claimed = new AtomicBoolean();
+
+    Task(Runnable task) {
+      super(task, null);
+    }
+
+    @Override
+    public void run() {
+      if (!claimed.compareAndSet(false, true)) {
+        // the task was dropped before it started, and counted then
+        return;
+      }
+      try {
+        super.run();
+      } finally {
+        taskFinished(this);
+      }
+    }
+
+    @Override
+    protected void setException(Throwable t) {
+      super.setException(t);
+      // the future is never read, a cancelled task's interruption isn't a failure
+      if (!isCancelled()) {
+        onFailure.accept(t);
+      }
+    }
+
+    /**
+     * Drops the task if it hasn't started yet, so it's never run
+     *
+     * @return true if the task was dropped, false if it had already started
+     */
+    boolean drop() {
+      if (!claimed.compareAndSet(false, true)) {
+        return false;
+      }
+      super.cancel(false);
+      taskFinished(this);
+      return true;
+    }
+  }
+}
@@ -33,6 +33,8 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.ProviderNotFoundException;
 import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Enumeration;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
@@ -112,7 +114,34 @@ public class Util {
     }
   }
 
+  /**
+   * Computes the SHA-256 checksum of the given bytes
+   *
+   * @param bytes the bytes
+   * @return the checksum, in lowercase hex
+   */
+  static String sha256(byte[] bytes) {
+    byte[] digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+    } catch (NoSuchAlgorithmException e) {
+      // every java platform supports SHA-256
+      throw new IllegalStateException(e);
+    }
+    StringBuilder hex = new StringBuilder();
+    for (byte b : digest) {
+      hex.append(String.format("%02x", b));
+    }
+    return hex.toString();
+  }
+
   public static void clearCache() throws IOException {
+    NegativeCache.getInstance().clear();
+    RepositoryRoutes.getInstance().clear();
+    RepositoryHealth.getInstance().clear();
+    PomModelCache.getInstance().clear();
+    ClosureStore.getInstance().clear();
+    MetadataCache.getInstance().clear();
     FileUtils.deleteDirectory(getCachesDirectory());
   }
 
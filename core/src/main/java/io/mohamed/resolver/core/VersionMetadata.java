@@ -0,0 +1,173 @@
+/*
+ *  Copyright (c) 2021 Mohamed Tamer
+ *   Permission is hereby granted, free of charge, to any person obtaining
+ *   a copy of this software and associated documentation files (the
+ *   "Software"), to deal in the Software without restriction, including
+ *   without limitation the rights to use, copy, modify, merge, publish,
+ *   distribute, sublicense, and/or sell copies of the Software, and to
+ *   permit persons to whom the Software is furnished to do so, subject to
+ *   the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be
+ *   included in all copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *   EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *   MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *   NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ *   LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ *   OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ *   WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+// -*- mode: java; c-basic-offset: 2; -*-
+package io.mohamed.resolver.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * The versions of an artifact, read from the maven-metadata.xml files of the repositories.
+ *
+ * @author Mohamed Tamer
+ */
+final class VersionMetadata {
+
+  // the latest version including snapshots, or null if it's unknown
+  private final String latest;
+  // the latest release version, or null if it's unknown
+  private final String release;
+  // all the known versions
+  private final List<String> versions;
+  // the time the metadata was fetched at
+  private final long fetchedAt;
+
+  /**
+   * Creates a new VersionMetadata
+   *
+   * @param latest the latest version including snapshots, or null if it's unknown
+   * @param release the latest release version, or null if it's unknown
+   * @param versions all the known versions
+   * @param fetchedAt the time the metadata was fetched at
+   */
+  VersionMetadata(String latest, String release, List<String> versions, long fetchedAt) {
+    this.latest = latest;
+    this.release = release;
+    this.versions = Collections.unmodifiableList(new ArrayList<>(versions));
+    this.fetchedAt = fetchedAt;
+  }
+
+  /**
+   * Parses a maven-metadata.xml file
+   *
+   * @param inputStream the file content
+   * @return the metadata
+   * @throws IOException if the file couldn't be read or parsed
+   */
+  static VersionMetadata parse(InputStream inputStream) throws IOException {
+    String latest = null;
+    String release = null;
+    List<String> versions = new ArrayList<>();
+    XMLStreamReader reader = null;
+    try {
+      reader = PomParser.createReader(inputStream);
+      reader.nextTag();
+      while (PomParser.nextChild(reader)) {
+        if (!reader.getLocalName().equals("versioning")) {
+          PomParser.skip(reader);
+          continue;
+        }
+        while (PomParser.nextChild(reader)) {
+          switch (reader.getLocalName()) {
+            case "latest":
+              latest = PomParser.readText(reader);
+              break;
+            case "release":
+              release = PomParser.readText(reader);
+              break;
+            case "versions":
+              while (PomParser.nextChild(reader)) {
+                versions.add(PomParser.readText(reader));
+              }
+              break;
+            default:
+              PomParser.skip(reader);
+          }
+        }
+      }
+    } catch (XMLStreamException e) {
+      throw new IOException(e);
+    } finally {
+      if (reader != null) {
+        try {
+          reader.close();
+        } catch (XMLStreamException ignored) {
+        }
+      }
+    }
+    return new VersionMetadata(
+        emptyToNull(latest), emptyToNull(release), versions, System.currentTimeMillis());
+  }
+
+  /**
+   * Merges the metadata of several repositories
+   *
+   * @param metadata the metadata of every repository which has the artifact
+   * @param comparator compares versions
+   * @return the merged metadata
+   */
+  static VersionMetadata merge(List<VersionMetadata> metadata, Comparator<String> comparator) {
+    String latest = null;
+    String release = null;
+    Set<String> versions = new LinkedHashSet<>();
+    for (VersionMetadata entry : metadata) {
+      latest = max(latest, entry.latest, comparator);
+      release = max(release, entry.release, comparator);
+      versions.addAll(entry.versions);
+    }
+    return new VersionMetadata(
+        latest, release, new ArrayList<>(versions), System.currentTimeMillis());
+  }
+
+  private static String max(String first, String second, Comparator<String> comparator) {
+    if (first == null) {
+      return second;
+    }
+    if (second == null) {
+      return first;
+    }
+    return comparator.compare(first, second) >= 0 ? first : second;
+  }
+
+  private static String emptyToNull(String value) {
+    return value == null || value.isEmpty() ? null : value;
+  }
+
+  /** @return the latest version including snapshots, or null if it's unknown */
+  String getLatest() {
+    return latest;
+  }
+
+  /** @return the latest release version, or null if it's unknown */
+  String getRelease() {
+    return release;
+  }
+
+  /** @return all the known versions */
+  List<String> getVersions() {
+    return versions;
+  }
+
+  /** @return the time the metadata was fetched at */
+  long getFetchedAt() {
+    return fetchedAt;
+  }
+}
@@ -0,0 +1,222 @@
+/*
+ *  Copyright (c) 2021 Mohamed Tamer
+ *   Permission is hereby granted, free of charge, to any person obtaining
+ *   a copy of this software and associated documentation files (the
+ *   "Software"), to deal in the Software without restriction, including
+ *   without limitation the rights to use, copy, modify, merge, publish,
+ *   distribute, sublicense, and/or sell copies of the Software, and to
+ *   permit persons to whom the Software is furnished to do so, subject to
+ *   the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be
+ *   included in all copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *   EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *   MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *   NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ *   LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ *   OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ *   WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+// -*- mode: java; c-basic-offset: 2; -*-
+package io.mohamed.resolver.core;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Resolves version ranges and the LATEST and RELEASE keywords to concrete versions. The versions
+ * of an artifact are read from the maven-metadata.xml files of all the repositories, which are
+ * fetched at the same time and merged. The merged metadata is kept in the {@link MetadataCache},
+ * so an artifact's metadata is fetched at most once per TTL, however many dependencies use a range
+ * for it.
+ *
+ * @author Mohamed Tamer
+ */
+class VersionResolver {
+
+  // the default time the metadata of an artifact is reused for
+  static final long DEFAULT_METADATA_TTL_MILLIS = TimeUnit.HOURS.toMillis(24);
+  // matches a single range of a version specification, e.g. [1.0,2.0) or [1.5]
+  private static final Pattern RANGE = Pattern.compile("([\\[(])([^\\])]*)([\\])])");
+  // fetches the metadata files from the repositories
+  private final RepositoryFetcher fetcher;
+  // the time the metadata of an artifact is reused for
+  private final long ttlMillis;
+  // compares versions
+  private final Comparator<String> comparator;
+  // the metadata fetches in flight, by group ID and artifact ID, the MetadataCache keeps the results
+  private final SingleFlight<String, VersionMetadata> metadata = new SingleFlight<>(false);
+  // the number of artifacts whose metadata was fetched from the repositories
+  private final AtomicInteger metadataFetches = new AtomicInteger();
+
+  /**
+   * Creates a new VersionResolver
+   *
+   * @param fetcher fetches the metadata files from the repositories
+   * @param ttlMillis the time the metadata of an artifact is reused for
+   * @param comparator compares versions
+   */
+  VersionResolver(RepositoryFetcher fetcher, long ttlMillis, Comparator<String> comparator) {
+    this.fetcher = fetcher;
+    this.ttlMillis = ttlMillis;
+    this.comparator = comparator;
+  }
+
+  /**
+   * Checks if a version needs the metadata of the artifact to be resolved
+   *
+   * @param version the declared version
+   * @return true if the version is a range or the LATEST or RELEASE keyword
+   */
+  static boolean isDynamic(String version) {
+    return version.equals("LATEST")
+        || version.equals("RELEASE")
+        || version.startsWith("[")
+        || version.startsWith("(");
+  }
+
+  /**
+   * Resolves a version range or keyword to a concrete version
+   *
+   * @param groupId the group ID
+   * @param artifactId the artifact ID
+   * @param version the declared version
+   * @return the highest matching version, or null if no known version matches
+   * @throws InterruptedException if the thread was interrupted while fetching the metadata
+   */
+  String resolve(String groupId, String artifactId, String version) throws InterruptedException {
+    VersionMetadata versionMetadata = getMetadata(groupId, artifactId);
+    if (versionMetadata == null) {
+      return null;
+    }
+    if (version.equals("LATEST") && versionMetadata.getLatest() != null) {
+      return versionMetadata.getLatest();
+    }
+    if (version.equals("RELEASE") && versionMetadata.getRelease() != null) {
+      return versionMetadata.getRelease();
+    }
+    String best = null;
+    for (String candidate : versionMetadata.getVersions()) {
+      boolean matches;
+      if (version.equals("LATEST")) {
+        matches = true;
+      } else if (version.equals("RELEASE")) {
+        matches = !candidate.endsWith("-SNAPSHOT");
+      } else {
+        matches = matches(version, candidate);
+      }
+      if (matches && (best == null || comparator.compare(candidate, best) > 0)) {
+        best = candidate;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Checks if a version is part of a version range specification
+   *
+   * @param specification the range specification, one or more comma separated ranges
+   * @param version the version
+   * @return true if any of the ranges contains the version
+   */
+  boolean matches(String specification, String version) {
+    Matcher matcher = RANGE.matcher(specification);
+    while (matcher.find()) {
+      boolean lowerInclusive = matcher.group(1).equals("[");
+      boolean upperInclusive = matcher.group(3).equals("]");
+      String bounds = matcher.group(2);
+      int comma = bounds.indexOf(',');
+      if (comma == -1) {
+        // an exact version, e.g. [1.5]
+        if (comparator.compare(version, bounds.trim()) == 0) {
+          return true;
+        }
+        continue;
+      }
+      String lower = bounds.substring(0, comma).trim();
+      String upper = bounds.substring(comma + 1).trim();
+      if (!lower.isEmpty()) {
+        int compare = comparator.compare(version, lower);
+        if (compare < 0 || (compare == 0 && !lowerInclusive)) {
+          continue;
+        }
+      }
+      if (!upper.isEmpty()) {
+        int compare = comparator.compare(version, upper);
+        if (compare > 0 || (compare == 0 && !upperInclusive)) {
+          continue;
+        }
+      }
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Returns the lowest bound of a range specification, which is used when no known version matches
+   *
+   * @param specification the range specification
+   * @return the lowest bound, or null if the specification has no lower bound
+   */
+  static String getLowerBound(String specification) {
+    Matcher matcher = RANGE.matcher(specification);
+    if (!matcher.find()) {
+      return null;
+    }
+    String bounds = matcher.group(2);
+    int comma = bounds.indexOf(',');
+    String lower = (comma == -1 ? bounds : bounds.substring(0, comma)).trim();
+    return lower.isEmpty() ? null : lower;
+  }
+
+  private VersionMetadata getMetadata(String groupId, String artifactId)
+      throws InterruptedException {
+    return metadata.run(
+        groupId + ":" + artifactId,
+        () -> {
+          VersionMetadata versionMetadata =
+              MetadataCache.getInstance().get(groupId, artifactId, ttlMillis);
+          if (versionMetadata == null) {
+            versionMetadata = fetchMetadata(groupId, artifactId);
+            if (versionMetadata != null) {
+              MetadataCache.getInstance().put(groupId, artifactId, versionMetadata);
+            }
+          }
+          return versionMetadata;
+        });
+  }
+
+  private VersionMetadata fetchMetadata(String groupId, String artifactId)
+      throws InterruptedException {
+    metadataFetches.incrementAndGet();
+    String path = groupId.replace('.', '/') + "/" + artifactId + "/maven-metadata.xml";
+    List<VersionMetadata> metadataList = new ArrayList<>();
+    for (RepositoryFetcher.Response response : fetcher.fetchAll(path)) {
+      try (RepositoryFetcher.Response r = response) {
+        metadataList.add(VersionMetadata.parse(r.getInputStream()));
+      } catch (IOException e) {
+        // this repository serves a broken metadata file, use the others
+      }
+    }
+    return metadataList.isEmpty() ? null : VersionMetadata.merge(metadataList, comparator);
+  }
+
+  /** @return the number of requests for metadata which attached to a fetch which was in flight */
+  int getCoalescedRequests() {
+    return metadata.getCoalesced();
+  }
+
+  /** @return the number of artifacts whose metadata was fetched from the repositories */
+  int getMetadataFetches() {
+    return metadataFetches.get();
+  }
+}
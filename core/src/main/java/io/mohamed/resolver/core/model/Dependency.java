@@ -52,6 +52,8 @@ public class Dependency {
   private String scope = "compile";
   // the dependency repo, defaults to null
   private Repository repository;
+  // the cached hash code of the coordinates, 0 until it's computed
+  private int hash;
 
   /**
    * Creates a new Dependency object
@@ -139,6 +141,11 @@ public class Dependency {
     this.type = type;
   }
 
+  /** @return the dependency scope */
+  public String getScope() {
+    return scope;
+  }
+
   /** @return the dependency version */
   public String getVersion() {
     return version;
@@ -163,6 +170,16 @@ public class Dependency {
     return false;
   }
 
+  @Override
+  public int hashCode() {
+    int result = hash;
+    if (result == 0) {
+      result = (groupId.hashCode() * 31 + artifactId.hashCode()) * 31 + version.hashCode();
+      hash = result;
+    }
+    return result;
+  }
+
   public boolean compare(Dependency dependency, boolean ignoreVersion) {
     if (dependency == null) {
       return false;
@@ -22,6 +22,8 @@
 
 package io.mohamed.resolver.core.model;
 
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -49,7 +51,6 @@ public class Repository {
               Repository.GOOGLE_REPOSITORY,
               Repository.CENTRAL_REPOSITORY,
               Repository.BINTRAY_REPOSITORY,
-              Repository.BINTRAY_REPOSITORY,
               Repository.CLOJARS_REPOSITORY,
               Repository.JBOSS_REPOSITORY));
   String url;
@@ -66,4 +67,14 @@ public class Repository {
   public String getUrl() {
     return url;
   }
+
+  /** @return the host name of the repository url, or the url itself if it has no host */
+  public String getHost() {
+    try {
+      String host = new URI(url).getHost();
+      return host != null ? host : url;
+    } catch (URISyntaxException e) {
+      return url;
+    }
+  }
 }
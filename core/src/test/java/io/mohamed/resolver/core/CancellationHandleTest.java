@@ -0,0 +1,89 @@
+/*
+ *  Copyright (c) 2021 Mohamed Tamer
+ *   Permission is hereby granted, free of charge, to any person obtaining
+ *   a copy of this software and associated documentation files (the
+ *   "Software"), to deal in the Software without restriction, including
+ *   without limitation the rights to use, copy, modify, merge, publish,
+ *   distribute, sublicense, and/or sell copies of the Software, and to
+ *   permit persons to whom the Software is furnished to do so, subject to
+ *   the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be
+ *   included in all copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *   EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *   MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *   NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ *   LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ *   OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ *   WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+// -*- mode: java; c-basic-offset: 2; -*-
+package io.mohamed.resolver.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+/**
+ * Tests the listeners and the deadline of a {@link CancellationHandle}.
+ *
+ * @author Mohamed Tamer
+ */
+public class CancellationHandleTest {
+
+  @Test
+  public void runsListenersOnce() {
+    CancellationHandle handle = new CancellationHandle();
+    AtomicInteger runs = new AtomicInteger();
+    handle.onCancel(runs::incrementAndGet);
+    handle.cancel();
+    handle.cancel();
+    assertTrue(handle.isCancelled());
+    assertEquals(1, runs.get());
+    // a listener registered after the cancel runs right away
+    handle.onCancel(runs::incrementAndGet);
+    assertEquals(2, runs.get());
+  }
+
+  @Test
+  public void ignoresCancelsAfterFinishing() {
+    CancellationHandle handle = new CancellationHandle();
+    AtomicInteger runs = new AtomicInteger();
+    handle.onCancel(runs::incrementAndGet);
+    handle.finish();
+    handle.cancel();
+    assertFalse(handle.isCancelled());
+    assertEquals(0, runs.get());
+  }
+
+  @Test
+  public void cancelsWhenTheDeadlinePasses() throws InterruptedException {
+    CancellationHandle handle = new CancellationHandle();
+    CountDownLatch cancelled = new CountDownLatch(1);
+    AtomicInteger expiries = new AtomicInteger();
+    handle.onCancel(cancelled::countDown);
+    handle.cancelAfter(10, expiries::incrementAndGet);
+    assertTrue(cancelled.await(10, TimeUnit.SECONDS));
+    assertTrue(handle.isCancelled());
+    assertEquals(1, expiries.get());
+  }
+
+  @Test
+  public void finishingCancelsTheDeadline() throws InterruptedException {
+    CancellationHandle handle = new CancellationHandle();
+    AtomicInteger expiries = new AtomicInteger();
+    handle.cancelAfter(100, expiries::incrementAndGet);
+    handle.finish();
+    Thread.sleep(300);
+    assertFalse(handle.isCancelled());
+    assertEquals(0, expiries.get());
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ *  Copyright (c) 2021 Mohamed Tamer
+ *   Permission is hereby granted, free of charge, to any person obtaining
+ *   a copy of this software and associated documentation files (the
+ *   "Software"), to deal in the Software without restriction, including
+ *   without limitation the rights to use, copy, modify, merge, publish,
+ *   distribute, sublicense, and/or sell copies of the Software, and to
+ *   permit persons to whom the Software is furnished to do so, subject to
+ *   the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be
+ *   included in all copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *   EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *   MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *   NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ *   LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ *   OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ *   WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+// -*- mode: java; c-basic-offset: 2; -*-
+package io.mohamed.resolver.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Tests that {@link ComparableVersion} orders versions the way maven does.
+ *
+ * @author Mohamed Tamer
+ */
+public class ComparableVersionTest {
+
+  private static void assertOrder(String... versions) {
+    for (int i = 0; i < versions.length - 1; i++) {
+      String lower = versions[i];
+      String higher = versions[i + 1];
+      assertTrue(lower + " < " + higher, ComparableVersion.compare(lower, higher) < 0);
+      assertTrue(higher + " > " + lower, ComparableVersion.compare(higher, lower) > 0);
+    }
+  }
+
+  private static void assertEqual(String version1, String version2) {
+    assertEquals(version1 + " == " + version2, 0, ComparableVersion.compare(version1, version2));
+    assertEquals(version2 + " == " + version1, 0, ComparableVersion.compare(version2, version1));
+  }
+
+  @Test
+  public void comparesNumbersNumerically() {
+    assertOrder("1.9", "1.10", "1.11", "2", "10");
+    assertOrder("1.0.9", "1.0.10");
+    assertOrder("99999999999999999999", "100000000000000000000");
+    assertEqual("1.010", "1.10");
+  }
+
+  @Test
+  public void ordersQualifiersAroundTheRelease() {
+    assertOrder("1.0-rc1", "1.0", "1.0-sp1");
+    assertOrder(
+        "1.0-alpha1",
+        "1.0-alpha2",
+        "1.0-beta1",
+        "1.0-milestone1",
+        "1.0-rc1",
+        "1.0-rc2",
+        "1.0-SNAPSHOT",
+        "1.0",
+        "1.0-sp1",
+        "1.0.1");
+  }
+
+  @Test
+  public void ignoresTrailingZeros() {
+    assertEqual("1.0", "1");
+    assertEqual("1.0.0", "1");
+    assertEqual("1.0-0", "1");
+    assertOrder("1", "1.0.1");
+  }
+
+  @Test
+  public void expandsShortQualifiers() {
+    assertEqual("1.0-a1", "1.0-alpha1");
+    assertEqual("1.0-b2", "1.0-beta2");
+    assertEqual("1.0-m3", "1.0-milestone3");
+    assertEqual("1.0a1", "1.0-alpha-1");
+  }
+
+  @Test
+  public void treatsReleaseAliasesAsTheRelease() {
+    assertEqual("1.0-ga", "1.0");
+    assertEqual("1.0-final", "1.0");
+    assertEqual("1.0.FINAL", "1.0");
+    assertEqual("1.0-release", "1.0");
+    assertEqual("1.0-cr1", "1.0-rc1");
+  }
+
+  @Test
+  public void ignoresCase() {
+    assertEqual("1.0-SNAPSHOT", "1.0-snapshot");
+    assertEqual("1.0-RC1", "1.0-rc1");
+  }
+
+  @Test
+  public void sortsUnknownQualifiersAfterTheKnownOnes() {
+    assertOrder("1.0-sp1", "1.0-foo", "1.0-zzz");
+    assertOrder("1.0-rc1", "1.0", "1.0-jre");
+    assertOrder("1.0-android", "1.0-jre");
+    assertOrder("1.0-foo", "1.0.1");
+  }
+
+  @Test
+  public void sortsRealVersionLists() {
+    List<String> expected =
+        Arrays.asList(
+            "1.0-alpha-1",
+            "1.0-beta",
+            "1.0-rc1",
+            "1.0",
+            "1.0.1",
+            "1.2",
+            "1.9.0",
+            "1.10.0-SNAPSHOT",
+            "1.10.0",
+            "30.1-android",
+            "30.1-jre",
+            "30.1.1-jre");
+    List<String> versions = new ArrayList<>(expected);
+    Collections.shuffle(versions, new Random(42));
+    versions.sort(ComparableVersion::compare);
+    assertEquals(expected, versions);
+  }
+
+  @Test
+  public void cachesParsedVersions() {
+    assertSame(ComparableVersion.parse("3.2.1"), ComparableVersion.parse("3.2.1"));
+    assertEquals("3.2.1", ComparableVersion.parse("3.2.1").toString());
+  }
+}
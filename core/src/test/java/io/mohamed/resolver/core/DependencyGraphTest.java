@@ -0,0 +1,124 @@
+/*
+ *  Copyright (c) 2021 Mohamed Tamer
+ *   Permission is hereby granted, free of charge, to any person obtaining
+ *   a copy of this software and associated documentation files (the
+ *   "Software"), to deal in the Software without restriction, including
+ *   without limitation the rights to use, copy, modify, merge, publish,
+ *   distribute, sublicense, and/or sell copies of the Software, and to
+ *   permit persons to whom the Software is furnished to do so, subject to
+ *   the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be
+ *   included in all copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *   EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *   MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *   NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ *   LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ *   OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ *   WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+// -*- mode: java; c-basic-offset: 2; -*-
+package io.mohamed.resolver.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import io.mohamed.resolver.core.model.Dependency;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * Tests the version mediation of {@link DependencyGraph}.
+ *
+ * @author Mohamed Tamer
+ */
+public class DependencyGraphTest {
+
+  private static Dependency dependency(String artifactId, String version) {
+    return new Dependency("g", artifactId, version);
+  }
+
+  @Test
+  public void nearestDeclarationWins() {
+    Dependency root = dependency("root", "1");
+    Dependency a = dependency("a", "1");
+    Dependency c1 = dependency("c", "1");
+    DependencyGraph graph = new DependencyGraph(root);
+    graph.setChildren(root, Arrays.asList(a, c1));
+    assertEquals(Arrays.asList(a, c1), graph.nextLevel());
+
+    // c:2 is declared deeper than c:1, so it loses and its subtree is never fetched
+    Dependency c2 = dependency("c", "2");
+    graph.setChildren(a, Collections.singletonList(c2));
+    graph.setChildren(c1, Collections.emptyList());
+    assertTrue(graph.nextLevel().isEmpty());
+
+    assertEquals(Arrays.asList(root, a, c1), graph.getDependencies());
+    assertEquals(1, graph.getOmittedVersions());
+  }
+
+  @Test
+  public void firstDeclarationWinsAtTheSameDepth() {
+    Dependency root = dependency("root", "1");
+    Dependency a = dependency("a", "1");
+    Dependency b = dependency("b", "1");
+    DependencyGraph graph = new DependencyGraph(root);
+    graph.setChildren(root, Arrays.asList(a, b));
+    graph.nextLevel();
+
+    // the nodes of a level are mediated in declaration order, not in resolve order
+    Dependency e1 = dependency("e", "1");
+    Dependency e2 = dependency("e", "2");
+    graph.setChildren(b, Collections.singletonList(e2));
+    graph.setChildren(a, Collections.singletonList(e1));
+    List<Dependency> level = graph.nextLevel();
+    assertEquals(1, level.size());
+    assertSame(e1, level.get(0));
+    assertEquals(1, graph.getOmittedVersions());
+  }
+
+  @Test
+  public void sameVersionIsNotCountedAsOmitted() {
+    Dependency root = dependency("root", "1");
+    Dependency a = dependency("a", "1");
+    Dependency b = dependency("b", "1");
+    DependencyGraph graph = new DependencyGraph(root);
+    graph.setChildren(root, Arrays.asList(a, b));
+    graph.nextLevel();
+    graph.setChildren(a, Collections.singletonList(dependency("e", "1")));
+    graph.setChildren(b, Collections.singletonList(dependency("e", "1")));
+    assertEquals(1, graph.nextLevel().size());
+    assertEquals(0, graph.getOmittedVersions());
+  }
+
+  @Test
+  public void ignoresChildrenOfUnselectedDependencies() {
+    Dependency root = dependency("root", "1");
+    Dependency a = dependency("a", "1");
+    DependencyGraph graph = new DependencyGraph(root);
+    graph.setChildren(root, Collections.singletonList(a));
+    graph.nextLevel();
+    graph.setChildren(dependency("a", "2"), Collections.singletonList(dependency("x", "1")));
+    graph.setChildren(a, Collections.emptyList());
+    assertTrue(graph.nextLevel().isEmpty());
+    assertEquals(Arrays.asList(root, a), graph.getDependencies());
+  }
+
+  @Test
+  public void growsPastTheInitialCapacity() {
+    Dependency root = dependency("root", "1");
+    Dependency[] children = new Dependency[200];
+    for (int i = 0; i < children.length; i++) {
+      children[i] = dependency("a" + i, "1");
+    }
+    DependencyGraph graph = new DependencyGraph(root);
+    graph.setChildren(root, Arrays.asList(children));
+    assertEquals(Arrays.asList(children), graph.nextLevel());
+  }
+}
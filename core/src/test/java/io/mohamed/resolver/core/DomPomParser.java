@@ -0,0 +1,164 @@
+/*
+ *  Copyright (c) 2021 Mohamed Tamer
+ *   Permission is hereby granted, free of charge, to any person obtaining
+ *   a copy of this software and associated documentation files (the
+ *   "Software"), to deal in the Software without restriction, including
+ *   without limitation the rights to use, copy, modify, merge, publish,
+ *   distribute, sublicense, and/or sell copies of the Software, and to
+ *   permit persons to whom the Software is furnished to do so, subject to
+ *   the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be
+ *   included in all copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *   EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *   MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *   NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ *   LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ *   OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ *   WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+// -*- mode: java; c-basic-offset: 2; -*-
+package io.mohamed.resolver.core;
+
+import io.mohamed.resolver.core.PomModel.PomDependency;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.SAXException;
+
+/**
+ * The DOM based POM parser which {@link PomParser} replaced, kept as the reference the streaming
+ * parser is tested and benchmarked against.
+ *
+ * @author Mohamed Tamer
+ */
+final class DomPomParser {
+
+  private DomPomParser() {}
+
+  /**
+   * Parses a POM file from the given stream by building its whole document tree
+   *
+   * @param inputStream the POM file content
+   * @return the parsed model
+   * @throws IOException if the stream couldn't be read or isn't a valid POM file
+   */
+  static PomModel parse(InputStream inputStream) throws IOException {
+    Document doc;
+    try {
+      DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+      factory.setIgnoringElementContentWhitespace(true);
+      DocumentBuilder builder = factory.newDocumentBuilder();
+      doc = builder.parse(inputStream);
+    } catch (ParserConfigurationException | SAXException e) {
+      throw new IOException(e);
+    }
+    Element rootElement = doc.getDocumentElement();
+    String groupId = null;
+    String artifactId = null;
+    String version = null;
+    String packaging = null;
+    PomDependency parent = null;
+    Map<String, String> properties = new LinkedHashMap<>();
+    List<PomDependency> dependencies = new ArrayList<>();
+    List<PomDependency> dependencyManagement = new ArrayList<>();
+    for (int i = 0; i < rootElement.getChildNodes().getLength(); i++) {
+      Node node = rootElement.getChildNodes().item(i);
+      switch (node.getNodeName()) {
+        case "groupId":
+          groupId = node.getTextContent().trim();
+          break;
+        case "artifactId":
+          artifactId = node.getTextContent().trim();
+          break;
+        case "version":
+          version = node.getTextContent().trim();
+          break;
+        case "packaging":
+          packaging = node.getTextContent().trim();
+          break;
+        case "properties":
+          for (int x = 0; x < node.getChildNodes().getLength(); x++) {
+            Node propertyNode = node.getChildNodes().item(x);
+            if (propertyNode.getNodeType() == Node.ELEMENT_NODE) {
+              properties.put(propertyNode.getNodeName(), propertyNode.getTextContent().trim());
+            }
+          }
+          break;
+        case "parent":
+          parent = parseDependency(node);
+          break;
+        case "dependencyManagement":
+          for (int x = 0; x < node.getChildNodes().getLength(); x++) {
+            Node dependenciesNode = node.getChildNodes().item(x);
+            if (dependenciesNode.getNodeName().equals("dependencies")) {
+              parseDependencies(dependenciesNode, dependencyManagement);
+            }
+          }
+          break;
+        case "dependencies":
+          parseDependencies(node, dependencies);
+          break;
+      }
+    }
+    return new PomModel(
+        groupId,
+        artifactId,
+        version,
+        packaging,
+        parent,
+        properties,
+        dependencies,
+        dependencyManagement);
+  }
+
+  private static void parseDependencies(Node dependenciesNode, List<PomDependency> dependencies) {
+    for (int x = 0; x < dependenciesNode.getChildNodes().getLength(); x++) {
+      Node dependencyNode = dependenciesNode.getChildNodes().item(x);
+      if (dependencyNode.getNodeName().equals("dependency")) {
+        dependencies.add(parseDependency(dependencyNode));
+      }
+    }
+  }
+
+  private static PomDependency parseDependency(Node dependencyNode) {
+    String groupId = null;
+    String artifactId = null;
+    String version = null;
+    String scope = null;
+    String type = null;
+    for (int y = 0; y < dependencyNode.getChildNodes().getLength(); y++) {
+      Node dependencySubNode = dependencyNode.getChildNodes().item(y);
+      switch (dependencySubNode.getNodeName()) {
+        case "groupId":
+          groupId = dependencySubNode.getTextContent().trim();
+          break;
+        case "artifactId":
+          artifactId = dependencySubNode.getTextContent().trim();
+          break;
+        case "version":
+          version = dependencySubNode.getTextContent().trim();
+          break;
+        case "scope":
+          scope = dependencySubNode.getTextContent().trim();
+          break;
+        case "type":
+          type = dependencySubNode.getTextContent().trim();
+          break;
+      }
+    }
+    return new PomDependency(groupId, artifactId, version, scope, type);
+  }
+}
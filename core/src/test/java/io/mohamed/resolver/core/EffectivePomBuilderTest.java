@@ -0,0 +1,242 @@
+/*
+ *  Copyright (c) 2021 Mohamed Tamer
+ *   Permission is hereby granted, free of charge, to any person obtaining
+ *   a copy of this software and associated documentation files (the
+ *   "Software"), to deal in the Software without restriction, including
+ *   without limitation the rights to use, copy, modify, merge, publish,
+ *   distribute, sublicense, and/or sell copies of the Software, and to
+ *   permit persons to whom the Software is furnished to do so, subject to
+ *   the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be
+ *   included in all copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *   EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *   MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *   NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ *   LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ *   OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ *   WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+// -*- mode: java; c-basic-offset: 2; -*-
+package io.mohamed.resolver.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import io.mohamed.resolver.core.callback.DependencyResolverCallback;
+import io.mohamed.resolver.core.model.Dependency;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests that an {@link EffectivePomBuilder} imports BOMs into the dependency management the way
+ * maven does, and that it reports parents and BOMs which form a cycle instead of waiting for them
+ * forever.
+ *
+ * @author Mohamed Tamer
+ */
+public class EffectivePomBuilderTest {
+
+  // the errors reported by the builder
+  private final RecordingCallback callback = new RecordingCallback();
+  // the number of times each POM file was loaded, by artifact ID
+  private final Map<String, AtomicInteger> loads = new ConcurrentHashMap<>();
+  // the time every load takes, so concurrent builds overlap
+  private volatile long loadDelayMillis = 0;
+  // the builder under test
+  private final EffectivePomBuilder builder = new EffectivePomBuilder(this::load, callback);
+  // runs concurrent builds
+  private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Reads a POM file from the test resources under poms/effective
+   *
+   * @param artifactId the artifact ID, the version of every test POM is 1.0
+   * @return the POM model, or null if there is no such POM file
+   */
+  static PomModel readModel(String artifactId) throws IOException {
+    if (EffectivePomBuilderTest.class.getResource("/poms/effective/" + artifactId + "-1.0.pom")
+        == null) {
+      return null;
+    }
+    byte[] content = PomParserTest.readPom("effective/" + artifactId + "-1.0.pom");
+    return PomParser.parse(new ByteArrayInputStream(content));
+  }
+
+  private PomModel load(Dependency pom) throws InterruptedException {
+    loads.computeIfAbsent(pom.getArtifactId(), key -> new AtomicInteger()).incrementAndGet();
+    Thread.sleep(loadDelayMillis);
+    try {
+      return readModel(pom.getArtifactId());
+    } catch (IOException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  @Test
+  public void reportsParentsWhichFormACycle() throws Exception {
+    assertNull(builder.build(readModel("cycle-child-a")));
+    assertEquals(1, callback.errors.size());
+    String error = callback.errors.get(0);
+    assertTrue(
+        error,
+        error.endsWith(
+            "com.example:cycle-a:1.0 -> com.example:cycle-b:1.0 -> com.example:cycle-a:1.0"));
+  }
+
+  @Test
+  public void reportsABomWhichImportsItsImporter() throws Exception {
+    assertNull(builder.build(readModel("loop-child")));
+    assertEquals(1, callback.errors.size());
+  }
+
+  @Test
+  public void buildsOfTheSameCycleFromTwoThreadsFinish() throws Exception {
+    loadDelayMillis = 20;
+    PomModel childA = readModel("cycle-child-a");
+    PomModel childB = readModel("cycle-child-b");
+    for (int i = 0; i < 5; i++) {
+      Future<EffectivePom> a = executor.submit(() -> builder.build(childA));
+      Future<EffectivePom> b = executor.submit(() -> builder.build(childB));
+      // the threads used to wait for each other's parent forever
+      assertNull(a.get(10, TimeUnit.SECONDS));
+      assertNull(b.get(10, TimeUnit.SECONDS));
+    }
+    assertEquals(10, callback.errors.size());
+  }
+
+  @Test
+  public void walksEachAcyclicParentOnce() throws Exception {
+    loads.clear();
+    assertNotNull(builder.build(readModel("child")));
+    assertNotNull(builder.build(readModel("child")));
+    // once for the cycle walk and once for building it, the second build uses the built parent
+    assertEquals(2, loads.get("parent").get());
+  }
+
+  /**
+   * Looks up the version a dependency of the importer is managed with
+   *
+   * @param pom the effective POM of the importer
+   * @param artifactId the artifact ID of the dependency
+   * @return the interpolated managed version
+   */
+  private static String managedVersion(EffectivePom pom, String artifactId) {
+    PomModel.PomDependency managed = pom.getManagedDependency("com.example", artifactId);
+    assertNotNull("lib " + artifactId + " isn't managed", managed);
+    return pom.getScope().interpolate(managed.getVersion());
+  }
+
+  @Test
+  public void explicitAndInheritedManagementWinOverImports() throws Exception {
+    EffectivePom pom = builder.build(readModel("importer"));
+    assertNotNull(pom);
+    // inherited from importer-parent, both BOMs manage it too
+    assertEquals("0.5", managedVersion(pom, "lib-a"));
+    // declared by the importer, both BOMs manage it too
+    assertEquals("0.1", managedVersion(pom, "lib-d"));
+  }
+
+  @Test
+  public void theFirstImportWins() throws Exception {
+    EffectivePom pom = builder.build(readModel("importer"));
+    assertEquals("1.0", managedVersion(pom, "lib-x"));
+    // only the second BOM manages it
+    assertEquals("2.0", managedVersion(pom, "lib-e"));
+  }
+
+  @Test
+  public void bomVersionsAreInterpolatedInTheBomScope() throws Exception {
+    EffectivePom pom = builder.build(readModel("importer"));
+    // the importer declares lib-b.version 1.0, which mustn't leak into the BOM
+    assertEquals("2.0", pom.getManagedDependency("com.example", "lib-b").getVersion());
+    assertEquals("2.0", managedVersion(pom, "lib-b"));
+    // declared by the parent of the BOM
+    assertEquals("3.0", managedVersion(pom, "lib-c"));
+  }
+
+  @Test
+  public void importedBomsAreNotTraversed() throws Exception {
+    EffectivePom pom = builder.build(readModel("importer"));
+    // only the parents and the BOMs are loaded, never the artifacts the BOMs list
+    assertEquals(
+        new TreeSet<>(Arrays.asList("bom-a", "bom-b", "bom-parent", "importer-parent")),
+        new TreeSet<>(loads.keySet()));
+    // the dependencies of a BOM aren't inherited by the importer
+    assertEquals(2, pom.getDependencies().size());
+    for (PomModel.PomDependency dependency : pom.getDependencies()) {
+      assertTrue(dependency.getArtifactId().startsWith("lib-"));
+      assertFalse(dependency.getArtifactId().equals("lib-listed"));
+    }
+  }
+
+  /** A callback which records the reported errors */
+  static class RecordingCallback implements DependencyResolverCallback {
+
+    // the reported errors
+    final List<String> errors = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void dependencyPomDownloading(String url) {}
+
+    @Override
+    public void dependencyPomDownloaded(String url) {}
+
+    @Override
+    public void dependencyPomParsing(String url) {}
+
+    @Override
+    public void dependencyPomParsed(String url) {}
+
+    @Override
+    public void dependencyFileDownloading(String url) {}
+
+    @Override
+    public void dependencyFileDownloaded(String url) {}
+
+    @Override
+    public void merging(MergeStage stage) {}
+
+    @Override
+    public void mergeSuccess() {}
+
+    @Override
+    public void mergeFailed() {}
+
+    @Override
+    public void verbose(String message) {}
+
+    @Override
+    public void error(String message) {
+      errors.add(message);
+    }
+
+    @Override
+    public void info(String message) {}
+  }
+}
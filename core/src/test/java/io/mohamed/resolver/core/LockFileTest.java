@@ -0,0 +1,195 @@
+/*
+ *  Copyright (c) 2021 Mohamed Tamer
+ *   Permission is hereby granted, free of charge, to any person obtaining
+ *   a copy of this software and associated documentation files (the
+ *   "Software"), to deal in the Software without restriction, including
+ *   without limitation the rights to use, copy, modify, merge, publish,
+ *   distribute, sublicense, and/or sell copies of the Software, and to
+ *   permit persons to whom the Software is furnished to do so, subject to
+ *   the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be
+ *   included in all copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *   EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *   MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *   NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ *   LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ *   OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ *   WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+// -*- mode: java; c-basic-offset: 2; -*-
+package io.mohamed.resolver.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import io.mohamed.resolver.core.model.Dependency;
+import io.mohamed.resolver.core.model.Repository;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests writing and reading a {@link LockFile}, and that it's rejected once the resolve or a
+ * cached POM file changed.
+ *
+ * @author Mohamed Tamer
+ */
+public class LockFileTest {
+
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  // the repositories of the resolve
+  private final List<Repository> repositories =
+      Arrays.asList(Repository.GOOGLE_REPOSITORY, Repository.CENTRAL_REPOSITORY);
+  // the user declared routes of the resolve
+  private final Map<String, String> routes = new LinkedHashMap<>();
+  // the lock file
+  private File lockFile;
+  // the directory of the cached POM files
+  private File pomDirectory;
+  // returns the cached POM file of a dependency
+  private Function<Dependency, File> pomFiles;
+
+  @Before
+  public void setUp() throws IOException {
+    routes.put("androidx", Repository.GOOGLE_REPOSITORY.getUrl());
+    lockFile = new File(folder.getRoot(), "locks/app.lock");
+    pomDirectory = folder.newFolder("poms");
+    pomFiles = dependency -> new File(pomDirectory, dependency.getArtifactId() + ".pom");
+  }
+
+  private void writePom(String artifactId, String content) throws IOException {
+    Files.write(
+        new File(pomDirectory, artifactId + ".pom").toPath(),
+        content.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private Dependency root() {
+    return new Dependency("com.example", "app", "1.0");
+  }
+
+  private void writeLockFile() throws IOException {
+    Dependency root = root();
+    root.setRepository(Repository.CENTRAL_REPOSITORY);
+    Dependency lib = new Dependency("androidx.core", "core", "1.3.0", "aar", "runtime");
+    lib.setRepository(Repository.GOOGLE_REPOSITORY);
+    Dependency annotations = new Dependency("org.jetbrains", "annotations", "13.0");
+    Dependency uncached = new Dependency("com.example", "uncached", "2.0");
+    uncached.setRepository(new Repository("https://example.com/maven/"));
+    writePom("core", "<project/>");
+    writePom("annotations", "<project></project>");
+    LockFile.write(
+        lockFile, root, repositories, routes, Arrays.asList(lib, annotations, uncached), pomFiles);
+  }
+
+  @Test
+  public void roundTrips() throws IOException {
+    writeLockFile();
+    Dependency root = root();
+    LockFile locked = LockFile.read(lockFile, root, repositories, routes, pomFiles);
+    assertNotNull(locked);
+    assertSame(root, locked.getRoot());
+    assertSame(Repository.CENTRAL_REPOSITORY, root.getRepository());
+
+    List<Dependency> dependencies = locked.getDependencies();
+    assertEquals(3, dependencies.size());
+    Dependency lib = dependencies.get(0);
+    assertEquals("androidx.core", lib.getGroupId());
+    assertEquals("core", lib.getArtifactId());
+    assertEquals("1.3.0", lib.getVersion());
+    assertEquals("aar", lib.getType());
+    assertEquals("runtime", lib.getScope());
+    // configured repositories are shared, not copied
+    assertSame(Repository.GOOGLE_REPOSITORY, lib.getRepository());
+    assertNull(dependencies.get(1).getRepository());
+    assertEquals("https://example.com/maven/", dependencies.get(2).getRepository().getUrl());
+  }
+
+  @Test
+  public void ignoresAMissingFile() throws IOException {
+    assertNull(LockFile.read(lockFile, root(), repositories, routes, pomFiles));
+  }
+
+  @Test
+  public void rejectsAnotherRoot() throws IOException {
+    writeLockFile();
+    Dependency otherVersion = new Dependency("com.example", "app", "1.1");
+    assertNull(LockFile.read(lockFile, otherVersion, repositories, routes, pomFiles));
+    Dependency otherType = new Dependency("com.example", "app", "1.0", "aar");
+    assertNull(LockFile.read(lockFile, otherType, repositories, routes, pomFiles));
+  }
+
+  @Test
+  public void rejectsOtherRepositories() throws IOException {
+    writeLockFile();
+    List<Repository> reordered =
+        Arrays.asList(Repository.CENTRAL_REPOSITORY, Repository.GOOGLE_REPOSITORY);
+    assertNull(LockFile.read(lockFile, root(), reordered, routes, pomFiles));
+    List<Repository> fewer = Collections.singletonList(Repository.GOOGLE_REPOSITORY);
+    assertNull(LockFile.read(lockFile, root(), fewer, routes, pomFiles));
+  }
+
+  @Test
+  public void rejectsOtherRoutes() throws IOException {
+    writeLockFile();
+    assertNull(LockFile.read(lockFile, root(), repositories, Collections.emptyMap(), pomFiles));
+  }
+
+  @Test
+  public void rejectsAChangedPomFile() throws IOException {
+    writeLockFile();
+    writePom("core", "<project><version>1.3.1</version></project>");
+    assertNull(LockFile.read(lockFile, root(), repositories, routes, pomFiles));
+  }
+
+  @Test
+  public void trustsPomFilesWhichArentCached() throws IOException {
+    writeLockFile();
+    Files.delete(new File(pomDirectory, "core.pom").toPath());
+    assertNotNull(LockFile.read(lockFile, root(), repositories, routes, pomFiles));
+  }
+
+  @Test
+  public void rejectsAnotherFormatVersion() throws IOException {
+    writeLockFile();
+    String content = new String(Files.readAllBytes(lockFile.toPath()), StandardCharsets.UTF_8);
+    Files.write(
+        lockFile.toPath(),
+        content.replace("lock-version 1", "lock-version 2").getBytes(StandardCharsets.UTF_8));
+    assertNull(LockFile.read(lockFile, root(), repositories, routes, pomFiles));
+  }
+
+  @Test
+  public void rejectsATruncatedFile() throws IOException {
+    writeLockFile();
+    List<String> lines = Files.readAllLines(lockFile.toPath(), StandardCharsets.UTF_8);
+    Files.write(lockFile.toPath(), lines.subList(0, 3), StandardCharsets.UTF_8);
+    assertNull(LockFile.read(lockFile, root(), repositories, routes, pomFiles));
+  }
+
+  @Test
+  public void leavesNoTemporaryFiles() throws IOException {
+    writeLockFile();
+    writeLockFile();
+    assertEquals(
+        Collections.singletonList("app.lock"),
+        Arrays.asList(lockFile.getParentFile().list()));
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ *  Copyright (c) 2021 Mohamed Tamer
+ *   Permission is hereby granted, free of charge, to any person obtaining
+ *   a copy of this software and associated documentation files (the
+ *   "Software"), to deal in the Software without restriction, including
+ *   without limitation the rights to use, copy, modify, merge, publish,
+ *   distribute, sublicense, and/or sell copies of the Software, and to
+ *   permit persons to whom the Software is furnished to do so, subject to
+ *   the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be
+ *   included in all copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *   EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *   MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *   NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ *   LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ *   OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ *   WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+// -*- mode: java; c-basic-offset: 2; -*-
+package io.mohamed.resolver.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import io.mohamed.resolver.core.PomModel.PomDependency;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests reading back the binary files written by {@link PomModelStore}, and that a damaged one is
+ * ignored instead of being trusted.
+ *
+ * @author Mohamed Tamer
+ */
+public class PomModelStoreTest {
+
+  // the offset of the length of the group ID, right after the header
+  private static final int GROUP_ID_OFFSET = 4 + 4 + 8 + 8;
+
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  // the POM file the model belongs to
+  private File pomFile;
+
+  @Before
+  public void setUp() throws IOException {
+    pomFile = folder.newFile("app-1.0.pom");
+    Files.write(pomFile.toPath(), "<project/>".getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static PomModel model() {
+    return new PomModel(
+        "com.example",
+        "app",
+        "1.0",
+        "jar",
+        null,
+        Collections.singletonMap("lib.version", "2.0"),
+        Collections.singletonList(
+            new PomDependency("com.example", "lib", "${lib.version}", "compile", "jar")),
+        Collections.emptyList());
+  }
+
+  private void corrupt(long offset, int value) throws IOException {
+    try (RandomAccessFile file =
+        new RandomAccessFile(PomModelStore.getBinaryFile(pomFile), "rw")) {
+      file.seek(offset);
+      file.writeInt(value);
+    }
+  }
+
+  @Test
+  public void readsBackTheWrittenModel() {
+    PomModelStore.write(pomFile, model());
+    PomModel model = PomModelStore.read(pomFile);
+    assertNotNull(model);
+    assertEquals("com.example", model.getGroupId());
+    assertEquals("app", model.getArtifactId());
+    assertEquals("2.0", model.getProperties().get("lib.version"));
+    assertEquals(1, model.getDependencies().size());
+    assertEquals("lib", model.getDependencies().get(0).getArtifactId());
+  }
+
+  @Test
+  public void ignoresAStringLengthLargerThanTheFile() throws IOException {
+    PomModelStore.write(pomFile, model());
+    corrupt(GROUP_ID_OFFSET, Integer.MAX_VALUE);
+    assertNull(PomModelStore.read(pomFile));
+  }
+
+  @Test
+  public void ignoresADependencyCountLargerThanTheFile() throws IOException {
+    PomModelStore.write(pomFile, model());
+    // the dependency count follows the strings, the parent flag and the properties
+    long offset =
+        GROUP_ID_OFFSET
+            + (4 + "com.example".length())
+            + (4 + "app".length())
+            + (4 + "1.0".length())
+            + (4 + "jar".length())
+            + 1
+            + 4
+            + (4 + "lib.version".length())
+            + (4 + "2.0".length());
+    corrupt(offset, Integer.MAX_VALUE - 8);
+    assertNull(PomModelStore.read(pomFile));
+  }
+}
@@ -0,0 +1,181 @@
+/*
+ *  Copyright (c) 2021 Mohamed Tamer
+ *   Permission is hereby granted, free of charge, to any person obtaining
+ *   a copy of this software and associated documentation files (the
+ *   "Software"), to deal in the Software without restriction, including
+ *   without limitation the rights to use, copy, modify, merge, publish,
+ *   distribute, sublicense, and/or sell copies of the Software, and to
+ *   permit persons to whom the Software is furnished to do so, subject to
+ *   the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be
+ *   included in all copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *   EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *   MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *   NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ *   LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ *   OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ *   WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+// -*- mode: java; c-basic-offset: 2; -*-
+package io.mohamed.resolver.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import io.mohamed.resolver.core.PomModel.PomDependency;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * Checks that the streaming {@link PomParser} reads real POM files into the same {@link PomModel}
+ * as the DOM parser it replaced.
+ *
+ * @author Mohamed Tamer
+ */
+public class PomParserTest {
+
+  // the real POM files under src/test/resources/poms
+  static final String[] POMS = {
+    "okhttp-4.9.3.pom",
+    "okio-2.8.0.pom",
+    "kotlin-stdlib-1.4.10.pom",
+    "guava-30.1.1-jre.pom",
+    "guava-parent-30.1.1-jre.pom",
+    "jackson-bom-2.12.3.pom"
+  };
+
+  /**
+   * Reads a POM file from the test resources
+   *
+   * @param name the file name
+   * @return the file content
+   * @throws IOException if the file couldn't be read
+   */
+  static byte[] readPom(String name) throws IOException {
+    try (InputStream inputStream = PomParserTest.class.getResourceAsStream("/poms/" + name)) {
+      assertNotNull("Missing test POM " + name, inputStream);
+      return inputStream.readAllBytes();
+    }
+  }
+
+  @Test
+  public void parsersAgreeOnRealPoms() throws IOException {
+    for (String name : POMS) {
+      byte[] content = readPom(name);
+      PomModel expected = DomPomParser.parse(new ByteArrayInputStream(content));
+      PomModel actual = PomParser.parse(new ByteArrayInputStream(content));
+      assertModelEquals(name, expected, actual);
+    }
+  }
+
+  @Test
+  public void readsTheModelOfARealPom() throws IOException {
+    PomModel model = PomParser.parse(new ByteArrayInputStream(readPom("guava-30.1.1-jre.pom")));
+    assertNull(model.getGroupId());
+    assertEquals("guava", model.getArtifactId());
+    assertEquals("bundle", model.getPackaging());
+    assertEquals("guava-parent", model.getParent().getArtifactId());
+    assertEquals("30.1.1-jre", model.getParent().getVersion());
+    assertEquals("com.google.guava", model.getDependencies().get(0).getGroupId());
+  }
+
+  @Test
+  public void skipsUnknownAndNestedElements() throws IOException {
+    String pom =
+        "<project xmlns=\"http://maven.apache.org/POM/4.0.0\">"
+            + "<build><dependencies><dependency><artifactId>plugin</artifactId></dependency>"
+            + "</dependencies></build>"
+            + "<groupId> g </groupId><artifactId>a</artifactId><version><![CDATA[1.0]]></version>"
+            + "<dependencies><dependency><groupId>x</groupId><artifactId>y</artifactId>"
+            + "<exclusions><exclusion><groupId>z</groupId></exclusion></exclusions>"
+            + "<scope>test</scope></dependency></dependencies>"
+            + "</project>";
+    byte[] content = pom.getBytes(StandardCharsets.UTF_8);
+    PomModel actual = PomParser.parse(new ByteArrayInputStream(content));
+    assertModelEquals("inline", DomPomParser.parse(new ByteArrayInputStream(content)), actual);
+    assertEquals("g", actual.getGroupId());
+    assertEquals("1.0", actual.getVersion());
+    assertEquals(1, actual.getDependencies().size());
+    assertEquals("x", actual.getDependencies().get(0).getGroupId());
+    assertEquals("test", actual.getDependencies().get(0).getScope());
+  }
+
+  @Test
+  public void rejectsMalformedPoms() throws IOException {
+    byte[] content = "<project><groupId>g</project>".getBytes(StandardCharsets.UTF_8);
+    try {
+      PomParser.parse(new ByteArrayInputStream(content));
+      fail("Expected a MalformedPomException");
+    } catch (PomParser.MalformedPomException expected) {
+      // expected
+    }
+  }
+
+  @Test
+  public void rejectsWellFormedDocumentsWhichArentPoms() throws IOException {
+    String[] bodies = {
+      "<html xmlns=\"http://www.w3.org/1999/xhtml\"><head><title>502 Bad Gateway</title></head>"
+          + "<body><h1>Bad Gateway</h1></body></html>",
+      "<errors><error><status>404</status><message>Not Found</message></error></errors>"
+    };
+    for (String body : bodies) {
+      try {
+        PomParser.parse(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+        fail("Expected a MalformedPomException for " + body);
+      } catch (PomParser.MalformedPomException expected) {
+        // expected
+      }
+    }
+  }
+
+  private static void assertModelEquals(String name, PomModel expected, PomModel actual) {
+    assertEquals(name + " groupId", expected.getGroupId(), actual.getGroupId());
+    assertEquals(name + " artifactId", expected.getArtifactId(), actual.getArtifactId());
+    assertEquals(name + " version", expected.getVersion(), actual.getVersion());
+    assertEquals(name + " packaging", expected.getPackaging(), actual.getPackaging());
+    assertDependencyEquals(name + " parent", expected.getParent(), actual.getParent());
+    assertEquals(name + " properties", expected.getProperties(), actual.getProperties());
+    assertEquals(
+        name + " property order",
+        new ArrayList<>(expected.getProperties().keySet()),
+        new ArrayList<>(actual.getProperties().keySet()));
+    assertDependenciesEqual(
+        name + " dependencies", expected.getDependencies(), actual.getDependencies());
+    assertDependenciesEqual(
+        name + " dependencyManagement",
+        expected.getDependencyManagement(),
+        actual.getDependencyManagement());
+  }
+
+  private static void assertDependenciesEqual(
+      String name, List<PomDependency> expected, List<PomDependency> actual) {
+    assertEquals(name + " size", expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertDependencyEquals(name + "[" + i + "]", expected.get(i), actual.get(i));
+    }
+  }
+
+  private static void assertDependencyEquals(
+      String name, PomDependency expected, PomDependency actual) {
+    if (expected == null || actual == null) {
+      assertEquals(name, expected, actual);
+      return;
+    }
+    assertEquals(name + " groupId", expected.getGroupId(), actual.getGroupId());
+    assertEquals(name + " artifactId", expected.getArtifactId(), actual.getArtifactId());
+    assertEquals(name + " version", expected.getVersion(), actual.getVersion());
+    assertEquals(name + " scope", expected.getScope(), actual.getScope());
+    assertEquals(name + " type", expected.getType(), actual.getType());
+  }
+}
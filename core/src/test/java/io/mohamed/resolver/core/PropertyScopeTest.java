@@ -0,0 +1,104 @@
+/*
+ *  Copyright (c) 2021 Mohamed Tamer
+ *   Permission is hereby granted, free of charge, to any person obtaining
+ *   a copy of this software and associated documentation files (the
+ *   "Software"), to deal in the Software without restriction, including
+ *   without limitation the rights to use, copy, modify, merge, publish,
+ *   distribute, sublicense, and/or sell copies of the Software, and to
+ *   permit persons to whom the Software is furnished to do so, subject to
+ *   the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be
+ *   included in all copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *   EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *   MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *   NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ *   LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ *   OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ *   WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+// -*- mode: java; c-basic-offset: 2; -*-
+package io.mohamed.resolver.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import io.mohamed.resolver.core.PomModel.PomDependency;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.Test;
+
+/**
+ * Tests the property lookup and interpolation of {@link PropertyScope}.
+ *
+ * @author Mohamed Tamer
+ */
+public class PropertyScopeTest {
+
+  private static PomModel model(PomDependency parent, String... properties) {
+    Map<String, String> map = new LinkedHashMap<>();
+    for (int i = 0; i < properties.length; i += 2) {
+      map.put(properties[i], properties[i + 1]);
+    }
+    return new PomModel(
+        parent == null ? "g" : null,
+        "a",
+        parent == null ? "1.0" : null,
+        null,
+        parent,
+        map,
+        new ArrayList<>(),
+        new ArrayList<>());
+  }
+
+  @Test
+  public void interpolatesNestedProperties() {
+    PropertyScope scope =
+        new PropertyScope(model(null, "a", "${b}.0", "b", "${c}", "c", "1"), null);
+    assertEquals("1.0-x", scope.interpolate("${a}-x"));
+    assertNull(scope.interpolate(null));
+  }
+
+  @Test
+  public void leavesCyclesUnresolved() {
+    PropertyScope scope =
+        new PropertyScope(model(null, "a", "${b}", "b", "${a}", "self", "${self}-1"), null);
+    assertEquals("${a}", scope.interpolate("${a}"));
+    assertEquals("${b}", scope.interpolate("${b}"));
+    assertEquals("${self}-1", scope.interpolate("${self}"));
+  }
+
+  @Test
+  public void resolvesTheSamePropertyTwiceOutsideACycle() {
+    PropertyScope scope = new PropertyScope(model(null, "v", "1", "pair", "${v}-${v}"), null);
+    assertEquals("1-1/1", scope.interpolate("${pair}/${v}"));
+  }
+
+  @Test
+  public void projectPropertiesOverrideTheParent() {
+    PropertyScope parent = new PropertyScope(model(null, "a", "parent", "b", "${a}"), null);
+    PomDependency parentDeclaration = new PomDependency("g", "parent", "2.0", null, null);
+    PropertyScope scope = new PropertyScope(model(parentDeclaration, "a", "child"), parent);
+    assertEquals("child", scope.interpolate("${a}"));
+    // the parent's property references are resolved in the child's scope, like maven does
+    assertEquals("child", scope.interpolate("${b}"));
+    assertEquals("parent", parent.interpolate("${b}"));
+  }
+
+  @Test
+  public void inheritsTheBuiltInsFromTheParentDeclaration() {
+    PomDependency parentDeclaration = new PomDependency("g", "parent", "2.0", null, null);
+    PropertyScope scope =
+        new PropertyScope(model(parentDeclaration), new PropertyScope(model(null), null));
+    assertEquals(
+        "g:a:2.0", scope.interpolate("${project.groupId}:${project.artifactId}:${pom.version}"));
+    // built ins are only known by their project. and pom. prefixes
+    assertEquals("${artifactId}", scope.interpolate("${artifactId}"));
+    assertEquals("2.0", scope.interpolate("${project.parent.version}"));
+    assertEquals("jar", scope.interpolate("${project.packaging}"));
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ *  Copyright (c) 2021 Mohamed Tamer
+ *   Permission is hereby granted, free of charge, to any person obtaining
+ *   a copy of this software and associated documentation files (the
+ *   "Software"), to deal in the Software without restriction, including
+ *   without limitation the rights to use, copy, modify, merge, publish,
+ *   distribute, sublicense, and/or sell copies of the Software, and to
+ *   permit persons to whom the Software is furnished to do so, subject to
+ *   the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be
+ *   included in all copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *   EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *   MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *   NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ *   LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ *   OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ *   WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+// -*- mode: java; c-basic-offset: 2; -*-
+package io.mohamed.resolver.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+
+/**
+ * Tests the tokenizing and resolving of {@link PropertyTemplate}.
+ *
+ * @author Mohamed Tamer
+ */
+public class PropertyTemplateTest {
+
+  @Test
+  public void resolvesReferences() {
+    Map<String, String> values = new HashMap<>();
+    values.put("a", "1");
+    values.put("b", "2");
+    PropertyTemplate template = PropertyTemplate.compile("x${a}y${ b }z");
+    assertFalse(template.isConstant());
+    assertEquals("x1y2z", template.resolve(values::get));
+  }
+
+  @Test
+  public void keepsUnknownReferences() {
+    assertEquals("${a}-${b}", PropertyTemplate.compile("${a}-${b}").resolve(name -> null));
+  }
+
+  @Test
+  public void treatsUnterminatedReferencesAsLiterals() {
+    PropertyTemplate template = PropertyTemplate.compile("1.0-${a");
+    assertTrue(template.isConstant());
+    assertEquals("1.0-${a", template.resolve(name -> "x"));
+  }
+
+  @Test
+  public void cachesTemplatesByValue() {
+    assertSame(PropertyTemplate.compile("${cached}"), PropertyTemplate.compile("${cached}"));
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ *  Copyright (c) 2021 Mohamed Tamer
+ *   Permission is hereby granted, free of charge, to any person obtaining
+ *   a copy of this software and associated documentation files (the
+ *   "Software"), to deal in the Software without restriction, including
+ *   without limitation the rights to use, copy, modify, merge, publish,
+ *   distribute, sublicense, and/or sell copies of the Software, and to
+ *   permit persons to whom the Software is furnished to do so, subject to
+ *   the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be
+ *   included in all copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *   EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *   MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *   NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ *   LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ *   OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ *   WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+// -*- mode: java; c-basic-offset: 2; -*-
+package io.mohamed.resolver.core;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Collections;
+import org.junit.Test;
+
+/**
+ * Tests the validation of {@link SessionOptions}, which all the builders delegate to.
+ *
+ * @author Mohamed Tamer
+ */
+public class SessionOptionsTest {
+
+  @Test
+  public void normalizesRoutes() {
+    SessionOptions options = new SessionOptions(4);
+    options.addRoute("androidx", "https://maven.google.com");
+    assertEquals(
+        Collections.singletonMap("androidx", "https://maven.google.com/"), options.getRoutes());
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void doesNotExposeItsRoutes() {
+    new SessionOptions(4).getRoutes().put("androidx", "https://maven.google.com/");
+  }
+
+  @Test
+  public void clampsNegativeTtls() {
+    SessionOptions options = new SessionOptions(4);
+    options.setMetadataTtl(-1);
+    assertEquals(0, options.getMetadataTtlMillis());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsNoThreads() {
+    new SessionOptions(4).setMaxThreads(0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsNegativeRetries() {
+    new SessionOptions(4).setMaxRetries(-1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsNegativeTimeouts() {
+    new SessionOptions(4).setReadTimeout(-1);
+  }
+}
@@ -0,0 +1,163 @@
+/*
+ *  Copyright (c) 2021 Mohamed Tamer
+ *   Permission is hereby granted, free of charge, to any person obtaining
+ *   a copy of this software and associated documentation files (the
+ *   "Software"), to deal in the Software without restriction, including
+ *   without limitation the rights to use, copy, modify, merge, publish,
+ *   distribute, sublicense, and/or sell copies of the Software, and to
+ *   permit persons to whom the Software is furnished to do so, subject to
+ *   the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be
+ *   included in all copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *   EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *   MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *   NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ *   LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ *   OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ *   WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+// -*- mode: java; c-basic-offset: 2; -*-
+package io.mohamed.resolver.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests that {@link SingleFlight} runs one call per key at a time and shares its result.
+ *
+ * @author Mohamed Tamer
+ */
+public class SingleFlightTest {
+
+  // runs the concurrent callers
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  /** Waits until the given number of callers attached to the call in flight */
+  private static void awaitCoalesced(SingleFlight<?, ?> flight, int callers)
+      throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (flight.getCoalesced() < callers) {
+      if (System.nanoTime() > deadline) {
+        fail("Only " + flight.getCoalesced() + " callers attached to the call");
+      }
+      Thread.sleep(1);
+    }
+  }
+
+  @Test
+  public void coalescesConcurrentCalls() throws Exception {
+    SingleFlight<String, String> flight = new SingleFlight<>(false);
+    AtomicInteger calls = new AtomicInteger();
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    SingleFlight.Call<String> call =
+        () -> {
+          calls.incrementAndGet();
+          started.countDown();
+          release.await();
+          return "value";
+        };
+    List<Future<String>> results = new ArrayList<>();
+    results.add(executor.submit(() -> flight.run("key", call)));
+    assertTrue(started.await(10, TimeUnit.SECONDS));
+    for (int i = 0; i < 7; i++) {
+      results.add(executor.submit(() -> flight.run("key", call)));
+    }
+    awaitCoalesced(flight, 7);
+    release.countDown();
+    for (Future<String> result : results) {
+      assertEquals("value", result.get(10, TimeUnit.SECONDS));
+    }
+    assertEquals(1, calls.get());
+
+    // the finished call isn't kept
+    assertEquals("value", flight.run("key", call));
+    assertEquals(2, calls.get());
+  }
+
+  @Test
+  public void runsDifferentKeysSeparately() throws InterruptedException {
+    SingleFlight<String, String> flight = new SingleFlight<>(true);
+    assertEquals("a", flight.run("a", () -> "a"));
+    assertEquals("b", flight.run("b", () -> "b"));
+    assertEquals(0, flight.getCoalesced());
+  }
+
+  @Test
+  public void keepsResults() throws InterruptedException {
+    SingleFlight<String, String> flight = new SingleFlight<>(true);
+    AtomicInteger calls = new AtomicInteger();
+    SingleFlight.Call<String> call = () -> "value" + calls.incrementAndGet();
+    assertEquals("value1", flight.run("key", call));
+    assertEquals("value1", flight.run("key", call));
+    assertEquals(1, calls.get());
+  }
+
+  @Test
+  public void doesNotKeepNullResults() throws InterruptedException {
+    SingleFlight<String, String> flight = new SingleFlight<>(true);
+    AtomicInteger calls = new AtomicInteger();
+    assertNull(flight.run("key", () -> calls.incrementAndGet() == 1 ? null : "found"));
+    assertEquals("found", flight.run("key", () -> calls.incrementAndGet() == 1 ? null : "found"));
+    assertEquals(2, calls.get());
+  }
+
+  @Test
+  public void forgetsFailedCalls() throws InterruptedException {
+    SingleFlight<String, String> flight = new SingleFlight<>(true);
+    try {
+      flight.run(
+          "key",
+          () -> {
+            throw new IllegalStateException();
+          });
+      fail("Expected the failure to be thrown to the caller");
+    } catch (IllegalStateException expected) {
+      // expected
+    }
+    assertEquals("value", flight.run("key", () -> "value"));
+  }
+
+  @Test
+  public void waitersRunTheCallWhenTheCallerIsInterrupted() throws Exception {
+    SingleFlight<String, String> flight = new SingleFlight<>(false);
+    CountDownLatch started = new CountDownLatch(1);
+    Future<String> interrupted =
+        executor.submit(
+            () ->
+                flight.run(
+                    "key",
+                    () -> {
+                      started.countDown();
+                      new CountDownLatch(1).await();
+                      return "never";
+                    }));
+    assertTrue(started.await(10, TimeUnit.SECONDS));
+    Future<String> waiter = executor.submit(() -> flight.run("key", () -> "value"));
+    awaitCoalesced(flight, 1);
+    interrupted.cancel(true);
+    assertEquals("value", waiter.get(10, TimeUnit.SECONDS));
+  }
+}
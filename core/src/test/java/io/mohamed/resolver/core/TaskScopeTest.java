@@ -0,0 +1,171 @@
+/*
+ *  Copyright (c) 2021 Mohamed Tamer
+ *   Permission is hereby granted, free of charge, to any person obtaining
+ *   a copy of this software and associated documentation files (the
+ *   "Software"), to deal in the Software without restriction, including
+ *   without limitation the rights to use, copy, modify, merge, publish,
+ *   distribute, sublicense, and/or sell copies of the Software, and to
+ *   permit persons to whom the Software is furnished to do so, subject to
+ *   the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be
+ *   included in all copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *   EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *   MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *   NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ *   LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ *   OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ *   WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+// -*- mode: java; c-basic-offset: 2; -*-
+package io.mohamed.resolver.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+/**
+ * Tests that a {@link TaskScope} finishes exactly once, after all its tasks have returned.
+ *
+ * @author Mohamed Tamer
+ */
+public class TaskScopeTest {
+
+  @Test
+  public void finishesAfterNestedForks() throws InterruptedException {
+    AtomicInteger finishes = new AtomicInteger();
+    CountDownLatch finished = new CountDownLatch(1);
+    AtomicInteger ran = new AtomicInteger();
+    TaskScope[] scope = new TaskScope[1];
+    scope[0] =
+        new TaskScope(
+            Executors.newFixedThreadPool(4),
+            () -> {
+              finishes.incrementAndGet();
+              finished.countDown();
+            });
+    // the outer tasks are forked by a running task, so the scope can't finish between two of
+    // them
+    scope[0].fork(
+        () -> {
+          for (int i = 0; i < 10; i++) {
+            scope[0].fork(
+                () -> {
+                  ran.incrementAndGet();
+                  for (int j = 0; j < 10; j++) {
+                    scope[0].fork(ran::incrementAndGet);
+                  }
+                });
+          }
+        });
+    assertTrue(finished.await(10, TimeUnit.SECONDS));
+    assertEquals(110, ran.get());
+    assertEquals(1, finishes.get());
+  }
+
+  @Test
+  public void finishesRightAwayWithoutTasks() {
+    AtomicInteger finishes = new AtomicInteger();
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    TaskScope scope = new TaskScope(executor, finishes::incrementAndGet);
+    assertTrue(scope.finishIfIdle());
+    assertFalse(scope.finishIfIdle());
+    assertEquals(1, finishes.get());
+    assertTrue(executor.isShutdown());
+  }
+
+  @Test
+  public void waitsForInterruptedTasksToReturn() throws InterruptedException {
+    ExecutorService executor = Executors.newFixedThreadPool(1);
+    CountDownLatch finished = new CountDownLatch(1);
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch interrupted = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger queuedRuns = new AtomicInteger();
+    TaskScope scope = new TaskScope(executor, finished::countDown);
+    scope.fork(
+        () -> {
+          started.countDown();
+          try {
+            new CountDownLatch(1).await();
+          } catch (InterruptedException e) {
+            interrupted.countDown();
+          }
+          // keep running after the interrupt, like a task which is cleaning up
+          try {
+            release.await();
+          } catch (InterruptedException ignored) {
+          }
+        });
+    // queued behind the running task on the single thread
+    scope.fork(queuedRuns::incrementAndGet);
+    assertTrue(started.await(10, TimeUnit.SECONDS));
+
+    scope.cancel();
+    assertTrue(scope.isCancelled());
+    assertFalse(scope.fork(queuedRuns::incrementAndGet));
+    assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+    assertFalse(
+        "The scope finished while a task was running", finished.await(200, TimeUnit.MILLISECONDS));
+
+    release.countDown();
+    assertTrue(finished.await(10, TimeUnit.SECONDS));
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    assertEquals(0, queuedRuns.get());
+  }
+
+  @Test
+  public void countsRejectedTasks() {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    executor.shutdown();
+    AtomicInteger finishes = new AtomicInteger();
+    TaskScope scope = new TaskScope(executor, false, finishes::incrementAndGet);
+    assertFalse(scope.fork(() -> {}));
+    assertEquals(1, finishes.get());
+  }
+
+  @Test
+  public void reportsAThrowingTaskBeforeFinishing() throws InterruptedException {
+    List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+    AtomicInteger failuresWhenFinished = new AtomicInteger(-1);
+    CountDownLatch finished = new CountDownLatch(1);
+    TaskScope[] scope = new TaskScope[1];
+    scope[0] =
+        new TaskScope(
+            Executors.newFixedThreadPool(2),
+            true,
+            () -> {
+              failuresWhenFinished.set(failures.size());
+              finished.countDown();
+            },
+            failures::add);
+    AtomicInteger ran = new AtomicInteger();
+    scope[0].fork(
+        () -> {
+          scope[0].fork(ran::incrementAndGet);
+          scope[0].fork(
+              () -> {
+                throw new IllegalStateException("broken POM model");
+              });
+        });
+    assertTrue(finished.await(10, TimeUnit.SECONDS));
+    assertEquals(1, ran.get());
+    assertEquals(1, failures.size());
+    assertTrue(failures.get(0) instanceof IllegalStateException);
+    // the failure was known by the time the scope finished
+    assertEquals(1, failuresWhenFinished.get());
+  }
+}
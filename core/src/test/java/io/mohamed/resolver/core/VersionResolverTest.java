@@ -0,0 +1,123 @@
+/*
+ *  Copyright (c) 2021 Mohamed Tamer
+ *   Permission is hereby granted, free of charge, to any person obtaining
+ *   a copy of this software and associated documentation files (the
+ *   "Software"), to deal in the Software without restriction, including
+ *   without limitation the rights to use, copy, modify, merge, publish,
+ *   distribute, sublicense, and/or sell copies of the Software, and to
+ *   permit persons to whom the Software is furnished to do so, subject to
+ *   the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be
+ *   included in all copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *   EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *   MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *   NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ *   LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ *   OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ *   WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+// -*- mode: java; c-basic-offset: 2; -*-
+package io.mohamed.resolver.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests the version range matching of {@link VersionResolver}.
+ *
+ * @author Mohamed Tamer
+ */
+public class VersionResolverTest {
+
+  // no fetcher is needed to match ranges
+  private final VersionResolver resolver =
+      new VersionResolver(null, 0, ComparableVersion::compare);
+
+  @Test
+  public void matchesInclusiveBounds() {
+    assertTrue(resolver.matches("[1.0,2.0]", "1.0"));
+    assertTrue(resolver.matches("[1.0,2.0]", "1.5"));
+    assertTrue(resolver.matches("[1.0,2.0]", "2.0"));
+    assertFalse(resolver.matches("[1.0,2.0]", "0.9"));
+    assertFalse(resolver.matches("[1.0,2.0]", "2.0.1"));
+  }
+
+  @Test
+  public void matchesExclusiveBounds() {
+    assertFalse(resolver.matches("(1.0,2.0)", "1.0"));
+    assertTrue(resolver.matches("(1.0,2.0)", "1.0.1"));
+    assertTrue(resolver.matches("(1.0,2.0)", "1.9"));
+    assertFalse(resolver.matches("(1.0,2.0)", "2.0"));
+    assertTrue(resolver.matches("[1.0,2.0)", "1.0"));
+    assertFalse(resolver.matches("[1.0,2.0)", "2.0"));
+  }
+
+  @Test
+  public void matchesOpenBounds() {
+    assertTrue(resolver.matches("[1.5,)", "1.5"));
+    assertTrue(resolver.matches("[1.5,)", "100"));
+    assertFalse(resolver.matches("[1.5,)", "1.4"));
+    assertTrue(resolver.matches("(,1.0]", "0.1"));
+    assertTrue(resolver.matches("(,1.0]", "1.0"));
+    assertFalse(resolver.matches("(,1.0)", "1.0"));
+  }
+
+  @Test
+  public void matchesExactVersions() {
+    assertTrue(resolver.matches("[1.5]", "1.5"));
+    assertTrue(resolver.matches("[1.5]", "1.5.0"));
+    assertFalse(resolver.matches("[1.5]", "1.5.1"));
+    assertFalse(resolver.matches("[1.5]", "1.4"));
+  }
+
+  @Test
+  public void matchesMultiRangeUnions() {
+    String union = "(,1.0],[1.2,)";
+    assertTrue(resolver.matches(union, "0.5"));
+    assertTrue(resolver.matches(union, "1.0"));
+    assertFalse(resolver.matches(union, "1.1"));
+    assertTrue(resolver.matches(union, "1.2"));
+    assertTrue(resolver.matches(union, "3.0"));
+
+    String exacts = "[1.1],[1.3],(2.0,3.0)";
+    assertTrue(resolver.matches(exacts, "1.1"));
+    assertFalse(resolver.matches(exacts, "1.2"));
+    assertTrue(resolver.matches(exacts, "1.3"));
+    assertFalse(resolver.matches(exacts, "2.0"));
+    assertTrue(resolver.matches(exacts, "2.5"));
+  }
+
+  @Test
+  public void ordersVersionsInsteadOfComparingText() {
+    assertTrue(resolver.matches("[1.9,1.10]", "1.10"));
+    assertFalse(resolver.matches("[1.0,1.9]", "1.10"));
+    assertTrue(resolver.matches("[1.0,2.0)", "2.0-rc1"));
+  }
+
+  @Test
+  public void detectsDynamicVersions() {
+    assertTrue(VersionResolver.isDynamic("[1.0,2.0)"));
+    assertTrue(VersionResolver.isDynamic("(,1.0]"));
+    assertTrue(VersionResolver.isDynamic("LATEST"));
+    assertTrue(VersionResolver.isDynamic("RELEASE"));
+    assertFalse(VersionResolver.isDynamic("1.0"));
+  }
+
+  @Test
+  public void findsTheLowerBound() {
+    assertEquals("1.0", VersionResolver.getLowerBound("[1.0,2.0)"));
+    assertEquals("1.5", VersionResolver.getLowerBound("[1.5]"));
+    assertEquals("1.0", VersionResolver.getLowerBound("[ 1.0 , 2.0 ]"));
+    assertEquals("0.5", VersionResolver.getLowerBound("[0.5,1.0],[1.2,)"));
+    assertNull(VersionResolver.getLowerBound("(,1.0]"));
+    assertNull(VersionResolver.getLowerBound("1.0"));
+  }
+}
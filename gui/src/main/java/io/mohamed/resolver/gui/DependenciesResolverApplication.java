@@ -22,6 +22,7 @@
 
 package io.mohamed.resolver.gui;
 
+import io.mohamed.resolver.core.CancellationHandle;
 import io.mohamed.resolver.core.DependencyDownloader;
 import io.mohamed.resolver.core.DependencyResolver;
 import io.mohamed.resolver.core.Util;
@@ -91,6 +92,8 @@ public class DependenciesResolverApplication extends Application implements Init
   public ScrollPane logs;
   // the resolve Button
   public Button resolveBtn;
+  // the cancel Button
+  public Button cancelBtn;
   // merge libraries setting value
   private boolean mergeLibraries;
   // the user-defined custom repositories setting value
@@ -105,6 +108,10 @@ public class DependenciesResolverApplication extends Application implements Init
   private Pane logsPane;
   // the primary stage for the application
   private Stage primaryStage;
+  // cancels the running resolve, or null if nothing was resolved yet
+  private volatile CancellationHandle resolveHandle;
+  // cancels the running download, or null if nothing was downloaded yet
+  private volatile CancellationHandle downloadHandle;
 
   public static void main(String[] args) {
     DependenciesResolverApplication.launch(args);
@@ -182,6 +189,17 @@ public class DependenciesResolverApplication extends Application implements Init
             chooseFile.setText(selectedFile[0].getAbsolutePath());
           }
         });
+    cancelBtn.setOnMouseClicked(
+        (event -> {
+          appendLog("Cancelling..", true);
+          if (resolveHandle != null) {
+            resolveHandle.cancel();
+          }
+          if (downloadHandle != null) {
+            downloadHandle.cancel();
+          }
+          cancelBtn.setDisable(true);
+        }));
     resolveBtn.setOnMouseClicked(
         (event -> {
           // clear previous logs
@@ -359,6 +377,7 @@ public class DependenciesResolverApplication extends Application implements Init
                         appendLog("Success!");
                         Platform.runLater(
                             () -> {
+                              cancelBtn.setDisable(true);
                               logs.setVvalue(logs.getVmax());
                               Alert alert =
                                   new Alert(
@@ -372,25 +391,31 @@ public class DependenciesResolverApplication extends Application implements Init
                             });
                       };
                   appendLog("Downloading Dependencies");
-                  new DependencyDownloader.Builder()
-                      .setCallback(filesDownloadedCallback)
-                      .setDependencyResolverCallback(dependencyResolverCallback)
-                      .setDependencies(dependencyList)
-                      .setFilterAppInventorDependencies(filterAppinventorDependencies)
-                      .setJarOnly(jarOnly)
-                      .setMainDependency(finalDependency)
-                      .setMerge(mergeLibraries)
-                      .setVerbose(verbose)
-                      .setRepositories(repositories)
-                      .resolve();
+                  downloadHandle =
+                      new DependencyDownloader.Builder()
+                          .setCallback(filesDownloadedCallback)
+                          .setDependencyResolverCallback(dependencyResolverCallback)
+                          .setDependencies(dependencyList)
+                          .setFilterAppInventorDependencies(filterAppinventorDependencies)
+                          .setJarOnly(jarOnly)
+                          .setMainDependency(finalDependency)
+                          .setMerge(mergeLibraries)
+                          .setVerbose(verbose)
+                          .setRepositories(repositories)
+                          .resolve();
+                } else {
+                  Platform.runLater(() -> cancelBtn.setDisable(true));
                 }
               };
-          new DependencyResolver.Builder()
-              .setDependency(dependency)
-              .setCallback(callback)
-              .setRepositories(repositories)
-              .setDependencyResolverCallback(dependencyResolverCallback)
-              .resolve();
+          cancelBtn.setDisable(false);
+          downloadHandle = null;
+          resolveHandle =
+              new DependencyResolver.Builder()
+                  .setDependency(dependency)
+                  .setCallback(callback)
+                  .setRepositories(repositories)
+                  .setDependencyResolverCallback(dependencyResolverCallback)
+                  .resolve();
         }));
     // print any uncaught exceptions to the user
     Thread.setDefaultUncaughtExceptionHandler(